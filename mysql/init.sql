@@ -7,7 +7,13 @@ CREATE TABLE IF NOT EXISTS flights (
     departureDate DATE NOT NULL,
     departureTime TIME NOT NULL,
     availableSeats INT NOT NULL,
-    PRIMARY KEY (flightNumber)
+    occupiedSeats INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats) STORED,
+    PRIMARY KEY (flightNumber),
+    INDEX idx_flights_route_departure (route, departureDate, departureTime),
+    INDEX idx_flights_departure (departureDate, departureTime),
+    INDEX idx_flights_free_seats (freeSeats)
     );
 
 CREATE TABLE IF NOT EXISTS passengers (
@@ -15,7 +21,10 @@ CREATE TABLE IF NOT EXISTS passengers (
     firstName VARCHAR(255) NOT NULL,
     lastName VARCHAR(255) NOT NULL,
     phoneNumber VARCHAR(20),
-    PRIMARY KEY (id)
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_passengers_phone (phoneNumber),
+    INDEX idx_passengers_name (lastName, firstName),
+    INDEX idx_passengers_first_name (firstName)
     );
 
 CREATE TABLE IF NOT EXISTS seat_assignments (
@@ -23,10 +32,34 @@ CREATE TABLE IF NOT EXISTS seat_assignments (
     seatNumber INT NOT NULL,
     passengerId BIGINT NOT NULL,
     PRIMARY KEY (flightNumber, seatNumber),
-    FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber),
+    INDEX idx_seat_assignments_passenger (passengerId),
+    FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber) ON DELETE CASCADE,
     FOREIGN KEY (passengerId) REFERENCES passengers(id)
     );
 
+-- Departed flights moved out of the tables above by the archival job; same columns, no link to passengers
+CREATE TABLE IF NOT EXISTS flights_archive (
+    flightNumber BIGINT NOT NULL,
+    route VARCHAR(255) NOT NULL,
+    departureDate DATE NOT NULL,
+    departureTime TIME NOT NULL,
+    availableSeats INT NOT NULL,
+    occupiedSeats INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats) STORED,
+    PRIMARY KEY (flightNumber),
+    INDEX idx_flights_archive_route_departure (route, departureDate, departureTime)
+    );
+
+CREATE TABLE IF NOT EXISTS seat_assignments_archive (
+    flightNumber BIGINT NOT NULL,
+    seatNumber INT NOT NULL,
+    passengerId BIGINT NOT NULL,
+    PRIMARY KEY (flightNumber, seatNumber),
+    INDEX idx_seat_assignments_archive_passenger (passengerId),
+    FOREIGN KEY (flightNumber) REFERENCES flights_archive(flightNumber) ON DELETE CASCADE
+    );
+
 INSERT INTO flights (route, departureDate, departureTime, availableSeats) VALUES
     ('Kielce-Warszawa', '2024-04-22', '15:30:00', 180),
     ('Warszawa-Kielce', '2024-04-23', '12:00:00', 200);
@@ -0,0 +1,189 @@
+package org.example.benchmark;
+
+import org.example.database.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * In-memory H2 database seeded with a deterministic dataset shaped like production:
+ * flights spread over a year on a fixed set of routes, each partially booked by random passengers.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    static final int ROUTE_COUNT = 50;
+    static final LocalDate FIRST_DEPARTURE = LocalDate.of(2024, 1, 1);
+    private static final int BATCH_SIZE = 1_000;
+
+    private final ConnectionPool connectionPool;
+    private final int flights;
+    private final int seatsPerFlight;
+    private final int capacity;
+
+    private BenchmarkDatabase(ConnectionPool connectionPool, int flights, int seatsPerFlight) {
+        this.connectionPool = connectionPool;
+        this.flights = flights;
+        this.seatsPerFlight = seatsPerFlight;
+        this.capacity = seatsPerFlight + seatsPerFlight / 5;
+    }
+
+    static BenchmarkDatabase create(int flights, int seatsPerFlight, int passengers, int poolSize) throws SQLException {
+        String url = "jdbc:h2:mem:benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1";
+        ConnectionPool connectionPool = new ConnectionPool(url, "sa", "", poolSize, 30_000, 0);
+        BenchmarkDatabase database = new BenchmarkDatabase(connectionPool, flights, seatsPerFlight);
+        try (Connection connection = connectionPool.getConnection()) {
+            database.createTables(connection);
+            connection.setAutoCommit(false);
+            database.seedPassengers(connection, passengers);
+            database.seedFlights(connection, passengers);
+            connection.commit();
+        }
+        return database;
+    }
+
+    static String route(int index) {
+        return "Route-" + (index % ROUTE_COUNT);
+    }
+
+    private void createTables(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE flights (" +
+                    "flightNumber BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "route VARCHAR_IGNORECASE(255) NOT NULL, " +
+                    "departureDate DATE NOT NULL, " +
+                    "departureTime TIME NOT NULL, " +
+                    "availableSeats INT NOT NULL, " +
+                    "occupiedSeats INT DEFAULT 0 NOT NULL, " +
+                    "version BIGINT DEFAULT 0 NOT NULL, " +
+                    "freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats))");
+            stmt.execute("CREATE INDEX idx_flights_route_departure ON flights (route, departureDate, departureTime)");
+            stmt.execute("CREATE INDEX idx_flights_departure ON flights (departureDate, departureTime)");
+            stmt.execute("CREATE INDEX idx_flights_free_seats ON flights (freeSeats)");
+            stmt.execute("CREATE TABLE passengers (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "firstName VARCHAR_IGNORECASE(255) NOT NULL, " +
+                    "lastName VARCHAR_IGNORECASE(255) NOT NULL, " +
+                    "phoneNumber VARCHAR(20) UNIQUE)");
+            stmt.execute("CREATE INDEX idx_passengers_name ON passengers (lastName, firstName)");
+            stmt.execute("CREATE INDEX idx_passengers_first_name ON passengers (firstName)");
+            stmt.execute("CREATE TABLE seat_assignments (" +
+                    "flightNumber BIGINT NOT NULL, " +
+                    "seatNumber INT NOT NULL, " +
+                    "passengerId BIGINT NOT NULL, " +
+                    "PRIMARY KEY (flightNumber, seatNumber), " +
+                    "FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber) ON DELETE CASCADE, " +
+                    "FOREIGN KEY (passengerId) REFERENCES passengers(id))");
+            stmt.execute("CREATE INDEX idx_seat_assignments_passenger ON seat_assignments (passengerId)");
+            stmt.execute("CREATE TABLE flights_archive (" +
+                    "flightNumber BIGINT PRIMARY KEY, " +
+                    "route VARCHAR_IGNORECASE(255) NOT NULL, " +
+                    "departureDate DATE NOT NULL, " +
+                    "departureTime TIME NOT NULL, " +
+                    "availableSeats INT NOT NULL, " +
+                    "occupiedSeats INT DEFAULT 0 NOT NULL, " +
+                    "version BIGINT DEFAULT 0 NOT NULL, " +
+                    "freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats))");
+            stmt.execute("CREATE TABLE seat_assignments_archive (" +
+                    "flightNumber BIGINT NOT NULL, " +
+                    "seatNumber INT NOT NULL, " +
+                    "passengerId BIGINT NOT NULL, " +
+                    "PRIMARY KEY (flightNumber, seatNumber), " +
+                    "FOREIGN KEY (flightNumber) REFERENCES flights_archive(flightNumber) ON DELETE CASCADE)");
+        }
+    }
+
+    private void seedPassengers(Connection connection, int passengers) throws SQLException {
+        String sql = "INSERT INTO passengers (firstName, lastName, phoneNumber) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 1; i <= passengers; i++) {
+                stmt.setString(1, "First" + i);
+                stmt.setString(2, "Last" + (i % 5_000));
+                stmt.setString(3, String.valueOf(500_000_000 + i));
+                stmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void seedFlights(Connection connection, int passengers) throws SQLException {
+        Random random = new Random(42);
+        String flightSql = "INSERT INTO flights (flightNumber, route, departureDate, departureTime, availableSeats, occupiedSeats) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        String seatSql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
+        try (PreparedStatement flightStmt = connection.prepareStatement(flightSql);
+             PreparedStatement seatStmt = connection.prepareStatement(seatSql)) {
+            int pendingSeats = 0;
+            for (int i = 0; i < flights; i++) {
+                long flightNumber = i + 1;
+                flightStmt.setLong(1, flightNumber);
+                flightStmt.setString(2, route(i));
+                flightStmt.setDate(3, Date.valueOf(departureDate(i)));
+                flightStmt.setTime(4, Time.valueOf(departureTime(i)));
+                flightStmt.setInt(5, capacity);
+                flightStmt.setInt(6, bookedSeats(i));
+                flightStmt.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    flightStmt.executeBatch();
+                }
+            }
+            flightStmt.executeBatch();
+
+            for (int i = 0; i < flights; i++) {
+                for (int seat = 1; seat <= bookedSeats(i); seat++) {
+                    seatStmt.setLong(1, i + 1);
+                    seatStmt.setInt(2, seat);
+                    seatStmt.setLong(3, 1 + random.nextInt(passengers));
+                    seatStmt.addBatch();
+                    if (++pendingSeats == BATCH_SIZE) {
+                        seatStmt.executeBatch();
+                        pendingSeats = 0;
+                    }
+                }
+            }
+            seatStmt.executeBatch();
+        }
+    }
+
+    int bookedSeats(int index) {
+        return Math.max(0, seatsPerFlight - index % 20);
+    }
+
+    static LocalDate departureDate(int index) {
+        return FIRST_DEPARTURE.plusDays((index / ROUTE_COUNT) % 365);
+    }
+
+    static LocalTime departureTime(int index) {
+        return LocalTime.of(6 + (index % 16), (index % 4) * 15);
+    }
+
+    ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    int getFlights() {
+        return flights;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Connection connection = connectionPool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        } finally {
+            connectionPool.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.benchmark;
+
+import org.example.model.Flight;
+import org.example.repository.FlightRepositoryImpl;
+import org.example.service.FlightCache;
+import org.example.service.FlightService;
+import org.example.service.FlightServiceImpl;
+import org.example.service.ItineraryIndex;
+import org.example.service.SeatInventory;
+import org.example.service.TimetableIndex;
+import org.example.service.VersionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FlightSearchBenchmark {
+
+    @Param("10000")
+    private int flights;
+
+    @Param("200")
+    private int seatsPerFlight;
+
+    @Param("100000")
+    private int passengers;
+
+    @Param({"false", "true"})
+    private boolean timetableIndex;
+
+    private BenchmarkDatabase database;
+    private FlightService flightService;
+    private Map<String, String> routeAndDateCriteria;
+    private Map<String, String> routeAndRangeCriteria;
+    private Map<String, String> availableSeatsCriteria;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.create(flights, seatsPerFlight, passengers, 8);
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(database.getConnectionPool());
+        flightService = timetableIndex
+                ? new FlightServiceImpl(flightRepository, new FlightCache(10_000, 60_000), VersionTable.disabled(),
+                        SeatInventory.disabled(), ItineraryIndex.disabled(), TimetableIndex.load(flightRepository))
+                : new FlightServiceImpl(flightRepository);
+
+        int sample = flights / 2;
+        routeAndDateCriteria = new HashMap<>();
+        routeAndDateCriteria.put("route", BenchmarkDatabase.route(sample));
+        routeAndDateCriteria.put("departureDate", BenchmarkDatabase.departureDate(sample).toString());
+
+        routeAndRangeCriteria = new HashMap<>();
+        routeAndRangeCriteria.put("route", BenchmarkDatabase.route(sample));
+        routeAndRangeCriteria.put("fromDate", BenchmarkDatabase.departureDate(sample).toString());
+        routeAndRangeCriteria.put("toDate", BenchmarkDatabase.departureDate(sample).plusDays(14).toString());
+        routeAndRangeCriteria.put("afterTime", "14:00");
+
+        availableSeatsCriteria = new HashMap<>();
+        availableSeatsCriteria.put("minAvailableSeats", String.valueOf(database.getCapacity() - database.bookedSeats(19)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Flight> searchByRouteAndDate() {
+        return flightService.searchFlights(routeAndDateCriteria);
+    }
+
+    @Benchmark
+    public List<Flight> searchByRouteAndDateRange() {
+        return flightService.searchFlights(routeAndRangeCriteria);
+    }
+
+    @Benchmark
+    public List<Flight> searchByAvailableSeats() {
+        return flightService.searchFlights(availableSeatsCriteria);
+    }
+
+    @Benchmark
+    public Optional<Flight> findByFlightNumber() {
+        return flightService.getFlightByFlightNumber(1 + ThreadLocalRandom.current().nextInt(flights));
+    }
+}
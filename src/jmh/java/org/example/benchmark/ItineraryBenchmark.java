@@ -0,0 +1,73 @@
+package org.example.benchmark;
+
+import org.example.model.Booking;
+import org.example.repository.FlightRepositoryImpl;
+import org.example.service.FlightCache;
+import org.example.service.FlightService;
+import org.example.service.FlightServiceImpl;
+import org.example.service.ItineraryIndex;
+import org.example.service.SeatInventory;
+import org.example.service.TimetableIndex;
+import org.example.service.VersionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ItineraryBenchmark {
+
+    @Param("10000")
+    private int flights;
+
+    @Param("200")
+    private int seatsPerFlight;
+
+    @Param("100000")
+    private int passengers;
+
+    @Param({"false", "true"})
+    private boolean itineraryIndex;
+
+    private BenchmarkDatabase database;
+    private FlightService flightService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.create(flights, seatsPerFlight, passengers, 8);
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(database.getConnectionPool());
+        flightService = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                VersionTable.disabled(), SeatInventory.disabled(),
+                itineraryIndex ? ItineraryIndex.load(flightRepository) : ItineraryIndex.disabled(),
+                TimetableIndex.disabled());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Booking> itinerary() {
+        return flightService.getItinerary(1 + ThreadLocalRandom.current().nextInt(passengers));
+    }
+}
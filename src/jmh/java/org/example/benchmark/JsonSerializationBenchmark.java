@@ -0,0 +1,73 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.example.model.Flight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param("200")
+    private int seatsPerFlight;
+
+    @Param("100")
+    private int flightsPerPage;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private Flight flight;
+    private List<Flight> page;
+    private byte[] flightJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        page = new ArrayList<>(flightsPerPage);
+        for (int i = 0; i < flightsPerPage; i++) {
+            Flight pageFlight = new Flight((long) i + 1, BenchmarkDatabase.route(i), BenchmarkDatabase.departureDate(i),
+                    BenchmarkDatabase.departureTime(i), seatsPerFlight + seatsPerFlight / 5, null);
+            for (int seat = 1; seat <= seatsPerFlight; seat++) {
+                pageFlight.getSeats().put(seat, 1 + random.nextInt(100_000));
+            }
+            page.add(pageFlight);
+        }
+        flight = page.get(0);
+        flightJson = objectMapper.writeValueAsBytes(flight);
+    }
+
+    @Benchmark
+    public byte[] serializeFlight() throws IOException {
+        return objectMapper.writeValueAsBytes(flight);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Flight deserializeFlight() throws IOException {
+        return objectMapper.readValue(flightJson, Flight.class);
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.benchmark;
+
+import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.PageRequest;
+import org.example.repository.FlightRepositoryImpl;
+import org.example.repository.PassengerRepositoryImpl;
+import org.example.service.FlightService;
+import org.example.service.FlightServiceImpl;
+import org.example.service.PassengerService;
+import org.example.service.PassengerServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ListingBenchmark {
+
+    @Param("10000")
+    private int flights;
+
+    @Param("200")
+    private int seatsPerFlight;
+
+    @Param("100000")
+    private int passengers;
+
+    private BenchmarkDatabase database;
+    private FlightService flightService;
+    private PassengerService passengerService;
+    private FlightSearchCriteria firstPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.create(flights, seatsPerFlight, passengers, 8);
+        flightService = new FlightServiceImpl(new FlightRepositoryImpl(database.getConnectionPool()));
+        passengerService = new PassengerServiceImpl(new PassengerRepositoryImpl(database.getConnectionPool()));
+        firstPage = new FlightSearchCriteria();
+        firstPage.setPage(new PageRequest(null, 100));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Flight> findAllFlights() {
+        return flightService.getAllFlights();
+    }
+
+    @Benchmark
+    public void streamAllFlights(Blackhole blackhole) {
+        flightService.streamFlights(new FlightSearchCriteria(), blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Flight> firstPageOfFlights() {
+        return flightService.searchFlights(firstPage);
+    }
+
+    @Benchmark
+    public void streamAllPassengers(Blackhole blackhole) {
+        passengerService.streamPassengers(PageRequest.unpaged(), blackhole::consume);
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.benchmark;
+
+import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
+import org.example.repository.PassengerRepositoryImpl;
+import org.example.service.PassengerIndex;
+import org.example.service.PassengerService;
+import org.example.service.PassengerServiceImpl;
+import org.example.service.VersionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PassengerSearchBenchmark {
+
+    @Param("100000")
+    private int passengers;
+
+    @Param({"false", "true"})
+    private boolean passengerIndex;
+
+    private BenchmarkDatabase database;
+    private PassengerService passengerService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.create(1, 0, passengers, 8);
+        PassengerRepositoryImpl passengerRepository = new PassengerRepositoryImpl(database.getConnectionPool());
+        passengerService = new PassengerServiceImpl(passengerRepository, VersionTable.disabled(),
+                passengerIndex ? PassengerIndex.load(passengerRepository) : PassengerIndex.disabled(),
+                (id, flightNumbers) -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Passenger> searchByLastName() {
+        return passengerService.searchPassengers(criteria("lastName", "Last" + ThreadLocalRandom.current().nextInt(5_000)));
+    }
+
+    @Benchmark
+    public List<Passenger> searchByPrefix() {
+        return passengerService.searchPassengers(criteria("prefix", "Last" + ThreadLocalRandom.current().nextInt(500)));
+    }
+
+    private static PassengerSearchCriteria criteria(String name, String value) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(name, value);
+        parameters.put("limit", "50");
+        return PassengerSearchCriteria.fromQueryParameters(parameters);
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.benchmark;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.example.server.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request routing cost: the previous regex match plus {@code split("/")} parsing against {@link Router}
+ * dispatch, over a mix of flight and seat paths with a query string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+    private static final String[] METHODS = {"GET", "GET", "PUT", "DELETE"};
+    private static final String[] URIS = {
+            "/flights?route=Warszawa-Krakow&departureDate=2024-05-01&limit=50",
+            "/flights/123456",
+            "/flights/123456/seats/42",
+            "/flights/123456/seats/42"};
+
+    private StubExchange[] exchanges;
+    private Router router;
+    private Blackhole blackhole;
+    private int next;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        exchanges = new StubExchange[URIS.length];
+        for (int i = 0; i < URIS.length; i++) {
+            exchanges[i] = new StubExchange(METHODS[i], URI.create(URIS[i]));
+        }
+        router = new Router()
+                .route("GET", "/flights", (exchange, parameters) ->
+                        blackhole.consume(Router.queryParameters(exchange.getRequestURI().getRawQuery())))
+                .route("POST", "/flights", (exchange, parameters) -> { })
+                .route("POST", "/flights/bulk", (exchange, parameters) -> { })
+                .route("GET", "/flights/{flightNumber}", (exchange, parameters) ->
+                        blackhole.consume(parameters.getLong("flightNumber")))
+                .route("PUT", "/flights/{flightNumber}", (exchange, parameters) -> { })
+                .route("DELETE", "/flights/{flightNumber}", (exchange, parameters) -> { })
+                .route("PUT", "/flights/{flightNumber}/seats/{seatNumber:int}", (exchange, parameters) ->
+                        blackhole.consume(parameters.getLong("flightNumber") + parameters.getInt("seatNumber")))
+                .route("DELETE", "/flights/{flightNumber}/seats/{seatNumber:int}", (exchange, parameters) ->
+                        blackhole.consume(parameters.getLong("flightNumber") + parameters.getInt("seatNumber")));
+    }
+
+    private StubExchange nextExchange() {
+        StubExchange exchange = exchanges[next];
+        next = (next + 1) % exchanges.length;
+        return exchange;
+    }
+
+    @Benchmark
+    public void regexAndSplit() {
+        HttpExchange exchange = nextExchange();
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.matches("/flights/\\d+/seats/\\d+")) {
+            String[] pathParts = path.split("/");
+            blackhole.consume(Long.parseLong(pathParts[2]) + Integer.parseInt(pathParts[4]));
+        } else if ("GET".equals(method)) {
+            String[] pathParts = path.split("/");
+            if (pathParts.length == 3 && pathParts[1].equals("flights")) {
+                blackhole.consume(Long.parseLong(pathParts[2]));
+            } else {
+                blackhole.consume(queryToMap(exchange.getRequestURI().getQuery()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void router() throws IOException {
+        router.dispatch(nextExchange());
+    }
+
+    private static Map<String, String> queryToMap(String query) {
+        Map<String, String> result = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] entry = param.split("=");
+                if (entry.length > 1) {
+                    result.put(entry[0], entry[1]);
+                } else {
+                    result.put(entry[0], "");
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class StubExchange extends HttpExchange {
+        private final String method;
+        private final URI uri;
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+
+        private StubExchange(String method, URI uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            responseBody.reset();
+            return responseBody;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) {
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return -1;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
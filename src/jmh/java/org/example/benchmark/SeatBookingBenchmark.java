@@ -0,0 +1,96 @@
+package org.example.benchmark;
+
+import org.example.model.Flight;
+import org.example.repository.FlightRepositoryImpl;
+import org.example.service.FlightCache;
+import org.example.service.FlightService;
+import org.example.service.FlightServiceImpl;
+import org.example.service.ItineraryIndex;
+import org.example.service.SeatInventory;
+import org.example.service.TimetableIndex;
+import org.example.service.VersionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads booking and releasing random seats on one hot flight, which is the contention pattern
+ * of a flash sale. With {@code seatInventory=true} claims are arbitrated in memory and written behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SeatBookingBenchmark {
+
+    @Param("1000")
+    private int flights;
+
+    @Param("200")
+    private int seatsPerFlight;
+
+    @Param("100000")
+    private int passengers;
+
+    @Param("300")
+    private int hotFlightCapacity;
+
+    @Param({"false", "true"})
+    private boolean seatInventory;
+
+    private BenchmarkDatabase database;
+    private SeatInventory inventory;
+    private FlightService flightService;
+    private long hotFlightNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.create(flights, seatsPerFlight, passengers, 16);
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(database.getConnectionPool());
+        inventory = seatInventory
+                ? new SeatInventory(flightRepository, FlightCache.disabled(), id -> id <= passengers, 100, 50)
+                : SeatInventory.disabled();
+        flightService = new FlightServiceImpl(flightRepository, FlightCache.disabled(), VersionTable.disabled(), inventory,
+                ItineraryIndex.disabled(), TimetableIndex.disabled());
+        Flight hotFlight = new Flight((long) flights + 1, "Hot-Route", LocalDate.now(), LocalTime.NOON, hotFlightCapacity, null);
+        flightService.addFlight(hotFlight);
+        hotFlightNumber = hotFlight.getFlightNumber();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        inventory.close();
+        database.close();
+    }
+
+    @Benchmark
+    public boolean bookAndReleaseSeat() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int seatNumber = 1 + random.nextInt(hotFlightCapacity);
+        long passengerId = 1 + random.nextInt(passengers);
+        if (flightService.assignPassengerToFlight(hotFlightNumber, seatNumber, passengerId)) {
+            return flightService.unassignPassengerFromFlight(hotFlightNumber, seatNumber);
+        }
+        return false;
+    }
+}
@@ -2,69 +2,294 @@ package org.example;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import org.example.controller.FlightController;
 import org.example.controller.PassengerController;
+import org.example.database.ConnectionPool;
+import org.example.database.SchemaMigration;
+import org.example.logging.Logging;
+import org.example.logging.RequestLoggingFilter;
+import org.example.metrics.MetricsFilter;
+import org.example.metrics.MetricsHandler;
+import org.example.metrics.MetricsRegistry;
+import org.example.metrics.TimedRepository;
 import org.example.repository.FlightRepository;
 import org.example.repository.FlightRepositoryImpl;
 import org.example.repository.PassengerRepository;
 import org.example.repository.PassengerRepositoryImpl;
+import org.example.service.FlightArchiver;
+import org.example.service.FlightCache;
 import org.example.service.FlightService;
 import org.example.service.FlightServiceImpl;
+import org.example.service.ItineraryIndex;
+import org.example.service.KnownPassengers;
 import org.example.service.PassengerService;
+import org.example.server.CompressionFilter;
+import org.example.server.OverloadFilter;
+import org.example.server.RequestBodyLimitFilter;
+import org.example.server.RequestExecutor;
 import org.example.service.PassengerServiceImpl;
+import org.example.service.PassengerIndex;
+import org.example.service.SeatInventory;
+import org.example.service.SeatJournal;
+import org.example.service.TimetableIndex;
+import org.example.service.VersionTable;
+import org.example.utility.EnvConfig;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Main {
+    private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
     private static final String URL = System.getenv("DATABASE_URL");
     private static final String USER = System.getenv("DATABASE_USER");
     private static final String PASSWORD = System.getenv("DATABASE_PASS");
-    private static Connection connection;
+    private static final int POOL_SIZE = EnvConfig.getInt("DATABASE_POOL_SIZE", 10);
+    private static final long POOL_TIMEOUT_MS = EnvConfig.getLong("DATABASE_POOL_TIMEOUT_MS", 30_000);
+    private static final long POOL_LEAK_THRESHOLD_MS = EnvConfig.getLong("DATABASE_POOL_LEAK_THRESHOLD_MS", 60_000);
+    private static final RequestExecutor.Mode EXECUTOR_MODE = RequestExecutor.Mode.fromString(EnvConfig.getString("SERVER_EXECUTOR", "platform"));
+    private static final int SERVER_THREADS = EnvConfig.getInt("SERVER_THREADS", 32);
+    private static final int SERVER_QUEUE_CAPACITY = EnvConfig.getInt("SERVER_QUEUE_CAPACITY", 1000);
+    private static final int RETRY_AFTER_SECONDS = EnvConfig.getInt("SERVER_RETRY_AFTER_SECONDS", 1);
+    private static final int DRAIN_TIMEOUT_SECONDS = EnvConfig.getInt("SERVER_DRAIN_TIMEOUT_SECONDS", 10);
+    private static final boolean FLIGHT_CACHE_ENABLED = EnvConfig.getBoolean("FLIGHT_CACHE_ENABLED", true);
+    private static final int FLIGHT_CACHE_MAX_SIZE = EnvConfig.getInt("FLIGHT_CACHE_MAX_SIZE", 10_000);
+    private static final long FLIGHT_CACHE_TTL_MS = EnvConfig.getLong("FLIGHT_CACHE_TTL_MS", 60_000);
+    private static final boolean SEAT_INVENTORY_ENABLED = EnvConfig.getBoolean("SEAT_INVENTORY_ENABLED", false);
+    private static final int SEAT_INVENTORY_MAX_FLIGHTS = EnvConfig.getInt("SEAT_INVENTORY_MAX_FLIGHTS", 1000);
+    private static final long SEAT_INVENTORY_FLUSH_INTERVAL_MS = EnvConfig.getLong("SEAT_INVENTORY_FLUSH_INTERVAL_MS", 50);
+    private static final int SEAT_INVENTORY_MAX_PENDING = EnvConfig.getInt("SEAT_INVENTORY_MAX_PENDING", 10_000);
+    private static final int SEAT_INVENTORY_KNOWN_PASSENGERS = EnvConfig.getInt("SEAT_INVENTORY_KNOWN_PASSENGERS", 100_000);
+    private static final String SEAT_JOURNAL_DIR = EnvConfig.getString("SEAT_JOURNAL_DIR", "");
+    private static final boolean PASSENGER_INDEX_ENABLED = EnvConfig.getBoolean("PASSENGER_INDEX_ENABLED", false);
+    private static final boolean ITINERARY_INDEX_ENABLED = EnvConfig.getBoolean("ITINERARY_INDEX_ENABLED", false);
+    private static final boolean TIMETABLE_INDEX_ENABLED = EnvConfig.getBoolean("TIMETABLE_INDEX_ENABLED", false);
+    private static final boolean CONDITIONAL_GET_ENABLED = EnvConfig.getBoolean("CONDITIONAL_GET_ENABLED", true);
+    private static final int BULK_BATCH_SIZE = EnvConfig.getInt("BULK_BATCH_SIZE", 500);
+    private static final int FLIGHT_PURGE_BATCH_SIZE = EnvConfig.getInt("FLIGHT_PURGE_BATCH_SIZE", 100);
+    private static final boolean FLIGHT_ARCHIVE_ENABLED = EnvConfig.getBoolean("FLIGHT_ARCHIVE_ENABLED", false);
+    private static final int FLIGHT_ARCHIVE_HORIZON_DAYS = EnvConfig.getInt("FLIGHT_ARCHIVE_HORIZON_DAYS", 30);
+    private static final int FLIGHT_ARCHIVE_BATCH_SIZE = EnvConfig.getInt("FLIGHT_ARCHIVE_BATCH_SIZE", 100);
+    private static final long FLIGHT_ARCHIVE_INTERVAL_MS = EnvConfig.getLong("FLIGHT_ARCHIVE_INTERVAL_MS", 3_600_000);
+    private static final boolean COMPRESSION_ENABLED = EnvConfig.getBoolean("COMPRESSION_ENABLED", true);
+    private static final int COMPRESSION_MIN_BYTES = EnvConfig.getInt("COMPRESSION_MIN_BYTES", 1024);
+    private static final int COMPRESSION_LEVEL = EnvConfig.getInt("COMPRESSION_LEVEL", 6);
+    private static final long MAX_REQUEST_BODY_BYTES = EnvConfig.getLong("MAX_REQUEST_BODY_BYTES", 1_048_576);
+    private static final long MAX_BULK_REQUEST_BODY_BYTES = EnvConfig.getLong("MAX_BULK_REQUEST_BODY_BYTES", 268_435_456);
+    private static final String LOG_LEVEL = EnvConfig.getString("LOG_LEVEL", "INFO");
+    private static final int LOG_BUFFER_SIZE = EnvConfig.getInt("LOG_BUFFER_SIZE", 8192);
+    private static final int LOG_DEBUG_RATE_LIMIT = EnvConfig.getInt("LOG_DEBUG_RATE_LIMIT", 100);
+    private static final int LOG_ERROR_RATE_LIMIT = EnvConfig.getInt("LOG_ERROR_RATE_LIMIT", 20);
+    private static ConnectionPool connectionPool;
+    private static HttpServer server;
+    private static RequestExecutor requestExecutor;
+    private static SeatInventory seatInventory;
+    private static FlightArchiver flightArchiver;
 
     public static void main(String[] args) {
+        Logging.configure(LOG_LEVEL, LOG_BUFFER_SIZE);
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
-            connection = DriverManager.getConnection(URL, USER, PASSWORD);
+            connectionPool = new ConnectionPool(URL, USER, PASSWORD, POOL_SIZE, POOL_TIMEOUT_MS, POOL_LEAK_THRESHOLD_MS);
+            try (Connection connection = connectionPool.getConnection()) {
+                DatabaseMetaData metaData = connection.getMetaData();
+                LOGGER.info("Connected to " + metaData.getDatabaseProductName() + " "
+                        + metaData.getDatabaseProductVersion() + ", pool size " + POOL_SIZE);
+                SchemaMigration.migrate(connection);
+            }
             startServer();
+            Runtime.getRuntime().addShutdownHook(new Thread(Main::stop, "shutdown"));
         } catch (SQLException | ClassNotFoundException | IOException e) {
-            System.err.println("Database connection failed!");
-            e.printStackTrace();
+            LOGGER.log(Level.SEVERE, "Database connection failed", e);
+            stop();
         }
     }
 
     private static void startServer() throws IOException {
-        FlightRepository flightRepository = new FlightRepositoryImpl(connection);
-        FlightService flightService = new FlightServiceImpl(flightRepository);
-
-        PassengerRepository passengerRepository = new PassengerRepositoryImpl(connection);
-        PassengerService passengerService = new PassengerServiceImpl(passengerRepository);
+        MetricsRegistry metrics = new MetricsRegistry();
+        FlightRepository flightRepository = TimedRepository.wrap(FlightRepository.class,
+                new FlightRepositoryImpl(connectionPool), metrics);
+        FlightCache flightCache = FLIGHT_CACHE_ENABLED
+                ? new FlightCache(FLIGHT_CACHE_MAX_SIZE, FLIGHT_CACHE_TTL_MS)
+                : FlightCache.disabled();
+        PassengerRepository passengerRepository = TimedRepository.wrap(PassengerRepository.class,
+                new PassengerRepositoryImpl(connectionPool), metrics);
+        // The seat inventory, the in-memory indexes and the version tables below are kept in sync only by this
+        // process's own writes; writes made by other processes are not seen, so they assume a single instance per
+        // database and must stay disabled when several instances share one.
+        // loaded before the inventory replays its journal, which passes the replayed changes on to the index
+        ItineraryIndex itineraryIndex = loadItineraryIndex(flightRepository);
+        PassengerIndex passengerIndex = loadPassengerIndex(passengerRepository);
+        KnownPassengers knownPassengers = new KnownPassengers(passengerRepository, passengerIndex,
+                SEAT_INVENTORY_KNOWN_PASSENGERS);
+        VersionTable flightVersions = newVersionTable();
+        seatInventory = SEAT_INVENTORY_ENABLED
+                ? new SeatInventory(flightRepository, flightCache, knownPassengers,
+                        openSeatJournal(), itineraryIndex::apply, flightVersions::changed, SEAT_INVENTORY_MAX_FLIGHTS,
+                        SEAT_INVENTORY_MAX_PENDING, SEAT_INVENTORY_FLUSH_INTERVAL_MS)
+                : SeatInventory.disabled();
+        TimetableIndex timetableIndex = loadTimetableIndex(flightRepository);
+        FlightService flightService = new FlightServiceImpl(flightRepository, flightCache, flightVersions, seatInventory,
+                itineraryIndex, timetableIndex);
+        flightArchiver = FLIGHT_ARCHIVE_ENABLED
+                ? new FlightArchiver(flightService, FLIGHT_ARCHIVE_HORIZON_DAYS, FLIGHT_ARCHIVE_BATCH_SIZE, FLIGHT_ARCHIVE_INTERVAL_MS)
+                : FlightArchiver.disabled();
+        PassengerService passengerService = new PassengerServiceImpl(passengerRepository, newVersionTable(), passengerIndex,
+                (passengerId, flightNumbers) -> {
+                    knownPassengers.forget(passengerId);
+                    flightService.passengerDeleted(passengerId, flightNumbers);
+                });
 
         ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
-        FlightController flightController = new FlightController(flightService, objectMapper);
-        PassengerController passengerController = new PassengerController(passengerService, objectMapper);
+        FlightController flightController = new FlightController(flightService, objectMapper, BULK_BATCH_SIZE, FLIGHT_PURGE_BATCH_SIZE);
+        PassengerController passengerController = new PassengerController(passengerService, flightService, objectMapper, BULK_BATCH_SIZE);
 
-        HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
-        server.createContext("/flights", flightController);
-        server.createContext("/passengers", passengerController);
-        server.setExecutor(null);
+        Filter metricsFilter = new MetricsFilter(metrics);
+        Filter requestLoggingFilter = new RequestLoggingFilter(LOG_DEBUG_RATE_LIMIT, LOG_ERROR_RATE_LIMIT);
+        Filter overloadFilter = new OverloadFilter(RETRY_AFTER_SECONDS);
+        Filter bodyLimitFilter = new RequestBodyLimitFilter(MAX_REQUEST_BODY_BYTES, MAX_BULK_REQUEST_BODY_BYTES);
+        server = HttpServer.create(new InetSocketAddress(8000), 0);
+        HttpContext flightContext = server.createContext("/flights", flightController);
+        flightContext.getFilters().add(metricsFilter);
+        flightContext.getFilters().add(requestLoggingFilter);
+        flightContext.getFilters().add(overloadFilter);
+        flightContext.getFilters().add(bodyLimitFilter);
+        addCompression(flightContext);
+        HttpContext passengerContext = server.createContext("/passengers", passengerController);
+        passengerContext.getFilters().add(metricsFilter);
+        passengerContext.getFilters().add(requestLoggingFilter);
+        passengerContext.getFilters().add(overloadFilter);
+        passengerContext.getFilters().add(bodyLimitFilter);
+        addCompression(passengerContext);
+        addCompression(server.createContext("/metrics", new MetricsHandler(metrics)));
+
+        requestExecutor = RequestExecutor.create(EXECUTOR_MODE, SERVER_THREADS, SERVER_QUEUE_CAPACITY);
+        registerGauges(metrics, flightCache, seatInventory, passengerIndex, itineraryIndex, timetableIndex, flightArchiver);
+        server.setExecutor(requestExecutor);
         server.start();
 
-        System.out.println("Server started on port 8000");
+        LOGGER.info("Server started on port 8000 (" + requestExecutor.getMode().name().toLowerCase()
+                + " threads, limit " + SERVER_THREADS + ", queue " + SERVER_QUEUE_CAPACITY + ")");
     }
 
-    public static void stop() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+    private static void addCompression(HttpContext context) {
+        if (COMPRESSION_ENABLED) {
+            context.getFilters().add(new CompressionFilter(COMPRESSION_MIN_BYTES, COMPRESSION_LEVEL));
+        }
+    }
+
+    private static VersionTable newVersionTable() {
+        return CONDITIONAL_GET_ENABLED ? new VersionTable() : VersionTable.disabled();
+    }
+
+    private static PassengerIndex loadPassengerIndex(PassengerRepository passengerRepository) {
+        if (!PASSENGER_INDEX_ENABLED) {
+            return PassengerIndex.disabled();
+        }
+        long start = System.nanoTime();
+        PassengerIndex index = PassengerIndex.load(passengerRepository);
+        LOGGER.info("Indexed " + index.size() + " passengers in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
+
+    private static ItineraryIndex loadItineraryIndex(FlightRepository flightRepository) {
+        if (!ITINERARY_INDEX_ENABLED) {
+            return ItineraryIndex.disabled();
+        }
+        long start = System.nanoTime();
+        ItineraryIndex index = ItineraryIndex.load(flightRepository);
+        LOGGER.info("Indexed " + index.size() + " seat assignments in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
+
+    private static TimetableIndex loadTimetableIndex(FlightRepository flightRepository) {
+        if (!TIMETABLE_INDEX_ENABLED) {
+            return TimetableIndex.disabled();
+        }
+        long start = System.nanoTime();
+        TimetableIndex index = TimetableIndex.load(flightRepository);
+        LOGGER.info("Indexed " + index.size() + " flights in the timetable in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return index;
+    }
+
+    private static SeatJournal openSeatJournal() throws IOException {
+        if (SEAT_JOURNAL_DIR.isEmpty()) {
+            return SeatJournal.disabled();
+        }
+        LOGGER.info("Journaling seat changes in " + SEAT_JOURNAL_DIR);
+        return SeatJournal.open(Paths.get(SEAT_JOURNAL_DIR));
+    }
+
+    private static void registerGauges(MetricsRegistry metrics, FlightCache flightCache, SeatInventory inventory,
+                                       PassengerIndex passengerIndex, ItineraryIndex itineraryIndex,
+                                       TimetableIndex timetableIndex, FlightArchiver archiver) {
+        ConnectionPool pool = connectionPool;
+        metrics.gauge("db_pool_connections", "Pooled database connections by state", pool::getActiveConnections, "state", "active");
+        metrics.gauge("db_pool_connections", "Pooled database connections by state", pool::getIdleConnections, "state", "idle");
+        metrics.gauge("db_pool_max_connections", "Maximum size of the connection pool", pool::getMaxSize);
+        metrics.gauge("db_pool_pending_threads", "Threads waiting for a database connection", pool::getPendingThreads);
+        metrics.counter("db_pool_borrows_total", "Connections handed out by the pool", pool::getBorrowCount);
+        metrics.counter("db_pool_wait_seconds_total", "Time spent waiting for a database connection",
+                () -> pool.getTotalWaitTimeMillis() / 1000.0);
+        metrics.counter("db_pool_timeouts_total", "Connection requests that timed out", pool::getTimeoutCount);
+        metrics.gauge("flight_cache_size", "Flights held in the cache", flightCache::size);
+        metrics.counter("flight_cache_requests_total", "Flight cache lookups by result", flightCache::getHits, "result", "hit");
+        metrics.counter("flight_cache_requests_total", "Flight cache lookups by result", flightCache::getMisses, "result", "miss");
+        metrics.counter("flight_cache_evictions_total", "Flights evicted from the cache", flightCache::getEvictions);
+        if (inventory.isEnabled()) {
+            metrics.gauge("seat_inventory_flights", "Flights whose seats are arbitrated in memory", inventory::getTrackedFlights);
+            metrics.gauge("seat_inventory_pending_writes", "Changed seats not yet written to the database", inventory::getPendingWrites);
+            metrics.counter("seat_inventory_writes_total", "Seat changes written by the write-behind batcher", inventory::getWrittenChanges);
+            metrics.counter("seat_inventory_rejected_requests_total", "Seat requests refused with 503 because writes were backing up",
+                    inventory::getRejectedRequests);
+        }
+        if (passengerIndex.isEnabled()) {
+            metrics.gauge("passenger_index_size", "Passengers held in the in-memory name index", passengerIndex::size);
+        }
+        if (itineraryIndex.isEnabled()) {
+            metrics.gauge("itinerary_index_size", "Seat assignments held in the in-memory itinerary index", itineraryIndex::size);
+        }
+        if (timetableIndex.isEnabled()) {
+            metrics.gauge("timetable_index_flights", "Flights held in the in-memory timetable", timetableIndex::size);
+        }
+        if (archiver.isEnabled()) {
+            metrics.counter("flights_archived_total", "Departed flights moved to the archive tables", archiver::getArchivedFlights);
+        }
+        RequestExecutor executor = requestExecutor;
+        metrics.gauge("http_active_requests", "Requests currently being handled", executor::getActiveRequests);
+        metrics.counter("http_rejected_requests_total", "Requests rejected with 503 because the server was overloaded",
+                executor::getRejectedRequests);
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(DRAIN_TIMEOUT_SECONDS);
+            server = null;
+        }
+        if (requestExecutor != null) {
+            if (!requestExecutor.shutdown(DRAIN_TIMEOUT_SECONDS * 1000L)) {
+                LOGGER.warning("Request executor did not drain within " + DRAIN_TIMEOUT_SECONDS + " s");
             }
-        } catch (SQLException e) {
-            System.err.println("Error closing the connection: " + e.getMessage());
+            requestExecutor = null;
+        }
+        if (flightArchiver != null) {
+            flightArchiver.close();
+            flightArchiver = null;
+        }
+        if (seatInventory != null) {
+            seatInventory.close();
+            seatInventory = null;
+        }
+        if (connectionPool != null && !connectionPool.isClosed()) {
+            connectionPool.close();
         }
+        Logging.shutdown();
     }
 }
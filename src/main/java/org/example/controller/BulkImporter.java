@@ -0,0 +1,113 @@
+package org.example.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.example.model.BulkImportResult;
+import org.example.server.PayloadTooLargeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a JSON array or newline-delimited JSON one item at a time and writes the items in batches.
+ * An item that cannot be mapped is reported and skipped; a batch that fails as a whole is retried item by item
+ * so that one bad row only costs itself.
+ */
+final class BulkImporter<T> {
+    private static final int MAX_MESSAGE_LENGTH = 300;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final int batchSize;
+    private final Consumer<List<T>> batchWriter;
+    private final Consumer<T> itemWriter;
+
+    BulkImporter(ObjectMapper objectMapper, Class<T> type, int batchSize,
+                 Consumer<List<T>> batchWriter, Consumer<T> itemWriter) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Bulk batch size must be positive");
+        }
+        this.objectMapper = objectMapper;
+        this.itemReader = objectMapper.readerFor(type);
+        this.batchSize = batchSize;
+        this.batchWriter = batchWriter;
+        this.itemWriter = itemWriter;
+    }
+
+    BulkImportResult importFrom(InputStream body) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<T> batch = new ArrayList<>(batchSize);
+        int[] positions = new int[batchSize];
+        int index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = objectMapper.readTree(parser);
+                result.recordReceived();
+                try {
+                    positions[batch.size()] = index;
+                    batch.add(itemReader.readValue(node));
+                } catch (JsonProcessingException e) {
+                    result.recordFailure(index, "Invalid item: " + truncate(e.getOriginalMessage()));
+                }
+                index++;
+                if (batch.size() == batchSize) {
+                    write(batch, positions, result);
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            result.recordAborted(index, "Malformed JSON, import stopped: " + truncate(e.getOriginalMessage()));
+        } catch (PayloadTooLargeException e) {
+            result.recordAborted(index, "Request body too large, import stopped: " + e.getMessage());
+        } finally {
+            if (!batch.isEmpty()) {
+                write(batch, positions, result);
+            }
+        }
+        return result;
+    }
+
+    private void write(List<T> batch, int[] positions, BulkImportResult result) {
+        try {
+            batchWriter.accept(batch);
+            result.recordImported(batch.size());
+        } catch (RuntimeException batchFailure) {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    itemWriter.accept(batch.get(i));
+                    result.recordImported(1);
+                } catch (RuntimeException e) {
+                    result.recordFailure(positions[i], describe(e));
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private static String describe(RuntimeException e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        String message = cause == e ? e.getMessage() : e.getMessage() + ": " + cause.getMessage();
+        return truncate(message);
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "Unknown error";
+        }
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.controller;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.example.model.EntityVersion;
+import org.example.model.Flight;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conditional GET support. The version is checked before anything is loaded, so a matching
+ * {@code If-None-Match} (or, without one, {@code If-Modified-Since}) costs neither a query nor serialization.
+ * A {@code null} version means versioning is disabled and every request gets a full response.
+ * <p>
+ * Conditional writes use {@code If-Match} with the flight's stored {@code version} as a strong entity tag, e.g.
+ * {@code If-Match: "4"}, which the repository turns into an {@code UPDATE ... WHERE version = ?}. A single flight
+ * is therefore served with that same tag, see {@link #versionTag}, so the ETag of a GET can be sent back as is; it
+ * is compared after the flight is loaded, which usually means a flight cache hit, but still saves serialization.
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    static boolean sendNotModified(HttpExchange exchange, EntityVersion version) throws IOException {
+        if (version == null || !isNotModified(exchange.getRequestHeaders(), version)) {
+            return false;
+        }
+        setValidators(exchange, version);
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    static void setValidators(HttpExchange exchange, EntityVersion version) {
+        if (version == null) {
+            return;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", version.getEtag());
+        if (version.getLastModified() != null) {
+            headers.set("Last-Modified", version.getLastModified());
+        }
+        headers.set("Cache-Control", "no-cache");
+    }
+
+    static String versionTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Returns the version named by {@code If-Match}, {@link Flight#ANY_VERSION} when the header is absent or
+     * {@code *}, or {@code null} when the header can never match a stored version (a weak or non-numeric tag).
+     */
+    static Long ifMatchVersion(HttpExchange exchange) {
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return Flight.ANY_VERSION;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            long version = Long.parseLong(tag.substring(1, tag.length() - 1));
+            return version >= 0 ? version : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNotModified(Headers requestHeaders, EntityVersion version) {
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, version.getEtag());
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifModifiedSince == null || version.getLastModifiedMillis() < 0) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return version.getLastModifiedMillis() / 1000 <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match: a {@code W/} prefix on the client's tags is ignored. A
+     * {@code *} never matches here: ids that never changed share the initial version whether or not they exist, so
+     * it is left to the full response, which is a 404 for a missing entity.
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        int start = 0;
+        while (start < ifNoneMatch.length()) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = ifNoneMatch.length();
+            }
+            String tag = ifNoneMatch.substring(start, end).trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+}
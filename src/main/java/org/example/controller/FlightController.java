@@ -1,200 +1,380 @@
 package org.example.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import org.example.model.BulkImportResult;
+import org.example.model.EntityVersion;
 import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.SeatAllocationRequest;
+import org.example.model.SeatAssignmentRequest;
+import org.example.repository.VersionConflictException;
+import org.example.server.PathParameters;
+import org.example.server.PayloadTooLargeException;
+import org.example.server.Router;
+import org.example.service.BackpressureException;
 import org.example.service.FlightService;
 import org.example.utility.CORSHandler;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.logging.Logger;
 
 public class FlightController implements HttpHandler {
+    private static final Logger LOGGER = Logger.getLogger(FlightController.class.getName());
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final FlightService flightService;
     private final ObjectMapper objectMapper;
+    private final BulkImporter<Flight> bulkImporter;
+    private final ObjectWriter streamingFlightWriter;
+    private final ObjectReader flightReader;
+    private final ObjectReader seatAssignmentReader;
+    private final ObjectReader seatAllocationReader;
+    private final ObjectWriter seatMapWriter;
+    private final ObjectWriter flightWriter;
+    private final ObjectWriter flightListWriter;
+    private final ObjectWriter bulkResultWriter;
+    private final int purgeBatchSize;
+    private final Router router;
 
-    public FlightController(FlightService flightService, ObjectMapper objectMapper) {
+    public FlightController(FlightService flightService, ObjectMapper objectMapper, int bulkBatchSize, int purgeBatchSize) {
         this.flightService = flightService;
+        this.purgeBatchSize = purgeBatchSize;
         this.objectMapper = objectMapper;
+        this.bulkImporter = new BulkImporter<>(objectMapper, Flight.class, bulkBatchSize, flightService::addFlights, flightService::addFlight);
+        this.streamingFlightWriter = objectMapper.writerFor(Flight.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flightReader = objectMapper.readerFor(Flight.class);
+        this.seatAssignmentReader = objectMapper.readerFor(SeatAssignmentRequest.class);
+        this.seatAllocationReader = objectMapper.readerFor(SeatAllocationRequest.class);
+        this.seatMapWriter = objectMapper.writerFor(new TypeReference<Map<Integer, Long>>() {});
+        this.flightWriter = objectMapper.writerFor(Flight.class);
+        this.flightListWriter = objectMapper.writerFor(new TypeReference<List<Flight>>() {});
+        this.bulkResultWriter = objectMapper.writerFor(BulkImportResult.class);
+        this.router = new Router()
+                .route("GET", "/flights", this::handleGetRequest)
+                .route("POST", "/flights", this::handlePostRequest)
+                .route("DELETE", "/flights", this::handlePurgeRequest)
+                .route("POST", "/flights/bulk", this::handleBulkImportRequest)
+                .route("GET", "/flights/{flightNumber}", this::handleGetFlightRequest)
+                .route("PUT", "/flights/{flightNumber}", this::handlePutRequest)
+                .route("DELETE", "/flights/{flightNumber}", this::handleDeleteRequest)
+                .route("POST", "/flights/{flightNumber}/seats/allocate", this::handleAllocateSeatsRequest)
+                .route("PUT", "/flights/{flightNumber}/seats/{seatNumber:int}", this::handleAssignPassengerRequest)
+                .route("DELETE", "/flights/{flightNumber}/seats/{seatNumber:int}", this::handleUnassignPassengerRequest);
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        CORSHandler.handlePreflightRequest(exchange);
         if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+            CORSHandler.handlePreflightRequest(exchange);
+            return;
         }
         CORSHandler.applyCorsPolicy(exchange);
-        String requestMethod = exchange.getRequestMethod();
-        String path = exchange.getRequestURI().getPath();
-        if (path.matches("/flights/\\d+/seats/\\d+")) {
-            switch (requestMethod) {
-                case "PUT":
-                    handleAssignPassengerRequest(exchange);
-                    break;
-                case "DELETE":
-                    handleUnassignPassengerRequest(exchange);
-                    break;
-                default:
-                    sendResponse(exchange, 405, "Method Not Allowed");
-                    break;
-            }
-        } else {
-            switch (requestMethod) {
-                case "GET":
-                    handleGetRequest(exchange);
-                    break;
-                case "POST":
-                    handlePostRequest(exchange);
-                    break;
-                case "PUT":
-                    handlePutRequest(exchange);
-                    break;
-                case "DELETE":
-                    handleDeleteRequest(exchange);
-                    break;
-                default:
-                    sendResponse(exchange, 405, "Method Not Allowed");
-            }
-        }
+        router.dispatch(exchange);
     }
 
-    private void handleGetRequest(HttpExchange exchange) throws IOException {
-        Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
-        List<Flight> flights = flightService.searchFlights(params);
-        String response = objectMapper.writeValueAsString(flights);
-        sendResponse(exchange, 200, response);
+    private void handleGetRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        FlightSearchCriteria criteria;
+        try {
+            criteria = FlightSearchCriteria.fromQueryParameters(Router.queryParameters(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+            return;
+        }
+        EntityVersion version = flightService.getFlightsVersion();
+        if (ConditionalRequests.sendNotModified(exchange, version)) {
+            return;
+        }
+        ConditionalRequests.setValidators(exchange, version);
+        if (!criteria.getPage().isPaged()) {
+            streamFlights(exchange, criteria);
+            return;
+        }
+        List<Flight> flights = flightService.searchFlights(criteria);
+        if (flights.size() == criteria.getPage().getLimit()) {
+            long lastFlightNumber = flights.get(flights.size() - 1).getFlightNumber();
+            exchange.getResponseHeaders().set(NEXT_CURSOR_HEADER, String.valueOf(lastFlightNumber));
+        }
+        sendJson(exchange, 200, flightListWriter, flights);
     }
-    private Map<String, String> queryToMap(String query) {
-        Map<String, String> result = new HashMap<>();
-        if (query != null) {
-            for (String param : query.split("&")) {
-                String[] entry = param.split("=");
-                if (entry.length > 1) {
-                    result.put(entry[0], entry[1]);
-                } else {
-                    result.put(entry[0], "");
-                }
-            }
+
+    private void handleGetFlightRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long flightNumber = parameters.getLong("flightNumber");
+        EntityVersion version = flightService.getFlightVersion(flightNumber);
+        Optional<Flight> flight = flightService.getFlightByFlightNumber(flightNumber);
+        if (!flight.isPresent()) {
+            sendResponse(exchange, 404, "Not Found: Flight not found");
+            return;
+        }
+        if (version != null) {
+            // the stored version, so that the ETag is what If-Match takes
+            version = version.withEtag(ConditionalRequests.versionTag(flight.get().getVersion()));
         }
-        return result;
+        if (ConditionalRequests.sendNotModified(exchange, version)) {
+            return;
+        }
+        ConditionalRequests.setValidators(exchange, version);
+        sendJson(exchange, 200, flightWriter, flight.get());
+    }
+
+    private void streamFlights(HttpExchange exchange, FlightSearchCriteria criteria) throws IOException {
+        StreamingResponse.<Flight>writeArray(exchange, objectMapper.getFactory(), streamingFlightWriter,
+                consumer -> flightService.streamFlights(criteria, consumer));
     }
-    private void handlePostRequest(HttpExchange exchange) throws IOException {
+    private void handlePostRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
         if ("application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
-            try (InputStream requestBody = exchange.getRequestBody();
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody))) {
-                String json = reader.lines().collect(java.util.stream.Collectors.joining());
-                Flight flight = objectMapper.readValue(json, Flight.class);
+            Flight flight;
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                flight = flightReader.readValue(requestBody);
+            } catch (IOException e) {
+                sendBodyError(exchange, e);
+                return;
+            }
+            try {
                 flightService.addFlight(flight);
                 sendResponse(exchange, 200, "Flight added successfully");
-            } catch (IOException e) {
-                sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
             }
         } else {
             sendResponse(exchange, 400, "Bad Request: JSON data required");
         }
     }
 
-    private void handlePutRequest(HttpExchange exchange) throws IOException {
-        String[] pathParts = exchange.getRequestURI().getPath().split("/");
-        if (pathParts.length == 3 && pathParts[1].equals("flights")) {
-            long flightNumber = Long.parseLong(pathParts[2]);
-            if ("application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
-                try (InputStream requestBody = exchange.getRequestBody();
-                     BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody))) {
-                    String json = reader.lines().collect(java.util.stream.Collectors.joining());
-                    Flight flight = objectMapper.readValue(json, Flight.class);
-                    if (flight.getFlightNumber() == flightNumber) {
-                        flightService.updateFlight(flightNumber, flight);
-                        sendResponse(exchange, 200, "Flight updated successfully");
-                    } else {
-                        sendResponse(exchange, 400, "Bad Request: Flight number mismatch between URL and body");
-                    }
-                } catch (IOException e) {
-                    sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
-                }
-            } else {
-                sendResponse(exchange, 400, "Bad Request: Content-Type must be application/json");
+    private void handlePutRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long flightNumber = parameters.getLong("flightNumber");
+        if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            sendResponse(exchange, 400, "Bad Request: Content-Type must be application/json");
+            return;
+        }
+        Long expectedVersion = ConditionalRequests.ifMatchVersion(exchange);
+        if (expectedVersion == null) {
+            sendPreconditionFailed(exchange);
+            return;
+        }
+        Flight flight;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            flight = flightReader.readValue(requestBody);
+        } catch (IOException e) {
+            sendBodyError(exchange, e);
+            return;
+        }
+        if (flight.getFlightNumber() == flightNumber) {
+            try {
+                flightService.updateFlight(flightNumber, flight, expectedVersion);
+            } catch (IllegalArgumentException e) {
+                sendResponse(exchange, 404, "Not Found: Flight not found");
+                return;
+            } catch (VersionConflictException e) {
+                sendPreconditionFailed(exchange);
+                return;
             }
+            sendResponse(exchange, 200, "Flight updated successfully");
         } else {
-            sendResponse(exchange, 400, "Bad Request: Invalid URI structure");
+            sendResponse(exchange, 400, "Bad Request: Flight number mismatch between URL and body");
         }
     }
 
-    private void handleDeleteRequest(HttpExchange exchange) throws IOException {
-        String[] pathParts = exchange.getRequestURI().getPath().split("/");
-        if (pathParts.length == 3 && pathParts[1].equals("flights")) {
-            long flightNumber = Long.parseLong(pathParts[2]);
-            flightService.deleteFlight(flightNumber);
-            sendResponse(exchange, 200, "Flight deleted successfully");
-        } else {
-            sendResponse(exchange, 400, "Bad Request: Invalid URI structure");
+    private void handleDeleteRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        try {
+            flightService.deleteFlight(parameters.getLong("flightNumber"));
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 404, "Not Found: Flight not found");
+            return;
         }
+        sendResponse(exchange, 200, "Flight deleted successfully");
     }
 
-    private void handleAssignPassengerRequest(HttpExchange exchange) throws IOException {
-        String[] pathParts = exchange.getRequestURI().getPath().split("/");
-        long flightNumber = Long.parseLong(pathParts[2]);
-        int seatNumber = Integer.parseInt(pathParts[4]);
+    private void handlePurgeRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        String departedBefore;
+        try {
+            departedBefore = Router.queryParameters(exchange.getRequestURI().getRawQuery()).get("departedBefore");
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+            return;
+        }
+        if (departedBefore == null) {
+            sendResponse(exchange, 400, "Bad Request: departedBefore is required");
+            return;
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(departedBefore);
+        } catch (DateTimeParseException e) {
+            sendResponse(exchange, 400, "Bad Request: departedBefore must be a date in yyyy-MM-dd format");
+            return;
+        }
+        int purged = flightService.purgeDepartedFlights(date, purgeBatchSize);
+        sendResponse(exchange, 200, "Deleted " + purged + " flights");
+    }
+
+    private void handleAssignPassengerRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long flightNumber = parameters.getLong("flightNumber");
+        int seatNumber = parameters.getInt("seatNumber");
 
         if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
             sendResponse(exchange, 400, "Bad Request: JSON data required");
             return;
         }
+        Long expectedVersion = ConditionalRequests.ifMatchVersion(exchange);
+        if (expectedVersion == null) {
+            sendPreconditionFailed(exchange);
+            return;
+        }
 
-        String json = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
-                .lines().collect(Collectors.joining());
+        SeatAssignmentRequest request;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            request = seatAssignmentReader.readValue(requestBody);
+        } catch (IOException e) {
+            sendBodyError(exchange, e);
+            return;
+        }
+        Long passengerId = request.getPassengerId();
+        if (passengerId == null) {
+            sendResponse(exchange, 400, "Bad Request: Missing passengerId");
+            return;
+        }
+
+        boolean result;
         try {
-            Map<String, Long> requestData = objectMapper.readValue(json, new TypeReference<Map<String, Long>>(){});
-            Long passengerId = requestData.get("passengerId");
-            if (passengerId == null) {
-                sendResponse(exchange, 400, "Bad Request: Missing passengerId");
-                return;
-            }
+            result = flightService.assignPassengerToFlight(flightNumber, seatNumber, passengerId, expectedVersion);
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange);
+            return;
+        } catch (BackpressureException e) {
+            sendServiceUnavailable(exchange);
+            return;
+        }
+        if (result) {
+            sendResponse(exchange, 200, "Passenger assigned successfully");
+        } else {
+            sendResponse(exchange, 409, "Conflict: Seat already assigned or invalid passenger ID");
+        }
+    }
 
-            boolean result = flightService.assignPassengerToFlight(flightNumber, seatNumber, passengerId);
-            if (result) {
-                sendResponse(exchange, 200, "Passenger assigned successfully");
-            } else {
-                sendResponse(exchange, 409, "Conflict: Seat already assigned or invalid passenger ID");
-            }
-        } catch (JsonProcessingException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+    private void handleUnassignPassengerRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long flightNumber = parameters.getLong("flightNumber");
+        int seatNumber = parameters.getInt("seatNumber");
+        Long expectedVersion = ConditionalRequests.ifMatchVersion(exchange);
+        if (expectedVersion == null) {
+            sendPreconditionFailed(exchange);
+            return;
+        }
+
+        boolean success;
+        try {
+            success = flightService.unassignPassengerFromFlight(flightNumber, seatNumber, expectedVersion);
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange);
+            return;
+        } catch (BackpressureException e) {
+            sendServiceUnavailable(exchange);
+            return;
+        }
+        if (success) {
+            sendResponse(exchange, 200, "Passenger unassigned successfully");
+        } else {
+            sendResponse(exchange, 404, "Not Found: Seat not assigned or invalid number");
         }
     }
 
-    private void handleUnassignPassengerRequest(HttpExchange exchange) throws IOException {
-        String[] pathParts = exchange.getRequestURI().getPath().split("/");
-        if (pathParts.length != 5 || !pathParts[1].equals("flights") || !pathParts[3].equals("seats")) {
-            sendResponse(exchange, 400, "Bad Request: Invalid URI structure");
+    private void handleAllocateSeatsRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long flightNumber = parameters.getLong("flightNumber");
+
+        if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            sendResponse(exchange, 400, "Bad Request: JSON data required");
+            return;
+        }
+        Long expectedVersion = ConditionalRequests.ifMatchVersion(exchange);
+        if (expectedVersion == null) {
+            sendPreconditionFailed(exchange);
+            return;
+        }
+
+        SeatAllocationRequest request;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            request = seatAllocationReader.readValue(requestBody);
+        } catch (IOException e) {
+            sendBodyError(exchange, e);
             return;
         }
 
+        Optional<Map<Integer, Long>> seats;
         try {
-            long flightNumber = Long.parseLong(pathParts[2]);
-            int seatNumber = Integer.parseInt(pathParts[4]);
-
-            boolean success = flightService.unassignPassengerFromFlight(flightNumber, seatNumber);
-            if (success) {
-                sendResponse(exchange, 200, "Passenger unassigned successfully");
-            } else {
-                sendResponse(exchange, 404, "Not Found: Seat not assigned or invalid number");
-            }
-        } catch (NumberFormatException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid flight or seat number format");
+            seats = flightService.allocateSeats(flightNumber, request.getPassengerIds(), request.isAdjacent(), expectedVersion);
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+            return;
+        } catch (VersionConflictException e) {
+            sendPreconditionFailed(exchange);
+            return;
+        }
+        if (!seats.isPresent()) {
+            sendResponse(exchange, 404, "Not Found: Flight not found");
+        } else if (seats.get().isEmpty()) {
+            sendResponse(exchange, 409, "Conflict: Not enough free seats or invalid passenger ID");
+        } else {
+            sendJson(exchange, 200, seatMapWriter, seats.get());
         }
     }
 
+    private void handleBulkImportRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !(contentType.startsWith("application/json") || contentType.startsWith("application/x-ndjson"))) {
+            sendResponse(exchange, 400, "Bad Request: Content-Type must be application/json or application/x-ndjson");
+            return;
+        }
+        BulkImportResult result;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            result = bulkImporter.importFrom(requestBody);
+        }
+        LOGGER.info("Bulk import of flights: " + result.getImported() + " imported, " + result.getFailed() + " failed");
+        sendJson(exchange, 200, bulkResultWriter, result);
+    }
+
+    private void sendPreconditionFailed(HttpExchange exchange) throws IOException {
+        sendResponse(exchange, 412, "Precondition Failed: Flight was modified, reload it and retry");
+    }
+
+    private void sendServiceUnavailable(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendResponse(exchange, 503, "Service Unavailable: Seat changes are backing up, retry shortly");
+    }
+
+    private void sendBodyError(HttpExchange exchange, IOException e) throws IOException {
+        if (e instanceof PayloadTooLargeException) {
+            sendResponse(exchange, 413, "Payload Too Large: " + e.getMessage());
+            return;
+        }
+        LOGGER.fine("Rejected invalid JSON body: " + e.getMessage());
+        sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+    }
+
+    private void sendJson(HttpExchange exchange, int statusCode, ObjectWriter writer, Object value) throws IOException {
+        // serialized before the status is sent, so that a failure here is still answered with a 500
+        byte[] json = writer.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, json.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(json);
+        }
+    }
 
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
+        byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
         OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
+        os.write(responseBytes);
         os.close();
     }
 }
\ No newline at end of file
@@ -1,142 +1,239 @@
 package org.example.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import org.example.model.Booking;
+import org.example.model.BulkImportResult;
+import org.example.model.EntityVersion;
+import org.example.model.PageRequest;
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
+import org.example.repository.DuplicatePhoneNumberException;
+import org.example.server.PathParameters;
+import org.example.server.PayloadTooLargeException;
+import org.example.server.Router;
+import org.example.service.FlightService;
 import org.example.service.PassengerService;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 public class PassengerController implements HttpHandler {
+    private static final Logger LOGGER = Logger.getLogger(PassengerController.class.getName());
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final PassengerService passengerService;
+    private final FlightService flightService;
     private final ObjectMapper objectMapper;
-
-    public PassengerController(PassengerService passengerService, ObjectMapper objectMapper) {
+    private final BulkImporter<Passenger> bulkImporter;
+    private final ObjectWriter streamingPassengerWriter;
+    private final ObjectReader passengerReader;
+    private final ObjectWriter passengerWriter;
+    private final ObjectWriter passengerListWriter;
+    private final ObjectWriter bulkResultWriter;
+    private final ObjectWriter bookingListWriter;
+    private final Router router;
+
+    public PassengerController(PassengerService passengerService, FlightService flightService, ObjectMapper objectMapper,
+                               int bulkBatchSize) {
         this.passengerService = passengerService;
+        this.flightService = flightService;
         this.objectMapper = objectMapper;
+        this.bulkImporter = new BulkImporter<>(objectMapper, Passenger.class, bulkBatchSize, passengerService::addPassengers, passengerService::addPassenger);
+        this.streamingPassengerWriter = objectMapper.writerFor(Passenger.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.passengerReader = objectMapper.readerFor(Passenger.class);
+        this.passengerWriter = objectMapper.writerFor(Passenger.class);
+        this.passengerListWriter = objectMapper.writerFor(new TypeReference<List<Passenger>>() {});
+        this.bulkResultWriter = objectMapper.writerFor(BulkImportResult.class);
+        this.bookingListWriter = objectMapper.writerFor(new TypeReference<List<Booking>>() {});
+        this.router = new Router()
+                .route("GET", "/passengers", this::handleGetRequest)
+                .route("POST", "/passengers", this::handlePostRequest)
+                .route("POST", "/passengers/bulk", this::handleBulkImportRequest)
+                .route("GET", "/passengers/{id}", this::handleGetPassengerRequest)
+                .route("GET", "/passengers/{id}/flights", this::handleGetItineraryRequest)
+                .route("PUT", "/passengers/{id}", this::handlePutRequest)
+                .route("DELETE", "/passengers/{id}", this::handleDeleteRequest);
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        String requestMethod = exchange.getRequestMethod();
-        switch (requestMethod) {
-            case "GET":
-                handleGetRequest(exchange);
-                break;
-            case "POST":
-                handlePostRequest(exchange);
-                break;
-            case "PUT":
-                handlePutRequest(exchange);
-                break;
-            case "DELETE":
-                handleDeleteRequest(exchange);
-                break;
-            default:
-                sendResponse(exchange, 405, "Method Not Allowed");
-        }
+        router.dispatch(exchange);
     }
 
-    private void handleGetRequest(HttpExchange exchange) throws IOException {
-        String path = exchange.getRequestURI().getPath();
-        String[] pathParts = path.split("/");
-
-        if (pathParts.length == 3 && pathParts[1].equals("passengers")) {
-            long id;
-            try {
-                id = Long.parseLong(pathParts[2]);
-                Optional<Passenger> passenger = passengerService.getPassengerById(id);
-                if (passenger.isPresent()) {
-                    String jsonResponse = objectMapper.writeValueAsString(passenger.get());
-                    sendResponse(exchange, 200, jsonResponse);
-                } else {
-                    sendResponse(exchange, 404, "Not Found: Passenger not found");
-                }
-            } catch (NumberFormatException e) {
-                sendResponse(exchange, 400, "Bad Request: Invalid Passenger ID");
-            }
-        } else if (pathParts.length == 2 && pathParts[1].equals("passengers")) {
-            List<Passenger> passengers = passengerService.getAllPassengers();
-            String jsonResponse = objectMapper.writeValueAsString(passengers);
-            sendResponse(exchange, 200, jsonResponse);
+    private void handleGetPassengerRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long id = parameters.getLong("id");
+        EntityVersion version = passengerService.getPassengerVersion(id);
+        if (ConditionalRequests.sendNotModified(exchange, version)) {
+            return;
+        }
+        Optional<Passenger> passenger = passengerService.getPassengerById(id);
+        if (passenger.isPresent()) {
+            ConditionalRequests.setValidators(exchange, version);
+            sendJson(exchange, 200, passengerWriter, passenger.get());
         } else {
-            sendResponse(exchange, 400, "Bad Request: Incorrect URL format");
+            sendResponse(exchange, 404, "Not Found: Passenger not found");
         }
     }
 
-    private void handlePostRequest(HttpExchange exchange) throws IOException {
-        if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
-            sendResponse(exchange, 400, "Bad Request: JSON data required");
+    private void handleGetItineraryRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long id = parameters.getLong("id");
+        if (!passengerService.getPassengerById(id).isPresent()) {
+            sendResponse(exchange, 404, "Not Found: Passenger not found");
             return;
         }
+        sendJson(exchange, 200, bookingListWriter, flightService.getItinerary(id));
+    }
 
-        try (InputStream requestBody = exchange.getRequestBody();
-             BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody))) {
-            String json = reader.lines().collect(Collectors.joining());
-            Passenger passenger = objectMapper.readValue(json, Passenger.class);
-            passengerService.addPassenger(passenger);
-            sendResponse(exchange, 201, "Passenger added successfully");
-        } catch (IOException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+    private void handleGetRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        PassengerSearchCriteria criteria;
+        try {
+            criteria = PassengerSearchCriteria.fromQueryParameters(Router.queryParameters(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+            return;
+        }
+        EntityVersion version = passengerService.getPassengersVersion();
+        if (ConditionalRequests.sendNotModified(exchange, version)) {
+            return;
         }
+        ConditionalRequests.setValidators(exchange, version);
+        if (criteria.hasFilters()) {
+            searchPassengers(exchange, criteria);
+            return;
+        }
+        PageRequest page = criteria.getPage();
+        if (!page.isPaged()) {
+            streamPassengers(exchange, page);
+            return;
+        }
+        List<Passenger> passengers = passengerService.getPassengers(page);
+        if (passengers.size() == page.getLimit()) {
+            long lastId = passengers.get(passengers.size() - 1).getId();
+            exchange.getResponseHeaders().set(NEXT_CURSOR_HEADER, String.valueOf(lastId));
+        }
+        sendJson(exchange, 200, passengerListWriter, passengers);
     }
 
-    private void handlePutRequest(HttpExchange exchange) throws IOException {
-        String path = exchange.getRequestURI().getPath();
-        String[] pathParts = path.split("/");
-        if (pathParts.length != 3) {
-            sendResponse(exchange, 400, "Bad Request: URL should contain the passenger ID");
+    private void searchPassengers(HttpExchange exchange, PassengerSearchCriteria criteria) throws IOException {
+        if (!criteria.getPage().isPaged()) {
+            streamPassengers(exchange, consumer -> passengerService.streamPassengers(criteria, consumer));
             return;
         }
-
-        long id;
+        List<Passenger> passengers;
         try {
-            id = Long.parseLong(pathParts[2]);
-        } catch (NumberFormatException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid Passenger ID");
+            passengers = passengerService.searchPassengers(criteria);
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
             return;
         }
+        if (passengers.size() == criteria.getPage().getLimit()) {
+            long lastId = passengers.get(passengers.size() - 1).getId();
+            exchange.getResponseHeaders().set(NEXT_CURSOR_HEADER, String.valueOf(lastId));
+        }
+        sendJson(exchange, 200, passengerListWriter, passengers);
+    }
+
+    private void streamPassengers(HttpExchange exchange, PageRequest page) throws IOException {
+        streamPassengers(exchange, consumer -> passengerService.streamPassengers(page, consumer));
+    }
 
+    private void streamPassengers(HttpExchange exchange, Consumer<Consumer<Passenger>> source) throws IOException {
+        StreamingResponse.writeArray(exchange, objectMapper.getFactory(), streamingPassengerWriter, source);
+    }
+
+    private void handlePostRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
         if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
             sendResponse(exchange, 400, "Bad Request: JSON data required");
             return;
         }
 
-        try (InputStream requestBody = exchange.getRequestBody();
-             BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody))) {
-            String json = reader.lines().collect(Collectors.joining());
-            Passenger updatedPassenger = objectMapper.readValue(json, Passenger.class);
-            passengerService.updatePassenger(id, updatedPassenger);
-            sendResponse(exchange, 200, "Passenger updated successfully");
+        Passenger passenger;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            passenger = passengerReader.readValue(requestBody);
         } catch (IOException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+            sendBodyError(exchange, e);
+            return;
+        }
+        try {
+            passengerService.addPassenger(passenger);
+            sendResponse(exchange, 201, "Passenger added successfully");
+        } catch (IllegalArgumentException e) {
+            sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+        } catch (DuplicatePhoneNumberException e) {
+            sendResponse(exchange, 409, "Conflict: " + e.getMessage());
         }
     }
-    private void handleDeleteRequest(HttpExchange exchange) throws IOException {
-        String path = exchange.getRequestURI().getPath();
-        String[] pathParts = path.split("/");
-        if (pathParts.length != 3) {
-            sendResponse(exchange, 400, "Bad Request: URL should contain the passenger ID");
+
+    private void handlePutRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        long id = parameters.getLong("id");
+        if (!"application/json".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            sendResponse(exchange, 400, "Bad Request: JSON data required");
             return;
         }
 
-        long id;
+        Passenger updatedPassenger;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            updatedPassenger = passengerReader.readValue(requestBody);
+        } catch (IOException e) {
+            sendBodyError(exchange, e);
+            return;
+        }
         try {
-            id = Long.parseLong(pathParts[2]);
-        } catch (NumberFormatException e) {
-            sendResponse(exchange, 400, "Bad Request: Invalid Passenger ID");
+            passengerService.updatePassenger(id, updatedPassenger);
+        } catch (DuplicatePhoneNumberException e) {
+            sendResponse(exchange, 409, "Conflict: " + e.getMessage());
             return;
         }
-
-        passengerService.deletePassenger(id);
+        sendResponse(exchange, 200, "Passenger updated successfully");
+    }
+    private void handleDeleteRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        passengerService.deletePassenger(parameters.getLong("id"));
         sendResponse(exchange, 200, "Passenger deleted successfully");
     }
 
 
+    private void handleBulkImportRequest(HttpExchange exchange, PathParameters parameters) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !(contentType.startsWith("application/json") || contentType.startsWith("application/x-ndjson"))) {
+            sendResponse(exchange, 400, "Bad Request: Content-Type must be application/json or application/x-ndjson");
+            return;
+        }
+        BulkImportResult result;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            result = bulkImporter.importFrom(requestBody);
+        }
+        LOGGER.info("Bulk import of passengers: " + result.getImported() + " imported, " + result.getFailed() + " failed");
+        sendJson(exchange, 200, bulkResultWriter, result);
+    }
+
+    private void sendBodyError(HttpExchange exchange, IOException e) throws IOException {
+        if (e instanceof PayloadTooLargeException) {
+            sendResponse(exchange, 413, "Payload Too Large: " + e.getMessage());
+            return;
+        }
+        LOGGER.fine("Rejected invalid JSON body: " + e.getMessage());
+        sendResponse(exchange, 400, "Bad Request: Invalid JSON data");
+    }
+
+    private void sendJson(HttpExchange exchange, int statusCode, ObjectWriter writer, Object value) throws IOException {
+        // serialized before the status is sent, so that a failure here is still answered with a 500
+        byte[] json = writer.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, json.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(json);
+        }
+    }
+
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
         byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
         exchange.sendResponseHeaders(statusCode, responseBytes.length);
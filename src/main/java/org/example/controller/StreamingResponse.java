@@ -0,0 +1,77 @@
+package org.example.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Streams a JSON array of unknown length as a chunked 200 response. The status is sent together with the first
+ * bytes the generator writes out rather than up front, so a query that fails before then still ends in a 500. A
+ * failure after that leaves the response unfinished and is rethrown, and the server drops the connection instead
+ * of ending the body normally, so the client cannot take a truncated array for a complete one.
+ */
+final class StreamingResponse extends OutputStream {
+    private final HttpExchange exchange;
+    private OutputStream body;
+
+    private StreamingResponse(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    static <T> void writeArray(HttpExchange exchange, JsonFactory factory, ObjectWriter writer,
+                               Consumer<Consumer<T>> source) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        JsonGenerator generator = factory.createGenerator(new StreamingResponse(exchange));
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        try {
+            generator.writeStartArray();
+            source.accept(value -> {
+                try {
+                    writer.writeValue(generator, value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.close();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        body().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        body().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (body != null) {
+            body.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        body().close();
+    }
+
+    private OutputStream body() throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(200, 0);
+            body = exchange.getResponseBody();
+        }
+        return body;
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The connection handed out by the pool. Statements and result sets created from it are proxied too, so a
+ * connection failure raised while a query runs marks the connection broken just like one raised by the
+ * connection itself, and the pool discards it instead of handing the dead socket out again.
+ */
+final class PooledConnection implements InvocationHandler {
+    private final ConnectionPool pool;
+    private final Connection physicalConnection;
+    private final Connection proxy;
+    private final long borrowedAt;
+    private final Throwable borrowSite;
+    private final AtomicBoolean returned = new AtomicBoolean();
+    private final AtomicBoolean leakReported = new AtomicBoolean();
+    private volatile boolean broken;
+
+    PooledConnection(ConnectionPool pool, Connection physicalConnection, Throwable borrowSite) {
+        this.pool = pool;
+        this.physicalConnection = physicalConnection;
+        this.borrowSite = borrowSite;
+        this.borrowedAt = System.currentTimeMillis();
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                if (returned.compareAndSet(false, true)) {
+                    pool.release(this);
+                }
+                return null;
+            case "isClosed":
+                if (returned.get()) {
+                    return true;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "PooledConnection{" + physicalConnection + "}";
+            default:
+                break;
+        }
+        if (returned.get()) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+        return track(method, invokeTracked(physicalConnection, method, args));
+    }
+
+    private Object invokeTracked(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException && isConnectionFailure((SQLException) cause)) {
+                broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    private Object track(Method method, Object result) {
+        Class<?> type = method.getReturnType();
+        if (result == null || !(Statement.class.isAssignableFrom(type) || ResultSet.class.isAssignableFrom(type))) {
+            return result;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new TrackedObject(result));
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    Connection getProxy() {
+        return proxy;
+    }
+
+    Connection getPhysicalConnection() {
+        return physicalConnection;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean markLeakReported() {
+        return leakReported.compareAndSet(false, true);
+    }
+
+    private final class TrackedObject implements InvocationHandler {
+        private final Object target;
+
+        private TrackedObject(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return PooledConnection.this.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return track(method, invokeTracked(target, method, args));
+            }
+        }
+    }
+}
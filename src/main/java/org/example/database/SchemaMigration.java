@@ -0,0 +1,126 @@
+package org.example.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Brings a database created by an older {@code mysql/init.sql} up to the current schema. The init script only runs
+ * when the data volume is empty, so columns, indexes and tables added to it later are added here on startup as
+ * well. Every step first looks at the database metadata and is skipped when already done, since MySQL 8.0 has no
+ * {@code ADD COLUMN IF NOT EXISTS} or {@code CREATE INDEX IF NOT EXISTS}.
+ */
+public final class SchemaMigration {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigration.class.getName());
+
+    private final Connection connection;
+    private final DatabaseMetaData metaData;
+    private final String stored;
+
+    private SchemaMigration(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.metaData = connection.getMetaData();
+        this.stored = metaData.getDatabaseProductName().equalsIgnoreCase("MySQL") ? " STORED" : "";
+    }
+
+    public static void migrate(Connection connection) throws SQLException {
+        new SchemaMigration(connection).run();
+    }
+
+    private void run() throws SQLException {
+        if (!hasColumn("flights", "occupiedSeats")) {
+            execute("ALTER TABLE flights ADD COLUMN occupiedSeats INT NOT NULL DEFAULT 0");
+            execute("UPDATE flights SET occupiedSeats = "
+                    + "(SELECT COUNT(*) FROM seat_assignments s WHERE s.flightNumber = flights.flightNumber)");
+        }
+        if (!hasColumn("flights", "version")) {
+            execute("ALTER TABLE flights ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+        }
+        if (!hasColumn("flights", "freeSeats")) {
+            execute("ALTER TABLE flights ADD COLUMN freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats)"
+                    + stored);
+        }
+        createIndex("flights", "idx_flights_route_departure", "route, departureDate, departureTime");
+        createIndex("flights", "idx_flights_departure", "departureDate, departureTime");
+        createIndex("flights", "idx_flights_free_seats", "freeSeats");
+        createIndex("passengers", "uk_passengers_phone", "phoneNumber", true);
+        createIndex("passengers", "idx_passengers_name", "lastName, firstName");
+        createIndex("passengers", "idx_passengers_first_name", "firstName");
+        createIndex("seat_assignments", "idx_seat_assignments_passenger", "passengerId");
+        if (!hasTable("flights_archive")) {
+            execute("CREATE TABLE flights_archive ("
+                    + "flightNumber BIGINT NOT NULL, "
+                    + "route VARCHAR(255) NOT NULL, "
+                    + "departureDate DATE NOT NULL, "
+                    + "departureTime TIME NOT NULL, "
+                    + "availableSeats INT NOT NULL, "
+                    + "occupiedSeats INT NOT NULL DEFAULT 0, "
+                    + "version BIGINT NOT NULL DEFAULT 0, "
+                    + "freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats)" + stored + ", "
+                    + "PRIMARY KEY (flightNumber))");
+        }
+        createIndex("flights_archive", "idx_flights_archive_route_departure", "route, departureDate, departureTime");
+        if (!hasTable("seat_assignments_archive")) {
+            execute("CREATE TABLE seat_assignments_archive ("
+                    + "flightNumber BIGINT NOT NULL, "
+                    + "seatNumber INT NOT NULL, "
+                    + "passengerId BIGINT NOT NULL, "
+                    + "PRIMARY KEY (flightNumber, seatNumber), "
+                    + "FOREIGN KEY (flightNumber) REFERENCES flights_archive(flightNumber) ON DELETE CASCADE)");
+        }
+        createIndex("seat_assignments_archive", "idx_seat_assignments_archive_passenger", "passengerId");
+    }
+
+    private void createIndex(String table, String name, String columns) throws SQLException {
+        createIndex(table, name, columns, false);
+    }
+
+    private void createIndex(String table, String name, String columns, boolean unique) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, identifier(table), false, true)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                if (indexName != null) {
+                    names.add(indexName.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (!names.contains(name.toLowerCase(Locale.ROOT))) {
+            execute("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + name + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, identifier(table), null)) {
+            while (rs.next()) {
+                if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasTable(String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, identifier(table), null)) {
+            return rs.next();
+        }
+    }
+
+    private String identifier(String name) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? name.toUpperCase(Locale.ROOT) : name;
+    }
+
+    private void execute(String sql) throws SQLException {
+        LOGGER.info("Migrating schema: " + sql);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that hands records to a single writer thread through a bounded lock-free ring buffer. Logging threads
+ * only claim a slot with a CAS; when the buffer is full the record is dropped and counted instead of blocking
+ * the request. The writer flushes the stream whenever it catches up, so bursts are written in one go.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long CLOSE_TIMEOUT_MILLIS = 2_000;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private final Writer writer;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    private static final class Entry {
+        private final LogRecord record;
+        private final String thread;
+        private final String requestId;
+
+        private Entry(LogRecord record, String thread, String requestId) {
+            this.record = record;
+            this.thread = thread;
+            this.requestId = requestId;
+        }
+    }
+
+    public AsyncLogHandler(OutputStream stream, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Log buffer capacity must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+        setFormatter(new JsonLogFormatter());
+        writerThread = new Thread(this::drain, "async-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        Entry entry = new Entry(record, Thread.currentThread().getName(), CorrelationId.current());
+        if (closed) {
+            synchronized (writer) {
+                write(entry);
+                flushWriter();
+            }
+            return;
+        }
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= slots.length()) {
+                dropped.increment();
+                return;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) (sequence & mask), entry);
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            long sequence = head;
+            if (sequence == tail.get()) {
+                reportDropped();
+                flushWriter();
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            int index = (int) (sequence & mask);
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                // The producer has claimed the slot but not stored the record yet.
+                Thread.yield();
+                continue;
+            }
+            slots.lazySet(index, null);
+            head = sequence + 1;
+            synchronized (writer) {
+                write(entry);
+            }
+        }
+    }
+
+    private void reportDropped() {
+        long count = dropped.sumThenReset();
+        if (count > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, "Log buffer full, dropped " + count + " records");
+            record.setLoggerName(AsyncLogHandler.class.getName());
+            synchronized (writer) {
+                write(new Entry(record, writerThread.getName(), null));
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            JsonLogFormatter formatter = (JsonLogFormatter) getFormatter();
+            writer.write(formatter.format(entry.record, entry.thread, entry.requestId));
+        } catch (IOException | RuntimeException e) {
+            reportError("Failed to write log record", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void flushWriter() {
+        synchronized (writer) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                reportError("Failed to flush log", e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    public long getPending() {
+        return tail.get() - head;
+    }
+
+    /**
+     * Waits until everything published so far has been written, for at most the close timeout.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        while (head < target && writerThread.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 10);
+        }
+        flushWriter();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushWriter();
+    }
+}
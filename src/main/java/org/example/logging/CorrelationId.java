@@ -0,0 +1,54 @@
+package org.example.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request id of the request being handled by the current thread, attached to every log record it produces.
+ */
+public final class CorrelationId {
+    private static final int MAX_LENGTH = 64;
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private CorrelationId() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    static void set(String requestId) {
+        CURRENT.set(requestId);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Keeps a well-formed id supplied by the caller so requests can be traced across services, otherwise
+     * generates a new one.
+     */
+    static String fromHeader(String header) {
+        return isValid(header) ? header : generate();
+    }
+
+    static String generate() {
+        String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static boolean isValid(String value) {
+        if (value == null || value.isEmpty() || value.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats records as one JSON object per line with the level, logger, thread and request id.
+ */
+public class JsonLogFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+        return format(record, Thread.currentThread().getName(), CorrelationId.current());
+    }
+
+    public String format(LogRecord record, String thread, String requestId) {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"ts\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.getMillis()), sb);
+        sb.append("\",\"level\":\"").append(levelName(record.getLevel()));
+        sb.append("\",\"logger\":");
+        appendString(sb, record.getLoggerName());
+        sb.append(",\"thread\":");
+        appendString(sb, thread);
+        if (requestId != null) {
+            sb.append(",\"requestId\":");
+            appendString(sb, requestId);
+        }
+        sb.append(",\"msg\":");
+        appendString(sb, message(record));
+        if (record.getThrown() != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+            sb.append(",\"error\":");
+            appendString(sb, stackTrace.toString());
+        }
+        return sb.append("}\n").toString();
+    }
+
+    /**
+     * Like {@link #formatMessage(LogRecord)} but without locale-specific grouping of numeric parameters,
+     * so ids are logged as {@code 12345} rather than {@code 12,345}.
+     */
+    static String message(LogRecord record) {
+        Object[] parameters = record.getParameters();
+        String message = record.getMessage();
+        if (parameters == null || parameters.length == 0 || message == null) {
+            return message;
+        }
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            arguments[i] = parameters[i] instanceof Number ? parameters[i].toString() : parameters[i];
+        }
+        try {
+            return MessageFormat.format(message, arguments);
+        } catch (IllegalArgumentException e) {
+            return message;
+        }
+    }
+
+    static String levelName(Level level) {
+        int value = level.intValue();
+        if (value >= Level.SEVERE.intValue()) {
+            return "ERROR";
+        } else if (value >= Level.WARNING.intValue()) {
+            return "WARN";
+        } else if (value >= Level.INFO.intValue()) {
+            return "INFO";
+        } else if (value >= Level.FINE.intValue()) {
+            return "DEBUG";
+        }
+        return "TRACE";
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
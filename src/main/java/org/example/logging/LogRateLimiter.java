@@ -0,0 +1,40 @@
+package org.example.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets at most {@code permitsPerSecond} messages through per one-second window and counts the rest, so a
+ * burst of identical errors or debug lines cannot flood the log.
+ */
+public class LogRateLimiter {
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int permitsPerSecond;
+    private final AtomicLong window = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger used = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+
+    public LogRateLimiter(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public boolean tryAcquire() {
+        long now = System.nanoTime() / WINDOW_NANOS;
+        long current = window.get();
+        if (now != current && window.compareAndSet(current, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() <= permitsPerSecond) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    public long drainSuppressed() {
+        return suppressed.sumThenReset();
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.logging;
+
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replaces the default console handler with the asynchronous JSON handler and sets the application log level.
+ */
+public final class Logging {
+    private static final Logger APPLICATION_LOGGER = Logger.getLogger("org.example");
+    private static AsyncLogHandler handler;
+
+    private Logging() {
+    }
+
+    public static synchronized void configure(String level, int bufferSize) {
+        Logger root = Logger.getLogger("");
+        for (Handler existing : root.getHandlers()) {
+            root.removeHandler(existing);
+            existing.close();
+        }
+        handler = new AsyncLogHandler(System.out, bufferSize);
+        handler.setLevel(Level.ALL);
+        root.addHandler(handler);
+        APPLICATION_LOGGER.setLevel(parseLevel(level));
+    }
+
+    public static synchronized void shutdown() {
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+    static Level parseLevel(String level) {
+        switch (level.trim().toUpperCase()) {
+            case "TRACE":
+                return Level.FINEST;
+            case "DEBUG":
+                return Level.FINE;
+            case "INFO":
+                return Level.INFO;
+            case "WARN":
+            case "WARNING":
+                return Level.WARNING;
+            case "ERROR":
+                return Level.SEVERE;
+            case "OFF":
+                return Level.OFF;
+            default:
+                throw new IllegalArgumentException("Unknown log level: " + level);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.logging;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Assigns every request a correlation id (taken from {@code X-Request-Id} when the client sent one), writes a
+ * rate-limited debug access log and turns exceptions escaping the handlers into a logged 500 response, or into a
+ * dropped connection when the response has already started.
+ */
+public class RequestLoggingFilter extends Filter {
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final Logger LOGGER = Logger.getLogger(RequestLoggingFilter.class.getName());
+    private static final byte[] ERROR_RESPONSE = "Internal Server Error".getBytes(StandardCharsets.UTF_8);
+
+    private final LogRateLimiter accessLogLimiter;
+    private final LogRateLimiter errorLogLimiter;
+
+    public RequestLoggingFilter(int debugLogsPerSecond, int errorLogsPerSecond) {
+        this.accessLogLimiter = new LogRateLimiter(debugLogsPerSecond);
+        this.errorLogLimiter = new LogRateLimiter(errorLogsPerSecond);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String requestId = CorrelationId.fromHeader(exchange.getRequestHeaders().getFirst(REQUEST_ID_HEADER));
+        exchange.getResponseHeaders().set(REQUEST_ID_HEADER, requestId);
+        CorrelationId.set(requestId);
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } catch (RuntimeException e) {
+            if (errorLogLimiter.tryAcquire()) {
+                LOGGER.log(Level.SEVERE, "Unhandled error in " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI().getPath() + suppressedSuffix(errorLogLimiter), e);
+            }
+            if (exchange.getResponseCode() < 0) {
+                exchange.sendResponseHeaders(500, ERROR_RESPONSE.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(ERROR_RESPONSE);
+                }
+            } else {
+                // the response is already under way: rethrown, the server drops the connection instead of
+                // ending the body normally
+                throw e;
+            }
+        } finally {
+            if (LOGGER.isLoggable(Level.FINE) && accessLogLimiter.tryAcquire()) {
+                LOGGER.log(Level.FINE, "{0} {1} -> {2} in {3} ms" + suppressedSuffix(accessLogLimiter), new Object[]{
+                        exchange.getRequestMethod(), exchange.getRequestURI(), exchange.getResponseCode(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+            }
+            CorrelationId.clear();
+        }
+    }
+
+    private static String suppressedSuffix(LogRateLimiter limiter) {
+        long suppressed = limiter.drainSuppressed();
+        return suppressed == 0 ? "" : " (" + suppressed + " similar messages suppressed)";
+    }
+
+    @Override
+    public String description() {
+        return "Tags requests with a correlation id and logs them";
+    }
+}
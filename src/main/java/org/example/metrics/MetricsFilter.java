@@ -0,0 +1,89 @@
+package org.example.metrics;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts requests per route and status and records their latency. Numeric path segments are collapsed to
+ * {@code {id}} so that {@code /flights/42} and {@code /flights/43} share one time series.
+ */
+public class MetricsFilter extends Filter {
+    private static final int MAX_ROUTES = 200;
+    private static final String OTHER_ROUTE = "other";
+
+    private final MetricsRegistry registry;
+    private final Set<String> knownRoutes = ConcurrentHashMap.newKeySet();
+
+    public MetricsFilter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            int responseCode = exchange.getResponseCode();
+            String status = responseCode > 0 ? String.valueOf(responseCode) : "500";
+            String method = exchange.getRequestMethod();
+            String route = route(exchange.getRequestURI().getPath());
+            registry.histogram("http_request_duration_seconds", "HTTP request latency",
+                    "method", method, "route", route).recordSince(start);
+            registry.counter("http_requests_total", "HTTP requests by route and status code",
+                    "method", method, "route", route, "status", status).increment();
+        }
+    }
+
+    String route(String path) {
+        String route = normalize(path);
+        if (knownRoutes.contains(route)) {
+            return route;
+        }
+        if (knownRoutes.size() >= MAX_ROUTES) {
+            return OTHER_ROUTE;
+        }
+        knownRoutes.add(route);
+        return route;
+    }
+
+    static String normalize(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                sb.append('/');
+                if (isNumeric(path, start, end)) {
+                    sb.append("{id}");
+                } else {
+                    sb.append(path, start, end);
+                }
+            }
+            start = end + 1;
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+    private static boolean isNumeric(String path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if ((c < '0' || c > '9') && !(c == '-' && i == start && end - start > 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String description() {
+        return "Records request counts and latency per route";
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds counters, latency summaries and gauges and renders them in the Prometheus text exposition format.
+ * Callers on hot paths should look a metric up once and keep the returned instance.
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private enum Type {
+        COUNTER("counter"), SUMMARY("summary"), GAUGE("gauge");
+
+        private final String exposition;
+
+        Type(String exposition) {
+            this.exposition = exposition;
+        }
+    }
+
+    private static final class Family {
+        private final Type type;
+        private final String help;
+        private final ConcurrentMap<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, Type.COUNTER, help).series.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, Type.COUNTER, help).series.put(labels(labels), value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, Type.SUMMARY, help).series.computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, Type.GAUGE, help).series.put(labels(labels), value);
+    }
+
+    private Family family(String name, Type type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type.exposition);
+        }
+        return family;
+    }
+
+    static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append(sb.length() == 0 ? "" : ",").append(labels[i]).append("=\"");
+            escape(labels[i + 1], sb);
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static void escape(String value, StringBuilder sb) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            sb.setLength(0);
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type.exposition).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                switch (family.type) {
+                    case COUNTER:
+                        sample(sb, name, labels, metric instanceof LongAdder
+                                ? ((LongAdder) metric).sum()
+                                : ((DoubleSupplier) metric).getAsDouble());
+                        break;
+                    case GAUGE:
+                        sample(sb, name, labels, ((DoubleSupplier) metric).getAsDouble());
+                        break;
+                    case SUMMARY:
+                        writeSummary(sb, name, labels, (LatencyHistogram) metric);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            writer.write(sb.toString());
+        }
+        writer.flush();
+    }
+
+    private static void writeSummary(StringBuilder sb, String name, String labels, LatencyHistogram histogram) {
+        long[] quantiles = histogram.quantilesNanos(QUANTILES);
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sample(sb, name, prefix + "quantile=\"" + QUANTILES[i] + "\"", quantiles[i] / NANOS_PER_SECOND);
+        }
+        sample(sb, name + "_sum", labels, histogram.getSumNanos() / NANOS_PER_SECOND);
+        sample(sb, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+}
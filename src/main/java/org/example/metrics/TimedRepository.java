@@ -0,0 +1,51 @@
+package org.example.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorates a repository interface so that every call is timed under {@code db_query_duration_seconds}
+ * and failures are counted, without touching the JDBC code itself.
+ */
+public final class TimedRepository implements InvocationHandler {
+    private final Object target;
+    private final String repository;
+    private final MetricsRegistry registry;
+    private final Map<Method, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<Method, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private TimedRepository(Object target, String repository, MetricsRegistry registry) {
+        this.target = target;
+        this.repository = repository;
+        this.registry = registry;
+    }
+
+    public static <T> T wrap(Class<T> type, T target, MetricsRegistry registry) {
+        TimedRepository handler = new TimedRepository(target, type.getSimpleName(), registry);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+        LatencyHistogram latency = latencies.computeIfAbsent(method, m -> registry.histogram(
+                "db_query_duration_seconds", "Repository call latency", "repository", repository, "method", m.getName()));
+        long start = System.nanoTime();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            errors.computeIfAbsent(method, m -> registry.counter(
+                    "db_query_errors_total", "Failed repository calls", "repository", repository, "method", m.getName())).increment();
+            throw e.getCause();
+        } finally {
+            latency.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Comparator;
+
+/**
+ * A seat held by a passenger on a flight, with the flight details an itinerary shows.
+ */
+public final class Booking {
+    /** Itinerary order: by departure, then flight and seat number. */
+    public static final Comparator<Booking> BY_DEPARTURE = Comparator.comparing(Booking::getDepartureDate)
+            .thenComparing(Booking::getDepartureTime)
+            .thenComparingLong(Booking::getFlightNumber)
+            .thenComparingInt(Booking::getSeatNumber);
+
+    private final long flightNumber;
+    private final int seatNumber;
+    private final String route;
+    private final LocalDate departureDate;
+    private final LocalTime departureTime;
+
+    public Booking(long flightNumber, int seatNumber, String route, LocalDate departureDate, LocalTime departureTime) {
+        this.flightNumber = flightNumber;
+        this.seatNumber = seatNumber;
+        this.route = route;
+        this.departureDate = departureDate;
+        this.departureTime = departureTime;
+    }
+
+    public long getFlightNumber() {
+        return flightNumber;
+    }
+
+    public int getSeatNumber() {
+        return seatNumber;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LocalDate getDepartureDate() {
+        return departureDate;
+    }
+
+    public LocalTime getDepartureTime() {
+        return departureTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Booking{" +
+                "flightNumber=" + flightNumber +
+                ", seatNumber=" + seatNumber +
+                ", route='" + route + '\'' +
+                ", departureDate=" + departureDate +
+                ", departureTime=" + departureTime +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first {@link #MAX_REPORTED_FAILURES} failures are listed,
+ * {@code failed} always holds the full count.
+ */
+public class BulkImportResult {
+    public static final int MAX_REPORTED_FAILURES = 1000;
+
+    private int received;
+    private int imported;
+    private int failed;
+    private boolean complete = true;
+    private final List<Failure> failures = new ArrayList<>();
+
+    public static class Failure {
+        private final int index;
+        private final String message;
+
+        public Failure(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public void recordReceived() {
+        received++;
+    }
+
+    public void recordImported(int count) {
+        imported += count;
+    }
+
+    public void recordFailure(int index, String message) {
+        failed++;
+        if (failures.size() < MAX_REPORTED_FAILURES) {
+            failures.add(new Failure(index, message));
+        }
+    }
+
+    /**
+     * Marks the import as stopped early because the rest of the input could not be parsed.
+     */
+    public void recordAborted(int index, String message) {
+        complete = false;
+        recordFailure(index, message);
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public List<Failure> getFailures() {
+        List<Failure> sorted = new ArrayList<>(failures);
+        sorted.sort(Comparator.comparingInt(Failure::getIndex));
+        return sorted;
+    }
+}
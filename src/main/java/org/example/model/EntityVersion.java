@@ -0,0 +1,54 @@
+package org.example.model;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Version stamp of an entity or collection, with its HTTP validators rendered once when the version is created
+ * rather than on every response. A negative modification time means it is unknown and no Last-Modified is sent.
+ */
+public final class EntityVersion {
+    private final long sequence;
+    private final long lastModifiedMillis;
+    private final String etag;
+    private final String lastModified;
+
+    public EntityVersion(String epoch, long sequence, long lastModifiedMillis) {
+        this.sequence = sequence;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.etag = "\"" + epoch + "-" + Long.toString(sequence, 36) + "\"";
+        this.lastModified = lastModifiedMillis < 0 ? null : DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(Instant.ofEpochMilli(lastModifiedMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    private EntityVersion(EntityVersion version, String etag) {
+        this.sequence = version.sequence;
+        this.lastModifiedMillis = version.lastModifiedMillis;
+        this.etag = etag;
+        this.lastModified = version.lastModified;
+    }
+
+    /**
+     * The same version under another entity tag, for entities whose tag is derived from what was loaded.
+     */
+    public EntityVersion withEtag(String etag) {
+        return new EntityVersion(this, etag);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -1,25 +1,29 @@
 package org.example.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.HashMap;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.Map;
 
 public class Flight {
+    /** Expected version that matches whatever version the flight currently has. */
+    public static final long ANY_VERSION = -1;
     private static final AtomicLong idGenerator = new AtomicLong(1);
     private long flightNumber;
     private String route;
     private LocalDate departureDate;
     private LocalTime departureTime;
     private int initialAvailableSeats;
-    private Map<Integer, Long> seatMap;
+    private SeatOccupancy seats;
+    private long version;
 
     public Flight() {
         this.flightNumber = idGenerator.getAndIncrement();
+        this.seats = new SeatOccupancy(0);
     }
 
     @JsonCreator
@@ -34,30 +38,39 @@ public class Flight {
         this.departureDate = departureDate;
         this.departureTime = departureTime;
         this.initialAvailableSeats = availableSeats;
-        this.seatMap = seatMap != null ? new HashMap<>(seatMap) : new HashMap<>(availableSeats);
+        this.seats = new SeatOccupancy(availableSeats);
+        if (seatMap != null) {
+            seatMap.forEach(seats::put);
+        }
+    }
 
+    public Flight copy() {
+        Flight copy = new Flight(flightNumber, route, departureDate, departureTime, initialAvailableSeats, null);
+        copy.seats = new SeatOccupancy(seats);
+        copy.version = version;
+        return copy;
     }
 
+    @JsonSerialize(using = SeatMapSerializer.class)
     public Map<Integer, Long> getSeatMap() {
-        return seatMap;
+        return seats.asMap();
     }
 
     public void setSeatMap(Map<Integer, Long> seatMap) {
-        this.seatMap = seatMap;
+        this.seats = new SeatOccupancy(initialAvailableSeats);
+        seatMap.forEach(seats::put);
+    }
+
+    @JsonIgnore
+    public SeatOccupancy getSeats() {
+        return seats;
     }
+
     public boolean assignPassengerToSeat(int seatNumber, long passengerId) {
-        if (seatNumber > 0 && seatNumber <= initialAvailableSeats && !seatMap.containsKey(seatNumber)) {
-            seatMap.put(seatNumber, passengerId);
-            return true;
-        }
-        return false;
+        return seatNumber > 0 && seatNumber <= initialAvailableSeats && seats.assign(seatNumber, passengerId);
     }
     public boolean unassignPassengerFromSeat(int seatNumber) {
-        if (seatMap.containsKey(seatNumber)) {
-            seatMap.remove(seatNumber);
-            return true;
-        }
-        return false;
+        return seats.release(seatNumber);
     }
     public long getFlightNumber() {
         return flightNumber;
@@ -79,7 +92,12 @@ public class Flight {
         return departureDate;
     }
     public int getAvailableSeats() {
-        return initialAvailableSeats - seatMap.size();
+        return initialAvailableSeats - seats.size();
+    }
+
+    @JsonIgnore
+    public int getCapacity() {
+        return initialAvailableSeats;
     }
 
     public void setDepartureDate(LocalDate departureDate) {
@@ -100,6 +118,14 @@ public class Flight {
         this.initialAvailableSeats = availableSeats;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Flight{" +
@@ -108,7 +134,8 @@ public class Flight {
                 ", departureDate=" + departureDate +
                 ", departureTime=" + departureTime +
                 ", availableSeats=" + getAvailableSeats() +
-                ", seatMap=" + seatMap.toString() +
+                ", seatMap=" + getSeatMap() +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,196 @@
+package org.example.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+public class FlightSearchCriteria {
+    private String route;
+    private LocalDate departureDate;
+    private LocalTime departureTime;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private LocalTime afterTime;
+    private LocalTime beforeTime;
+    private Integer minAvailableSeats;
+    private Integer maxAvailableSeats;
+    private boolean includeArchived;
+    private PageRequest page = PageRequest.unpaged();
+
+    public static FlightSearchCriteria fromQueryParameters(Map<String, String> parameters) {
+        FlightSearchCriteria criteria = new FlightSearchCriteria();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            switch (parameter.getKey()) {
+                case "route":
+                    criteria.setRoute(value);
+                    break;
+                case "departureDate":
+                    criteria.setDepartureDate(parseDate(parameter.getKey(), value));
+                    break;
+                case "departureTime":
+                    criteria.setDepartureTime(parseTime(parameter.getKey(), value));
+                    break;
+                case "fromDate":
+                    criteria.setFromDate(parseDate(parameter.getKey(), value));
+                    break;
+                case "toDate":
+                    criteria.setToDate(parseDate(parameter.getKey(), value));
+                    break;
+                case "afterTime":
+                    criteria.setAfterTime(parseTime(parameter.getKey(), value));
+                    break;
+                case "beforeTime":
+                    criteria.setBeforeTime(parseTime(parameter.getKey(), value));
+                    break;
+                case "minAvailableSeats":
+                    criteria.setMinAvailableSeats(parseInt(parameter.getKey(), value));
+                    break;
+                case "maxAvailableSeats":
+                    criteria.setMaxAvailableSeats(parseInt(parameter.getKey(), value));
+                    break;
+                case "includeArchived":
+                    criteria.setIncludeArchived(parseBoolean(parameter.getKey(), value));
+                    break;
+                default:
+                    break;
+            }
+        }
+        criteria.setPage(PageRequest.fromQueryParameters(parameters));
+        return criteria;
+    }
+
+    private static LocalDate parseDate(String name, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a date in yyyy-MM-dd format");
+        }
+    }
+
+    private static LocalTime parseTime(String name, String value) {
+        try {
+            return LocalTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a time in HH:mm[:ss] format");
+        }
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static boolean parseBoolean(String name, String value) {
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException(name + " must be true or false");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    public LocalDate getDepartureDate() {
+        return departureDate;
+    }
+
+    public void setDepartureDate(LocalDate departureDate) {
+        this.departureDate = departureDate;
+    }
+
+    public LocalTime getDepartureTime() {
+        return departureTime;
+    }
+
+    public void setDepartureTime(LocalTime departureTime) {
+        this.departureTime = departureTime;
+    }
+
+    /** First departure date searched, inclusive. */
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(LocalDate fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    /** Last departure date searched, inclusive. */
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(LocalDate toDate) {
+        this.toDate = toDate;
+    }
+
+    /** Earliest departure time of day searched, inclusive. */
+    public LocalTime getAfterTime() {
+        return afterTime;
+    }
+
+    public void setAfterTime(LocalTime afterTime) {
+        this.afterTime = afterTime;
+    }
+
+    /** Departure time of day the search stops at, exclusive. */
+    public LocalTime getBeforeTime() {
+        return beforeTime;
+    }
+
+    public void setBeforeTime(LocalTime beforeTime) {
+        this.beforeTime = beforeTime;
+    }
+
+    /** Whether the search narrows down the route, departure date or departure time. */
+    public boolean hasScheduleConditions() {
+        return route != null || departureDate != null || departureTime != null || fromDate != null || toDate != null
+                || afterTime != null || beforeTime != null;
+    }
+
+    public Integer getMinAvailableSeats() {
+        return minAvailableSeats;
+    }
+
+    public void setMinAvailableSeats(Integer minAvailableSeats) {
+        this.minAvailableSeats = minAvailableSeats;
+    }
+
+    public Integer getMaxAvailableSeats() {
+        return maxAvailableSeats;
+    }
+
+    public void setMaxAvailableSeats(Integer maxAvailableSeats) {
+        this.maxAvailableSeats = maxAvailableSeats;
+    }
+
+    /** Whether flights moved to the archive tables are searched too; they are left out by default. */
+    public boolean isIncludeArchived() {
+        return includeArchived;
+    }
+
+    public void setIncludeArchived(boolean includeArchived) {
+        this.includeArchived = includeArchived;
+    }
+
+    public PageRequest getPage() {
+        return page;
+    }
+
+    public void setPage(PageRequest page) {
+        this.page = page;
+    }
+}
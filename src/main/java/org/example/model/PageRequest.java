@@ -0,0 +1,57 @@
+package org.example.model;
+
+import java.util.Map;
+
+public class PageRequest {
+    public static final int MAX_LIMIT = 1000;
+    private static final PageRequest UNPAGED = new PageRequest(null, null);
+
+    private final Long after;
+    private final Integer limit;
+
+    public PageRequest(Long after, Integer limit) {
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        this.after = after;
+        this.limit = limit;
+    }
+
+    public static PageRequest unpaged() {
+        return UNPAGED;
+    }
+
+    public static PageRequest fromQueryParameters(Map<String, String> parameters) {
+        Long after = null;
+        Integer limit = null;
+        try {
+            String afterValue = parameters.get("after");
+            if (afterValue != null && !afterValue.isEmpty()) {
+                after = Long.parseLong(afterValue);
+            }
+            String limitValue = parameters.get("limit");
+            if (limitValue != null && !limitValue.isEmpty()) {
+                limit = Integer.parseInt(limitValue);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("after and limit must be integers");
+        }
+        return (after == null && limit == null) ? UNPAGED : new PageRequest(after, limit);
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public long getAfterOrZero() {
+        return after != null ? after : 0L;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public boolean isPaged() {
+        return limit != null;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.model;
+
+import java.util.Map;
+
+/**
+ * Filters of a passenger search. Names match case-insensitively, {@code prefix} matches the start of the last
+ * name. Results are ordered by last name, first name and id, and {@code after} is the id of the last passenger of
+ * the previous page.
+ */
+public class PassengerSearchCriteria {
+    private String firstName;
+    private String lastName;
+    private String phoneNumber;
+    private String prefix;
+    private PageRequest page = PageRequest.unpaged();
+
+    public static PassengerSearchCriteria fromQueryParameters(Map<String, String> parameters) {
+        PassengerSearchCriteria criteria = new PassengerSearchCriteria();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            switch (parameter.getKey()) {
+                case "firstName":
+                    criteria.setFirstName(value);
+                    break;
+                case "lastName":
+                    criteria.setLastName(value);
+                    break;
+                case "phone":
+                    criteria.setPhoneNumber(value);
+                    break;
+                case "prefix":
+                    criteria.setPrefix(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        criteria.setPage(PageRequest.fromQueryParameters(parameters));
+        return criteria;
+    }
+
+    public boolean hasFilters() {
+        return firstName != null || lastName != null || phoneNumber != null || prefix != null;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public PageRequest getPage() {
+        return page;
+    }
+
+    public void setPage(PageRequest page) {
+        this.page = page;
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SeatAllocationRequest {
+    private List<Long> passengerIds;
+    private boolean adjacent;
+
+    public List<Long> getPassengerIds() {
+        return passengerIds;
+    }
+
+    public void setPassengerIds(List<Long> passengerIds) {
+        this.passengerIds = passengerIds;
+    }
+
+    public boolean isAdjacent() {
+        return adjacent;
+    }
+
+    public void setAdjacent(boolean adjacent) {
+        this.adjacent = adjacent;
+    }
+}
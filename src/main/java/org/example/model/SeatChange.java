@@ -0,0 +1,71 @@
+package org.example.model;
+
+import java.util.Objects;
+
+/**
+ * A seat assignment or release waiting to be written to {@code seat_assignments}. A release is represented by a
+ * passenger id of {@link #RELEASED}.
+ */
+public final class SeatChange {
+    public static final long RELEASED = 0L;
+
+    private final long flightNumber;
+    private final int seatNumber;
+    private final long passengerId;
+
+    public SeatChange(long flightNumber, int seatNumber, long passengerId) {
+        this.flightNumber = flightNumber;
+        this.seatNumber = seatNumber;
+        this.passengerId = passengerId;
+    }
+
+    public static SeatChange assigned(long flightNumber, int seatNumber, long passengerId) {
+        return new SeatChange(flightNumber, seatNumber, passengerId);
+    }
+
+    public static SeatChange released(long flightNumber, int seatNumber) {
+        return new SeatChange(flightNumber, seatNumber, RELEASED);
+    }
+
+    public long getFlightNumber() {
+        return flightNumber;
+    }
+
+    public int getSeatNumber() {
+        return seatNumber;
+    }
+
+    public long getPassengerId() {
+        return passengerId;
+    }
+
+    public boolean isRelease() {
+        return passengerId == RELEASED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeatChange)) {
+            return false;
+        }
+        SeatChange that = (SeatChange) o;
+        return flightNumber == that.flightNumber && seatNumber == that.seatNumber && passengerId == that.passengerId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(flightNumber, seatNumber, passengerId);
+    }
+
+    @Override
+    public String toString() {
+        return "SeatChange{" +
+                "flightNumber=" + flightNumber +
+                ", seatNumber=" + seatNumber +
+                ", passengerId=" + passengerId +
+                '}';
+    }
+}
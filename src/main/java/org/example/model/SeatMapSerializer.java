@@ -0,0 +1,34 @@
+package org.example.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class SeatMapSerializer extends StdSerializer<Map<Integer, Long>> {
+
+    @SuppressWarnings("unchecked")
+    public SeatMapSerializer() {
+        super((Class<Map<Integer, Long>>) (Class<?>) Map.class);
+    }
+
+    @Override
+    public void serialize(Map<Integer, Long> seatMap, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject();
+        if (seatMap instanceof SeatOccupancy.MapView) {
+            SeatOccupancy occupancy = ((SeatOccupancy.MapView) seatMap).occupancy();
+            for (int seat = occupancy.nextOccupiedSeat(0); seat >= 0; seat = occupancy.nextOccupiedSeat(seat + 1)) {
+                generator.writeFieldId(seat);
+                generator.writeNumber(occupancy.getPassengerId(seat));
+            }
+        } else {
+            for (Map.Entry<Integer, Long> entry : seatMap.entrySet()) {
+                generator.writeFieldId(entry.getKey());
+                generator.writeNumber(entry.getValue());
+            }
+        }
+        generator.writeEndObject();
+    }
+}
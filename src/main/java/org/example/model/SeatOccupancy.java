@@ -0,0 +1,270 @@
+package org.example.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Seat-to-passenger assignments stored as a bitset of occupied seats plus a primitive array of passenger ids
+ * indexed by seat number, so a full aircraft costs a few kilobytes instead of a boxed map entry per seat.
+ */
+public class SeatOccupancy {
+    public static final int MAX_SEAT_NUMBER = 65_535;
+    private static final int INITIAL_SEATS = 1_024;
+
+    private long[] passengerIds;
+    private long[] occupiedWords;
+    private int size;
+
+    @FunctionalInterface
+    public interface SeatConsumer {
+        void accept(int seatNumber, long passengerId);
+    }
+
+    public SeatOccupancy(int expectedSeats) {
+        int seats = Math.min(Math.max(expectedSeats, 0), INITIAL_SEATS) + 1;
+        this.passengerIds = new long[seats];
+        this.occupiedWords = new long[wordIndex(seats - 1) + 1];
+    }
+
+    public SeatOccupancy(SeatOccupancy other) {
+        this.passengerIds = other.passengerIds.clone();
+        this.occupiedWords = other.occupiedWords.clone();
+        this.size = other.size;
+    }
+
+    private static int wordIndex(int seatNumber) {
+        return seatNumber >>> 6;
+    }
+
+    public boolean isOccupied(int seatNumber) {
+        int word = wordIndex(seatNumber);
+        return seatNumber >= 0 && word < occupiedWords.length && (occupiedWords[word] & (1L << seatNumber)) != 0;
+    }
+
+    public long getPassengerId(int seatNumber) {
+        if (!isOccupied(seatNumber)) {
+            throw new NoSuchElementException("Seat " + seatNumber + " is not occupied");
+        }
+        return passengerIds[seatNumber];
+    }
+
+    public boolean assign(int seatNumber, long passengerId) {
+        if (isOccupied(seatNumber)) {
+            return false;
+        }
+        put(seatNumber, passengerId);
+        return true;
+    }
+
+    public void put(int seatNumber, long passengerId) {
+        if (seatNumber < 0 || seatNumber > MAX_SEAT_NUMBER) {
+            throw new IllegalArgumentException("Seat number must be between 0 and " + MAX_SEAT_NUMBER + ": " + seatNumber);
+        }
+        ensureCapacity(seatNumber);
+        int word = wordIndex(seatNumber);
+        long mask = 1L << seatNumber;
+        if ((occupiedWords[word] & mask) == 0) {
+            occupiedWords[word] |= mask;
+            size++;
+        }
+        passengerIds[seatNumber] = passengerId;
+    }
+
+    public boolean release(int seatNumber) {
+        if (!isOccupied(seatNumber)) {
+            return false;
+        }
+        occupiedWords[wordIndex(seatNumber)] &= ~(1L << seatNumber);
+        passengerIds[seatNumber] = 0L;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(occupiedWords, 0L);
+        Arrays.fill(passengerIds, 0L);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int nextOccupiedSeat(int fromSeat) {
+        if (fromSeat < 0) {
+            fromSeat = 0;
+        }
+        int word = wordIndex(fromSeat);
+        if (word >= occupiedWords.length) {
+            return -1;
+        }
+        long bits = occupiedWords[word] & (-1L << fromSeat);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == occupiedWords.length) {
+                return -1;
+            }
+            bits = occupiedWords[word];
+        }
+    }
+
+    /**
+     * Returns the first free seat in {@code [fromSeat, lastSeat]}, or {@code -1}, skipping full words of
+     * occupied seats at a time.
+     */
+    public int nextFreeSeat(int fromSeat, int lastSeat) {
+        if (fromSeat < 0) {
+            fromSeat = 0;
+        }
+        if (fromSeat > lastSeat) {
+            return -1;
+        }
+        int word = wordIndex(fromSeat);
+        if (word >= occupiedWords.length) {
+            return fromSeat;
+        }
+        long bits = ~occupiedWords[word] & (-1L << fromSeat);
+        while (bits == 0) {
+            if (++word == occupiedWords.length) {
+                // seats beyond the bitset have never been occupied
+                return word << 6 <= lastSeat ? word << 6 : -1;
+            }
+            bits = ~occupiedWords[word];
+        }
+        int seat = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return seat <= lastSeat ? seat : -1;
+    }
+
+    /**
+     * Returns the first seat of the lowest run of {@code length} consecutive free seats in
+     * {@code [fromSeat, lastSeat]}, or {@code -1}. Runs are measured between occupied seats, so the cost
+     * depends on the number of gaps rather than the number of seats.
+     */
+    public int findFreeRun(int fromSeat, int lastSeat, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Run length must be positive: " + length);
+        }
+        int start = nextFreeSeat(fromSeat, lastSeat);
+        while (start >= 0 && lastSeat - start + 1 >= length) {
+            int occupied = nextOccupiedSeat(start);
+            if (occupied < 0 || occupied - start >= length) {
+                return start;
+            }
+            start = nextFreeSeat(occupied + 1, lastSeat);
+        }
+        return -1;
+    }
+
+    public void forEach(SeatConsumer consumer) {
+        for (int seat = nextOccupiedSeat(0); seat >= 0; seat = nextOccupiedSeat(seat + 1)) {
+            consumer.accept(seat, passengerIds[seat]);
+        }
+    }
+
+    private void ensureCapacity(int seatNumber) {
+        if (seatNumber >= passengerIds.length) {
+            int newLength = Math.min(Math.max(seatNumber + 1, passengerIds.length * 2), MAX_SEAT_NUMBER + 1);
+            passengerIds = Arrays.copyOf(passengerIds, newLength);
+        }
+        int word = wordIndex(seatNumber);
+        if (word >= occupiedWords.length) {
+            occupiedWords = Arrays.copyOf(occupiedWords, wordIndex(passengerIds.length - 1) + 1);
+        }
+    }
+
+    public Map<Integer, Long> asMap() {
+        return new MapView();
+    }
+
+    final class MapView extends AbstractMap<Integer, Long> {
+
+        SeatOccupancy occupancy() {
+            return SeatOccupancy.this;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && isOccupied((Integer) key);
+        }
+
+        @Override
+        public Long get(Object key) {
+            return containsKey(key) ? passengerIds[(Integer) key] : null;
+        }
+
+        @Override
+        public Long put(Integer seatNumber, Long passengerId) {
+            Long previous = get(seatNumber);
+            SeatOccupancy.this.put(seatNumber, passengerId);
+            return previous;
+        }
+
+        @Override
+        public Long remove(Object key) {
+            Long previous = get(key);
+            if (previous != null) {
+                release((Integer) key);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            SeatOccupancy.this.clear();
+        }
+
+        @Override
+        public Set<Entry<Integer, Long>> entrySet() {
+            return new AbstractSet<Entry<Integer, Long>>() {
+                @Override
+                public Iterator<Entry<Integer, Long>> iterator() {
+                    return new Iterator<Entry<Integer, Long>>() {
+                        private int next = nextOccupiedSeat(0);
+                        private int current = -1;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<Integer, Long> next() {
+                            if (next < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            current = next;
+                            next = nextOccupiedSeat(current + 1);
+                            return new SimpleImmutableEntry<>(current, passengerIds[current]);
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current < 0) {
+                                throw new IllegalStateException();
+                            }
+                            release(current);
+                            current = -1;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
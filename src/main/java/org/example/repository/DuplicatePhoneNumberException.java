@@ -0,0 +1,11 @@
+package org.example.repository;
+
+/**
+ * Thrown when a passenger would get a phone number that another passenger already has.
+ */
+public class DuplicatePhoneNumberException extends RuntimeException {
+
+    public DuplicatePhoneNumberException(String phoneNumber) {
+        super("Phone number " + phoneNumber + " is already registered");
+    }
+}
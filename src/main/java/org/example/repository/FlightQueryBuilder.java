@@ -0,0 +1,67 @@
+package org.example.repository;
+
+import org.example.model.FlightSearchCriteria;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+
+final class FlightQueryBuilder {
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+    static FlightQueryBuilder forCriteria(FlightSearchCriteria criteria) {
+        FlightQueryBuilder builder = new FlightQueryBuilder();
+        if (criteria.getRoute() != null) {
+            builder.where("f.route = ?", criteria.getRoute());
+        }
+        if (criteria.getDepartureDate() != null) {
+            builder.where("f.departureDate = ?", Date.valueOf(criteria.getDepartureDate()));
+        }
+        if (criteria.getDepartureTime() != null) {
+            builder.where("f.departureTime = ?", Time.valueOf(criteria.getDepartureTime()));
+        }
+        if (criteria.getFromDate() != null) {
+            builder.where("f.departureDate >= ?", Date.valueOf(criteria.getFromDate()));
+        }
+        if (criteria.getToDate() != null) {
+            builder.where("f.departureDate <= ?", Date.valueOf(criteria.getToDate()));
+        }
+        if (criteria.getAfterTime() != null) {
+            builder.where("f.departureTime >= ?", Time.valueOf(criteria.getAfterTime()));
+        }
+        if (criteria.getBeforeTime() != null) {
+            builder.where("f.departureTime < ?", Time.valueOf(criteria.getBeforeTime()));
+        }
+        if (criteria.getMinAvailableSeats() != null) {
+            builder.where("f.freeSeats >= ?", criteria.getMinAvailableSeats());
+        }
+        if (criteria.getMaxAvailableSeats() != null) {
+            builder.where("f.freeSeats <= ?", criteria.getMaxAvailableSeats());
+        }
+        if (criteria.getPage().getAfter() != null) {
+            builder.where("f.flightNumber > ?", criteria.getPage().getAfter());
+        }
+        return builder;
+    }
+
+    FlightQueryBuilder where(String condition, Object parameter) {
+        conditions.add(condition);
+        parameters.add(parameter);
+        return this;
+    }
+
+    String whereClause() {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    int bind(PreparedStatement stmt) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+        return parameters.size();
+    }
+}
@@ -1,19 +1,38 @@
 package org.example.repository;
 
+import org.example.model.Booking;
 import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.SeatChange;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FlightRepository {
     void save(Flight flight);
-    void update(long flightNumber, Flight updatedFlight);
+    void saveAll(List<Flight> flights);
+    void update(long flightNumber, Flight updatedFlight, long expectedVersion);
     void delete(long flightNumber);
+    List<Long> findDepartedBefore(LocalDate date, int limit);
+    List<Long> deleteDeparted(List<Long> flightNumbers, LocalDate date);
+    List<Long> archiveDeparted(List<Long> flightNumbers, LocalDate date);
     List<Flight> findAll();
+    List<Flight> search(FlightSearchCriteria criteria);
+    void streamSearch(FlightSearchCriteria criteria, Consumer<Flight> consumer);
     Optional<Flight> findByFlightNumber(long flightNumber);
+    Map<Long, Flight> findByFlightNumbers(Collection<Long> flightNumbers);
     void updateSeatAssignments(long flightNumber, Map<Integer, Long> seatMap) throws SQLException;
+    boolean assignSeat(long flightNumber, int seatNumber, long passengerId, long expectedVersion);
+    boolean assignSeats(long flightNumber, Map<Integer, Long> seats, long expectedVersion);
+    boolean releaseSeat(long flightNumber, int seatNumber, long expectedVersion);
+    List<SeatChange> applySeatChanges(List<SeatChange> changes);
+    List<SeatChange> applySeatChanges(List<SeatChange> changes, Map<Long, Long> versions);
+    List<Booking> findBookingsByPassenger(long passengerId);
 
     }
 
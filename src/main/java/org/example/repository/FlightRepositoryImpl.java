@@ -1,26 +1,45 @@
 package org.example.repository;
 
+import org.example.model.Booking;
 import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.PageRequest;
+import org.example.model.SeatChange;
+
+import javax.sql.DataSource;
 import java.sql.*;
 import java.sql.Date;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class FlightRepositoryImpl implements FlightRepository {
-    private Connection connection;
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int MAX_IN_LIST_SIZE = 256;
+    private static final String FLIGHT_COLUMNS =
+            "flightNumber, route, departureDate, departureTime, availableSeats, occupiedSeats, version";
+    // archived flights keep their numbers, so the union stays unique and ordered by flightNumber like the live table
+    private static final String ALL_FLIGHTS = "(SELECT " + FLIGHT_COLUMNS + ", freeSeats FROM flights " +
+            "UNION ALL SELECT " + FLIGHT_COLUMNS + ", freeSeats FROM flights_archive)";
+    private static final String ALL_SEAT_ASSIGNMENTS = "(SELECT flightNumber, seatNumber, passengerId FROM seat_assignments " +
+            "UNION ALL SELECT flightNumber, seatNumber, passengerId FROM seat_assignments_archive)";
+    private final DataSource dataSource;
 
-    public FlightRepositoryImpl(Connection connection) {
-        this.connection = connection;
+    public FlightRepositoryImpl(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     @Override
     public void save(Flight flight) {
-        String sql = "INSERT INTO flights (flightNumber, route, departureDate, departureTime, availableSeats) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        String sql = "INSERT INTO flights (flightNumber, route, departureDate, departureTime, availableSeats, occupiedSeats) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setLong(1, flight.getFlightNumber());
             stmt.setString(2, flight.getRoute());
             stmt.setDate(3, Date.valueOf(flight.getDepartureDate()));
             stmt.setTime(4, Time.valueOf(flight.getDepartureTime()));
-            stmt.setInt(5, flight.getAvailableSeats());
+            stmt.setInt(5, flight.getCapacity());
+            stmt.setInt(6, flight.getSeatMap().size());
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
                 throw new SQLException("Creating flight failed, no rows affected.");
@@ -32,24 +51,81 @@ public class FlightRepositoryImpl implements FlightRepository {
                     throw new SQLException("Creating flight failed, no ID obtained.");
                 }
             }
-            saveSeatAssignments(flight.getFlightNumber(), flight.getSeatMap());
+            saveSeatAssignments(connection, flight.getFlightNumber(), flight.getSeatMap());
         } catch (SQLException e) {
             throw new RuntimeException("Error saving flight", e);
         }
     }
 
     @Override
-    public void update(long flightNumber, Flight updatedFlight) {
-        String sql = "UPDATE flights SET route = ?, departureDate = ?, departureTime = ?, availableSeats = ? WHERE flightNumber = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, updatedFlight.getRoute());
-            stmt.setDate(2, Date.valueOf(updatedFlight.getDepartureDate()));
-            stmt.setTime(3, Time.valueOf(updatedFlight.getDepartureTime()));
-            stmt.setInt(4, updatedFlight.getAvailableSeats());
-            stmt.setLong(5, updatedFlight.getFlightNumber());
-            stmt.executeUpdate();
+    public void saveAll(List<Flight> flights) {
+        String sql = "INSERT INTO flights (flightNumber, route, departureDate, departureTime, availableSeats, occupiedSeats) VALUES (?, ?, ?, ?, ?, ?)";
+        String seatSql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql);
+                 PreparedStatement seatStmt = connection.prepareStatement(seatSql)) {
+                boolean hasSeats = false;
+                for (Flight flight : flights) {
+                    stmt.setLong(1, flight.getFlightNumber());
+                    stmt.setString(2, flight.getRoute());
+                    stmt.setDate(3, Date.valueOf(flight.getDepartureDate()));
+                    stmt.setTime(4, Time.valueOf(flight.getDepartureTime()));
+                    stmt.setInt(5, flight.getCapacity());
+                    stmt.setInt(6, flight.getSeats().size());
+                    stmt.addBatch();
+                    for (Map.Entry<Integer, Long> seat : flight.getSeatMap().entrySet()) {
+                        seatStmt.setLong(1, flight.getFlightNumber());
+                        seatStmt.setInt(2, seat.getKey());
+                        seatStmt.setLong(3, seat.getValue());
+                        seatStmt.addBatch();
+                        hasSeats = true;
+                    }
+                }
+                stmt.executeBatch();
+                if (hasSeats) {
+                    seatStmt.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving flights", e);
+        }
+    }
 
-            updateSeatAssignments(flightNumber, updatedFlight.getSeatMap());
+    @Override
+    public void update(long flightNumber, Flight updatedFlight, long expectedVersion) {
+        String sql = "UPDATE flights SET route = ?, departureDate = ?, departureTime = ?, availableSeats = ?, occupiedSeats = ?, " +
+                "version = version + 1 WHERE flightNumber = ?" + versionCondition(expectedVersion);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, updatedFlight.getRoute());
+                stmt.setDate(2, Date.valueOf(updatedFlight.getDepartureDate()));
+                stmt.setTime(3, Time.valueOf(updatedFlight.getDepartureTime()));
+                stmt.setInt(4, updatedFlight.getCapacity());
+                stmt.setInt(5, updatedFlight.getSeatMap().size());
+                stmt.setLong(6, flightNumber);
+                if (expectedVersion != Flight.ANY_VERSION) {
+                    stmt.setLong(7, expectedVersion);
+                }
+                if (stmt.executeUpdate() == 0) {
+                    if (expectedVersion != Flight.ANY_VERSION && exists(connection, flightNumber)) {
+                        throw new VersionConflictException(flightNumber, expectedVersion);
+                    }
+                    throw new IllegalArgumentException("Flight with number " + flightNumber + " does not exist");
+                }
+
+                clearSeatAssignments(connection, flightNumber);
+                saveSeatAssignments(connection, flightNumber, updatedFlight.getSeatMap());
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Error updating flight", e);
         }
@@ -59,43 +135,205 @@ public class FlightRepositoryImpl implements FlightRepository {
     @Override
     public void delete(long flightNumber) {
         String sql = "DELETE FROM flights WHERE flightNumber = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, flightNumber);
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new IllegalArgumentException("Flight with number " + flightNumber + " does not exist");
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                clearSeatAssignments(connection, flightNumber);
+                stmt.setLong(1, flightNumber);
+                if (stmt.executeUpdate() == 0) {
+                    throw new IllegalArgumentException("Flight with number " + flightNumber + " does not exist");
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
             }
-            clearSeatAssignments(flightNumber);
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting flight", e);
         }
     }
 
+    /**
+     * Returns the numbers of at most {@code limit} flights departing before {@code date}, lowest first. Callers
+     * purge or archive in batches by passing each batch to {@link #deleteDeparted} or {@link #archiveDeparted} until
+     * fewer than {@code limit} are returned, so that no transaction holds seat row locks for long.
+     */
+    @Override
+    public List<Long> findDepartedBefore(LocalDate date, int limit) {
+        String sql = "SELECT flightNumber FROM flights WHERE departureDate < ? ORDER BY flightNumber LIMIT ?";
+        List<Long> flightNumbers = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(date));
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    flightNumbers.add(rs.getLong("flightNumber"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding departed flights", e);
+        }
+        return flightNumbers;
+    }
+
+    /**
+     * Deletes those of {@code flightNumbers} that still depart before {@code date}, with their seats, in one
+     * transaction, and returns their numbers.
+     */
+    @Override
+    public List<Long> deleteDeparted(List<Long> flightNumbers, LocalDate date) {
+        try {
+            return removeDeparted(flightNumbers, date, false);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting departed flights", e);
+        }
+    }
+
+    /**
+     * Like {@link #deleteDeparted}, but copies the flights and their seats to {@code flights_archive} and
+     * {@code seat_assignments_archive} in the same transaction before deleting them.
+     */
+    @Override
+    public List<Long> archiveDeparted(List<Long> flightNumbers, LocalDate date) {
+        try {
+            return removeDeparted(flightNumbers, date, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error archiving departed flights", e);
+        }
+    }
+
+    private List<Long> removeDeparted(List<Long> candidates, LocalDate date, boolean archive) throws SQLException {
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String selectSql = "SELECT flightNumber FROM flights WHERE flightNumber IN (" +
+                String.join(", ", Collections.nCopies(candidates.size(), "?")) + ") AND departureDate < ? " +
+                "ORDER BY flightNumber FOR UPDATE";
+        String archiveFlightSql = "INSERT INTO flights_archive (" + FLIGHT_COLUMNS + ") " +
+                "SELECT " + FLIGHT_COLUMNS + " FROM flights WHERE flightNumber = ?";
+        String archiveSeatsSql = "INSERT INTO seat_assignments_archive (flightNumber, seatNumber, passengerId) " +
+                "SELECT flightNumber, seatNumber, passengerId FROM seat_assignments WHERE flightNumber = ?";
+        String seatsSql = "DELETE FROM seat_assignments WHERE flightNumber = ?";
+        String flightSql = "DELETE FROM flights WHERE flightNumber = ?";
+        List<Long> flightNumbers = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(selectSql);
+                 PreparedStatement archiveFlight = connection.prepareStatement(archiveFlightSql);
+                 PreparedStatement archiveSeats = connection.prepareStatement(archiveSeatsSql);
+                 PreparedStatement deleteSeats = connection.prepareStatement(seatsSql);
+                 PreparedStatement deleteFlight = connection.prepareStatement(flightSql)) {
+                int index = 1;
+                for (long flightNumber : candidates) {
+                    select.setLong(index++, flightNumber);
+                }
+                select.setDate(index, Date.valueOf(date));
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        flightNumbers.add(rs.getLong("flightNumber"));
+                    }
+                }
+                for (long flightNumber : flightNumbers) {
+                    if (archive) {
+                        archiveFlight.setLong(1, flightNumber);
+                        archiveFlight.addBatch();
+                        archiveSeats.setLong(1, flightNumber);
+                        archiveSeats.addBatch();
+                    }
+                    deleteSeats.setLong(1, flightNumber);
+                    deleteSeats.addBatch();
+                    deleteFlight.setLong(1, flightNumber);
+                    deleteFlight.addBatch();
+                }
+                if (!flightNumbers.isEmpty()) {
+                    if (archive) {
+                        archiveFlight.executeBatch();
+                        archiveSeats.executeBatch();
+                    }
+                    deleteSeats.executeBatch();
+                    deleteFlight.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        return flightNumbers;
+    }
+
     @Override
     public List<Flight> findAll() {
-        List<Flight> flights = new ArrayList<>();
         String sql = "SELECT f.*, a.seatNumber, a.passengerId FROM flights f " +
-                "LEFT JOIN seat_assignments a ON f.flightNumber = a.flightNumber";
-        try (Statement stmt = connection.createStatement();
+                "LEFT JOIN seat_assignments a ON f.flightNumber = a.flightNumber " +
+                "ORDER BY f.flightNumber";
+        List<Flight> flights = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            Map<Long, Flight> flightsMap = new HashMap<>();
-            while (rs.next()) {
-                long flightNumber = rs.getLong("flightNumber");
-                Flight flight = flightsMap.getOrDefault(flightNumber, extractFlightFromResultSet(rs));
-                int seatNumber = rs.getInt("seatNumber");
-                if (!rs.wasNull()) {
-                    long passengerId = rs.getLong("passengerId");
-                    flight.getSeatMap().put(seatNumber, passengerId);
-                }
-                flightsMap.putIfAbsent(flightNumber, flight);
-            }
-            flights.addAll(flightsMap.values());
+            emitFlightsWithSeats(rs, flights::add);
         } catch (SQLException e) {
             throw new RuntimeException("Error retrieving flights", e);
         }
         return flights;
     }
 
+    @Override
+    public List<Flight> search(FlightSearchCriteria criteria) {
+        List<Flight> flights = new ArrayList<>();
+        streamSearch(criteria, flights::add);
+        return flights;
+    }
+
+    @Override
+    public void streamSearch(FlightSearchCriteria criteria, Consumer<Flight> consumer) {
+        FlightQueryBuilder query = FlightQueryBuilder.forCriteria(criteria);
+        PageRequest page = criteria.getPage();
+        String flightsTable = criteria.isIncludeArchived() ? ALL_FLIGHTS : "flights";
+        String seatsTable = criteria.isIncludeArchived() ? ALL_SEAT_ASSIGNMENTS : "seat_assignments";
+        String flightsSource = page.isPaged()
+                ? "(SELECT * FROM " + flightsTable + " f" + query.whereClause() + " ORDER BY f.flightNumber LIMIT ?) f"
+                : flightsTable + " f";
+        String sql = "SELECT f.*, a.seatNumber, a.passengerId FROM " + flightsSource +
+                " LEFT JOIN " + seatsTable + " a ON f.flightNumber = a.flightNumber" +
+                (page.isPaged() ? "" : query.whereClause()) +
+                " ORDER BY f.flightNumber";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            int boundParameters = query.bind(stmt);
+            if (page.isPaged()) {
+                stmt.setInt(boundParameters + 1, page.getLimit());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                emitFlightsWithSeats(rs, consumer);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error searching flights", e);
+        }
+    }
+
+    private void emitFlightsWithSeats(ResultSet rs, Consumer<Flight> consumer) throws SQLException {
+        Flight current = null;
+        while (rs.next()) {
+            long flightNumber = rs.getLong("flightNumber");
+            if (current == null || current.getFlightNumber() != flightNumber) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = extractFlightFromResultSet(rs);
+            }
+            int seatNumber = rs.getInt("seatNumber");
+            if (!rs.wasNull()) {
+                current.getSeats().put(seatNumber, rs.getLong("passengerId"));
+            }
+        }
+        if (current != null) {
+            consumer.accept(current);
+        }
+    }
+
     private Flight extractFlightFromResultSet(ResultSet rs) throws SQLException {
         Flight flight = new Flight(
                 rs.getLong("flightNumber"),
@@ -103,69 +341,368 @@ public class FlightRepositoryImpl implements FlightRepository {
                 rs.getDate("departureDate").toLocalDate(),
                 rs.getTime("departureTime").toLocalTime(),
                 rs.getInt("availableSeats"),
-                new HashMap<>()
+                null
         );
+        flight.setVersion(rs.getLong("version"));
         return flight;
     }
 
     @Override
     public Optional<Flight> findByFlightNumber(long flightNumber) {
-        String sql = "SELECT * FROM flights WHERE flightNumber = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        String sql = "SELECT f.*, a.seatNumber, a.passengerId FROM flights f " +
+                "LEFT JOIN seat_assignments a ON f.flightNumber = a.flightNumber " +
+                "WHERE f.flightNumber = ?";
+        List<Flight> flights = new ArrayList<>(1);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, flightNumber);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Flight flight = extractFlightFromResultSet(rs);
-                    flight.setSeatMap(loadSeatAssignments(flight.getFlightNumber()));
-                    return Optional.of(flight);
-                }
+                emitFlightsWithSeats(rs, flights::add);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error finding flight by flight number", e);
         }
-        return Optional.empty();
+        return flights.isEmpty() ? Optional.empty() : Optional.of(flights.get(0));
     }
 
-
-    private Map<Integer, Long> loadSeatAssignments(long flightNumber) {
-        Map<Integer, Long> seatMap = new HashMap<>();
-        String sql = "SELECT seatNumber, passengerId FROM seat_assignments WHERE flightNumber = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, flightNumber);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                seatMap.put(rs.getInt("seatNumber"), rs.getLong("passengerId"));
+    @Override
+    public Map<Long, Flight> findByFlightNumbers(Collection<Long> flightNumbers) {
+        long[] ids = flightNumbers.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        Map<Long, Flight> flights = new LinkedHashMap<>(ids.length * 2);
+        if (ids.length == 0) {
+            return flights;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            for (int from = 0; from < ids.length; from += MAX_IN_LIST_SIZE) {
+                int count = Math.min(MAX_IN_LIST_SIZE, ids.length - from);
+                // Padding the IN list to a power of two keeps the number of distinct statements small,
+                // so they stay in the per-connection prepared statement cache.
+                int placeholders = Math.min(MAX_IN_LIST_SIZE, Integer.highestOneBit(count * 2 - 1));
+                String sql = "SELECT f.*, a.seatNumber, a.passengerId FROM flights f " +
+                        "LEFT JOIN seat_assignments a ON f.flightNumber = a.flightNumber " +
+                        "WHERE f.flightNumber IN (" + String.join(", ", Collections.nCopies(placeholders, "?")) + ") " +
+                        "ORDER BY f.flightNumber";
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < placeholders; i++) {
+                        stmt.setLong(i + 1, ids[from + Math.min(i, count - 1)]);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        emitFlightsWithSeats(rs, flight -> flights.put(flight.getFlightNumber(), flight));
+                    }
+                }
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Error loading seat assignments", e);
+            throw new RuntimeException("Error finding flights by flight numbers", e);
         }
-        return seatMap;
+        return flights;
     }
+
     @Override
     public void updateSeatAssignments(long flightNumber, Map<Integer, Long> seatMap) throws SQLException {
-        clearSeatAssignments(flightNumber);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                clearSeatAssignments(connection, flightNumber);
+                saveSeatAssignments(connection, flightNumber, seatMap);
+                updateOccupiedSeats(connection, flightNumber, seatMap.size());
+                connection.commit();
+            } catch (RuntimeException e) {
+                connection.rollback();
+                throw new RuntimeException("Error updating seat assignments", e);
+            }
+        }
+    }
 
-        String sql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+    @Override
+    public boolean assignSeat(long flightNumber, int seatNumber, long passengerId, long expectedVersion) {
+        if (seatNumber <= 0) {
+            return false;
+        }
+        String reserveSql = "UPDATE flights SET occupiedSeats = occupiedSeats + 1, version = version + 1 " +
+                "WHERE flightNumber = ? AND occupiedSeats < availableSeats AND availableSeats >= ?" +
+                versionCondition(expectedVersion);
+        String insertSql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
             connection.setAutoCommit(false);
-            for (Map.Entry<Integer, Long> entry : seatMap.entrySet()) {
-                stmt.setLong(1, flightNumber);
-                stmt.setInt(2, entry.getKey());
-                stmt.setLong(3, entry.getValue());
-                stmt.addBatch();
+            try (PreparedStatement reserve = connection.prepareStatement(reserveSql);
+                 PreparedStatement insert = connection.prepareStatement(insertSql)) {
+                reserve.setLong(1, flightNumber);
+                reserve.setInt(2, seatNumber);
+                if (expectedVersion != Flight.ANY_VERSION) {
+                    reserve.setLong(3, expectedVersion);
+                }
+                if (reserve.executeUpdate() == 0) {
+                    connection.rollback();
+                    checkVersion(connection, flightNumber, expectedVersion);
+                    return false;
+                }
+                insert.setLong(1, flightNumber);
+                insert.setInt(2, seatNumber);
+                insert.setLong(3, passengerId);
+                insert.executeUpdate();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                if (SqlErrors.isConstraintViolation(e)) {
+                    return false;
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error assigning seat", e);
+        }
+    }
+
+    /**
+     * Assigns several seats in one transaction: either all of them are taken or none is. Returns {@code false}
+     * when the flight lacks the capacity, a seat is taken or a passenger does not exist.
+     */
+    @Override
+    public boolean assignSeats(long flightNumber, Map<Integer, Long> seats, long expectedVersion) {
+        if (seats.isEmpty() || Collections.min(seats.keySet()) <= 0) {
+            return false;
+        }
+        String reserveSql = "UPDATE flights SET occupiedSeats = occupiedSeats + ?, version = version + 1 " +
+                "WHERE flightNumber = ? AND occupiedSeats + ? <= availableSeats AND availableSeats >= ?" +
+                versionCondition(expectedVersion);
+        String insertSql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement reserve = connection.prepareStatement(reserveSql);
+                 PreparedStatement insert = connection.prepareStatement(insertSql)) {
+                reserve.setInt(1, seats.size());
+                reserve.setLong(2, flightNumber);
+                reserve.setInt(3, seats.size());
+                reserve.setInt(4, Collections.max(seats.keySet()));
+                if (expectedVersion != Flight.ANY_VERSION) {
+                    reserve.setLong(5, expectedVersion);
+                }
+                if (reserve.executeUpdate() == 0) {
+                    connection.rollback();
+                    checkVersion(connection, flightNumber, expectedVersion);
+                    return false;
+                }
+                for (Map.Entry<Integer, Long> seat : seats.entrySet()) {
+                    insert.setLong(1, flightNumber);
+                    insert.setInt(2, seat.getKey());
+                    insert.setLong(3, seat.getValue());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                if (SqlErrors.isConstraintViolation(e)) {
+                    return false;
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error assigning seats", e);
+        }
+    }
+
+    @Override
+    public boolean releaseSeat(long flightNumber, int seatNumber, long expectedVersion) {
+        String deleteSql = "DELETE FROM seat_assignments WHERE flightNumber = ? AND seatNumber = ?";
+        String releaseSql = "UPDATE flights SET occupiedSeats = occupiedSeats - 1, version = version + 1 " +
+                "WHERE flightNumber = ?" + versionCondition(expectedVersion);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(deleteSql);
+                 PreparedStatement release = connection.prepareStatement(releaseSql)) {
+                delete.setLong(1, flightNumber);
+                delete.setInt(2, seatNumber);
+                if (delete.executeUpdate() == 0) {
+                    connection.rollback();
+                    checkVersion(connection, flightNumber, expectedVersion);
+                    return false;
+                }
+                release.setLong(1, flightNumber);
+                if (expectedVersion != Flight.ANY_VERSION) {
+                    release.setLong(2, expectedVersion);
+                }
+                if (release.executeUpdate() == 0) {
+                    connection.rollback();
+                    throw new VersionConflictException(flightNumber, expectedVersion);
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error releasing seat", e);
+        }
+    }
+
+    @Override
+    public List<Booking> findBookingsByPassenger(long passengerId) {
+        String sql = "SELECT a.flightNumber, a.seatNumber, f.route, f.departureDate, f.departureTime " +
+                "FROM seat_assignments a JOIN flights f ON f.flightNumber = a.flightNumber " +
+                "WHERE a.passengerId = ? " +
+                "ORDER BY f.departureDate, f.departureTime, a.flightNumber, a.seatNumber";
+        List<Booking> bookings = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, passengerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    bookings.add(new Booking(
+                            rs.getLong("flightNumber"),
+                            rs.getInt("seatNumber"),
+                            rs.getString("route"),
+                            rs.getDate("departureDate").toLocalDate(),
+                            rs.getTime("departureTime").toLocalTime()));
+                }
             }
-            stmt.executeBatch();
-            connection.commit();
         } catch (SQLException e) {
-            connection.rollback();
-            throw new RuntimeException("Error updating seat assignments", e);
-        } finally {
-            connection.setAutoCommit(true);
+            throw new RuntimeException("Error finding bookings by passenger", e);
         }
+        return bookings;
     }
 
+    /**
+     * Writes seat changes that have already been arbitrated elsewhere, at most one per seat, in one transaction:
+     * every touched seat is cleared, assigned seats are inserted, and each flight's occupied count is recomputed.
+     * If a constraint rejects the batch (a passenger deleted in the meantime) the changes are retried one by one
+     * and the ones that still fail are returned; any other failure is thrown and nothing is written.
+     */
+    @Override
+    public List<SeatChange> applySeatChanges(List<SeatChange> changes) {
+        return applySeatChanges(changes, Collections.emptyMap());
+    }
+
+    /**
+     * Like {@link #applySeatChanges(List)}, but stores the given version for the flights in {@code versions}
+     * instead of incrementing theirs, for changes whose version was already handed out when they were accepted.
+     */
+    @Override
+    public List<SeatChange> applySeatChanges(List<SeatChange> changes, Map<Long, Long> versions) {
+        if (changes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                writeSeatChanges(connection, changes, versions);
+                connection.commit();
+                return Collections.emptyList();
+            } catch (SQLException e) {
+                connection.rollback();
+                if (!SqlErrors.isConstraintViolation(e)) {
+                    throw e;
+                }
+            }
+            List<SeatChange> rejected = new ArrayList<>();
+            for (SeatChange change : changes) {
+                try {
+                    writeSeatChanges(connection, Collections.singletonList(change), versions);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (!SqlErrors.isConstraintViolation(e)) {
+                        throw e;
+                    }
+                    rejected.add(change);
+                }
+            }
+            return rejected;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error applying seat changes", e);
+        }
+    }
+
+    private void writeSeatChanges(Connection connection, List<SeatChange> changes, Map<Long, Long> versions)
+            throws SQLException {
+        String deleteSql = "DELETE FROM seat_assignments WHERE flightNumber = ? AND seatNumber = ?";
+        String insertSql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
+        String countSql = "UPDATE flights SET occupiedSeats = " +
+                "(SELECT COUNT(*) FROM seat_assignments a WHERE a.flightNumber = ?), version = COALESCE(?, version + 1) " +
+                "WHERE flightNumber = ?";
+        Set<Long> flightNumbers = new LinkedHashSet<>();
+        try (PreparedStatement delete = connection.prepareStatement(deleteSql);
+             PreparedStatement insert = connection.prepareStatement(insertSql);
+             PreparedStatement count = connection.prepareStatement(countSql)) {
+            boolean hasInserts = false;
+            for (SeatChange change : changes) {
+                delete.setLong(1, change.getFlightNumber());
+                delete.setInt(2, change.getSeatNumber());
+                delete.addBatch();
+                if (!change.isRelease()) {
+                    insert.setLong(1, change.getFlightNumber());
+                    insert.setInt(2, change.getSeatNumber());
+                    insert.setLong(3, change.getPassengerId());
+                    insert.addBatch();
+                    hasInserts = true;
+                }
+                flightNumbers.add(change.getFlightNumber());
+            }
+            delete.executeBatch();
+            if (hasInserts) {
+                insert.executeBatch();
+            }
+            for (long flightNumber : flightNumbers) {
+                Long version = versions.get(flightNumber);
+                count.setLong(1, flightNumber);
+                if (version != null) {
+                    count.setLong(2, version);
+                } else {
+                    count.setNull(2, Types.BIGINT);
+                }
+                count.setLong(3, flightNumber);
+                count.addBatch();
+            }
+            count.executeBatch();
+        }
+    }
+
+    private static String versionCondition(long expectedVersion) {
+        return expectedVersion == Flight.ANY_VERSION ? "" : " AND version = ?";
+    }
+
+    /**
+     * Tells a stale version apart from an ordinary seat conflict after a conditional seat change matched no row.
+     */
+    private void checkVersion(Connection connection, long flightNumber, long expectedVersion) throws SQLException {
+        if (expectedVersion == Flight.ANY_VERSION) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT version FROM flights WHERE flightNumber = ?")) {
+            stmt.setLong(1, flightNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getLong("version") != expectedVersion) {
+                    throw new VersionConflictException(flightNumber, expectedVersion);
+                }
+            }
+        }
+    }
+
+    private boolean exists(Connection connection, long flightNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM flights WHERE flightNumber = ?")) {
+            stmt.setLong(1, flightNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void updateOccupiedSeats(Connection connection, long flightNumber, int occupiedSeats) {
+        String sql = "UPDATE flights SET occupiedSeats = ?, version = version + 1 WHERE flightNumber = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, occupiedSeats);
+            stmt.setLong(2, flightNumber);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating occupied seats", e);
+        }
+    }
 
-    private void clearSeatAssignments(long flightNumber) throws SQLException {
+    private void clearSeatAssignments(Connection connection, long flightNumber) {
         String sql = "DELETE FROM seat_assignments WHERE flightNumber = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, flightNumber);
@@ -175,7 +712,7 @@ public class FlightRepositoryImpl implements FlightRepository {
         }
     }
 
-    private void saveSeatAssignments(long flightNumber, Map<Integer, Long> seatMap) throws SQLException {
+    private void saveSeatAssignments(Connection connection, long flightNumber, Map<Integer, Long> seatMap) {
         String sql = "INSERT INTO seat_assignments (flightNumber, seatNumber, passengerId) VALUES (?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             for (Map.Entry<Integer, Long> entry : seatMap.entrySet()) {
@@ -0,0 +1,63 @@
+package org.example.repository;
+
+import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class PassengerQueryBuilder {
+    static final String ORDER_BY = " ORDER BY lastName, firstName, id";
+
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+    /**
+     * Builds the conditions of a search; {@code cursor} is the last passenger of the previous page, the next page
+     * starts after it in {@link #ORDER_BY} order.
+     */
+    static PassengerQueryBuilder forCriteria(PassengerSearchCriteria criteria, Passenger cursor) {
+        PassengerQueryBuilder builder = new PassengerQueryBuilder();
+        if (criteria.getLastName() != null) {
+            builder.where("lastName = ?", criteria.getLastName());
+        }
+        if (criteria.getFirstName() != null) {
+            builder.where("firstName = ?", criteria.getFirstName());
+        }
+        if (criteria.getPhoneNumber() != null) {
+            builder.where("phoneNumber = ?", criteria.getPhoneNumber());
+        }
+        if (criteria.getPrefix() != null) {
+            builder.where("lastName LIKE ? ESCAPE '!'", escapeLike(criteria.getPrefix()) + "%");
+        }
+        if (cursor != null) {
+            builder.where("(lastName > ? OR (lastName = ? AND (firstName > ? OR (firstName = ? AND id > ?))))",
+                    cursor.getLastName(), cursor.getLastName(), cursor.getFirstName(), cursor.getFirstName(), cursor.getId());
+        }
+        return builder;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    PassengerQueryBuilder where(String condition, Object... values) {
+        conditions.add(condition);
+        parameters.addAll(Arrays.asList(values));
+        return this;
+    }
+
+    String whereClause() {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    int bind(PreparedStatement stmt) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+        return parameters.size();
+    }
+}
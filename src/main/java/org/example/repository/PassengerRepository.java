@@ -1,13 +1,21 @@
 package org.example.repository;
 
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PassengerRepository {
     void save(Passenger passenger);
+    void saveAll(List<Passenger> passengers);
     void update(long id, Passenger passenger);
-    void delete(long id);
+    List<Long> delete(long id);
     List<Passenger> findAll();
+    List<Passenger> findPage(long after, int limit);
+    void streamAll(long after, Consumer<Passenger> consumer);
+    List<Passenger> search(PassengerSearchCriteria criteria);
+    void streamSearch(PassengerSearchCriteria criteria, Consumer<Passenger> consumer);
     Optional<Passenger> findById(long id);
+    boolean exists(long id);
 }
\ No newline at end of file
@@ -1,23 +1,31 @@
 package org.example.repository;
 
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class PassengerRepositoryImpl implements PassengerRepository {
-    private final Connection connection;
+    private static final Logger LOGGER = Logger.getLogger(PassengerRepositoryImpl.class.getName());
+    private static final int STREAM_FETCH_SIZE = 500;
+    private final DataSource dataSource;
 
-    public PassengerRepositoryImpl(Connection connection) {
-        this.connection = connection;
+    public PassengerRepositoryImpl(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     @Override
     public void save(Passenger passenger) {
         String sql = "INSERT INTO passengers (firstName, lastName, phoneNumber) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, passenger.getFirstName());
             stmt.setString(2, passenger.getLastName());
             stmt.setString(3, passenger.getPhoneNumber());
@@ -30,64 +38,227 @@ public class PassengerRepositoryImpl implements PassengerRepository {
                 }
             }
         } catch (SQLException e) {
+            if (SqlErrors.isConstraintViolation(e)) {
+                throw new DuplicatePhoneNumberException(passenger.getPhoneNumber());
+            }
             throw new RuntimeException("Error saving passenger", e);
         }
     }
 
+    @Override
+    public void saveAll(List<Passenger> passengers) {
+        String sql = "INSERT INTO passengers (firstName, lastName, phoneNumber) VALUES (?, ?, ?)";
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Passenger passenger : passengers) {
+                    stmt.setString(1, passenger.getFirstName());
+                    stmt.setString(2, passenger.getLastName());
+                    stmt.setString(3, passenger.getPhoneNumber());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    for (int i = 0; i < passengers.size() && rs.next(); i++) {
+                        passengers.get(i).setId(rs.getLong(1));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving passengers", e);
+        }
+    }
+
     @Override
     public void update(long id, Passenger updatedPassenger) {
         String sql = "UPDATE passengers SET firstName = ?, lastName = ?, phoneNumber = ? WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, updatedPassenger.getFirstName());
             stmt.setString(2, updatedPassenger.getLastName());
             stmt.setString(3, updatedPassenger.getPhoneNumber());
             stmt.setLong(4, id);
             stmt.executeUpdate();
         } catch (SQLException e) {
+            if (SqlErrors.isConstraintViolation(e)) {
+                throw new DuplicatePhoneNumberException(updatedPassenger.getPhoneNumber());
+            }
             throw new RuntimeException("Error updating passenger", e);
         }
     }
 
+    /**
+     * Releases the passenger's seats and deletes the passenger in one transaction. Returns the flights that had
+     * seats released; their occupied count and version are updated with them.
+     */
     @Override
-    public void delete(long id) {
-        String sql = "DELETE FROM passengers WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, id);
-            stmt.executeUpdate();
+    public List<Long> delete(long id) {
+        String lockSql = "SELECT id FROM passengers WHERE id = ? FOR UPDATE";
+        String seatsSql = "SELECT flightNumber, COUNT(*) AS seats FROM seat_assignments WHERE passengerId = ? GROUP BY flightNumber";
+        String releaseSql = "DELETE FROM seat_assignments WHERE passengerId = ?";
+        String countSql = "UPDATE flights SET occupiedSeats = occupiedSeats - ?, version = version + 1 WHERE flightNumber = ?";
+        String deleteSql = "DELETE FROM passengers WHERE id = ?";
+        List<Long> flightNumbers = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement lock = connection.prepareStatement(lockSql);
+                 PreparedStatement seats = connection.prepareStatement(seatsSql);
+                 PreparedStatement release = connection.prepareStatement(releaseSql);
+                 PreparedStatement count = connection.prepareStatement(countSql);
+                 PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+                // locking the passenger first makes concurrent seat assignments for it wait, and then fail
+                lock.setLong(1, id);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next()) {
+                        connection.rollback();
+                        return flightNumbers;
+                    }
+                }
+                seats.setLong(1, id);
+                try (ResultSet rs = seats.executeQuery()) {
+                    while (rs.next()) {
+                        flightNumbers.add(rs.getLong("flightNumber"));
+                        count.setInt(1, rs.getInt("seats"));
+                        count.setLong(2, rs.getLong("flightNumber"));
+                        count.addBatch();
+                    }
+                }
+                if (!flightNumbers.isEmpty()) {
+                    release.setLong(1, id);
+                    release.executeUpdate();
+                    count.executeBatch();
+                }
+                delete.setLong(1, id);
+                delete.executeUpdate();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting passenger", e);
         }
+        return flightNumbers;
     }
 
     @Override
     public List<Passenger> findAll() {
         List<Passenger> passengers = new ArrayList<>();
         String sql = "SELECT * FROM passengers";
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
-            if (!rs.next()) {
-                System.out.println("No passengers found in the database.");
-            } else {
-                do {
+            while (rs.next()) {
+                passengers.add(extractPassengerFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving passengers", e);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Loaded " + passengers.size() + " passengers");
+        }
+        return passengers;
+    }
+
+    @Override
+    public List<Passenger> findPage(long after, int limit) {
+        List<Passenger> passengers = new ArrayList<>();
+        String sql = "SELECT * FROM passengers WHERE id > ? ORDER BY id LIMIT ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, after);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
                     passengers.add(extractPassengerFromResultSet(rs));
-                    System.out.println("Passenger found: " + passengers.get(passengers.size() - 1));
-                } while (rs.next());
+                }
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving passengers: " + e.getMessage());
-            e.printStackTrace();
+            throw new RuntimeException("Error retrieving passengers page", e);
         }
         return passengers;
     }
 
+    @Override
+    public void streamAll(long after, Consumer<Passenger> consumer) {
+        String sql = "SELECT * FROM passengers WHERE id > ? ORDER BY id";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            stmt.setLong(1, after);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(extractPassengerFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming passengers", e);
+        }
+    }
+
+    @Override
+    public List<Passenger> search(PassengerSearchCriteria criteria) {
+        List<Passenger> passengers = new ArrayList<>();
+        PassengerQueryBuilder query = PassengerQueryBuilder.forCriteria(criteria, cursor(criteria));
+        String sql = "SELECT * FROM passengers" + query.whereClause() + PassengerQueryBuilder.ORDER_BY +
+                (criteria.getPage().isPaged() ? " LIMIT ?" : "");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = query.bind(stmt);
+            if (criteria.getPage().isPaged()) {
+                stmt.setInt(index + 1, criteria.getPage().getLimit());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    passengers.add(extractPassengerFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error searching passengers", e);
+        }
+        return passengers;
+    }
+
+    @Override
+    public void streamSearch(PassengerSearchCriteria criteria, Consumer<Passenger> consumer) {
+        PassengerQueryBuilder query = PassengerQueryBuilder.forCriteria(criteria, cursor(criteria));
+        String sql = "SELECT * FROM passengers" + query.whereClause() + PassengerQueryBuilder.ORDER_BY;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            query.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(extractPassengerFromResultSet(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming passenger search", e);
+        }
+    }
+
+    private Passenger cursor(PassengerSearchCriteria criteria) {
+        Long after = criteria.getPage().getAfter();
+        if (after == null) {
+            return null;
+        }
+        return findById(after).orElseThrow(() -> new IllegalArgumentException("after must be the id of an existing passenger"));
+    }
+
     @Override
     public Optional<Passenger> findById(long id) {
         String sql = "SELECT * FROM passengers WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return Optional.of(extractPassengerFromResultSet(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(extractPassengerFromResultSet(rs));
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error finding passenger by id", e);
@@ -95,13 +266,26 @@ public class PassengerRepositoryImpl implements PassengerRepository {
         return Optional.empty();
     }
 
+    @Override
+    public boolean exists(long id) {
+        String sql = "SELECT 1 FROM passengers WHERE id = ? LIMIT 1";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error checking passenger existence", e);
+        }
+    }
+
     private Passenger extractPassengerFromResultSet(ResultSet rs) throws SQLException {
         Passenger passenger = new Passenger();
         passenger.setId(rs.getLong("id"));
         passenger.setFirstName(rs.getString("firstName"));
         passenger.setLastName(rs.getString("lastName"));
         passenger.setPhoneNumber(rs.getString("phoneNumber"));
-        System.out.println(passenger.toString());
         return passenger;
     }
 }
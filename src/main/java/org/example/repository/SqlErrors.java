@@ -0,0 +1,23 @@
+package org.example.repository;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+final class SqlErrors {
+
+    private SqlErrors() {
+    }
+
+    static boolean isConstraintViolation(SQLException e) {
+        String sqlState = e.getSQLState();
+        if (e instanceof SQLIntegrityConstraintViolationException || (sqlState != null && sqlState.startsWith("23"))) {
+            return true;
+        }
+        // batch failures wrap the statement's error instead of carrying its state
+        SQLException next = e.getNextException();
+        if (next != null && next != e) {
+            return isConstraintViolation(next);
+        }
+        return e.getCause() instanceof SQLException && e.getCause() != e && isConstraintViolation((SQLException) e.getCause());
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.repository;
+
+/**
+ * Thrown by a conditional write when the flight is no longer at the version the caller read. Nothing has been
+ * written when this is thrown.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    public VersionConflictException(long flightNumber, long expectedVersion) {
+        super("Flight " + flightNumber + " is no longer at version " + expectedVersion);
+    }
+}
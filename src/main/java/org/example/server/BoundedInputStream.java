@@ -0,0 +1,66 @@
+package org.example.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Request body that fails with {@link PayloadTooLargeException} once more than {@code limit} bytes are read,
+ * for clients that send chunked bodies without a Content-Length.
+ */
+class BoundedInputStream extends FilterInputStream {
+    private final long limit;
+    private long remaining;
+
+    BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+        this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining == 0) {
+            return checkExhausted();
+        }
+        int b = in.read();
+        if (b >= 0) {
+            remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return checkExhausted();
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    private int checkExhausted() throws IOException {
+        if (in.read() < 0) {
+            return -1;
+        }
+        throw new PayloadTooLargeException(limit);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,281 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Exchange seen by handlers behind {@link CompressionFilter}. A compressible response of unknown length is held
+ * back until {@code minBytes} have been written: if the body ends first it is sent as is with its exact
+ * length, otherwise the headers go out with Content-Encoding and the rest is deflated as it is written.
+ */
+final class CompressedExchange extends HttpExchange {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final HttpExchange delegate;
+    private final CompressionFilter filter;
+    private final String encoding;
+    private final int minBytes;
+    private Body body;
+    private int pendingStatus = -1;
+    private Deflater deflater;
+
+    CompressedExchange(HttpExchange delegate, CompressionFilter filter, String encoding, int minBytes) {
+        this.delegate = delegate;
+        this.filter = filter;
+        this.encoding = encoding;
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    public void sendResponseHeaders(int status, long length) throws IOException {
+        if (length < 0 || (length > 0 && length < minBytes) || status < 200 || status == 204 || status == 304
+                || !isCompressible(delegate.getResponseHeaders())) {
+            delegate.sendResponseHeaders(status, length);
+            return;
+        }
+        pendingStatus = status;
+        body = new Body(length > 0 ? 0 : minBytes);
+    }
+
+    private static boolean isCompressible(Headers headers) {
+        if (headers.containsKey("Content-Encoding")) {
+            return false;
+        }
+        String contentType = headers.getFirst("Content-Type");
+        return contentType != null && (contentType.startsWith("application/json")
+                || contentType.startsWith("application/x-ndjson") || contentType.startsWith("text/"));
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return body != null ? body : delegate.getResponseBody();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return pendingStatus > 0 ? pendingStatus : delegate.getResponseCode();
+    }
+
+    @Override
+    public void close() {
+        if (body != null) {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // the client went away; the delegate below still releases the connection
+            }
+        }
+        delegate.close();
+    }
+
+    void releaseDeflater() {
+        if (deflater != null) {
+            filter.release(encoding, deflater);
+            deflater = null;
+        }
+    }
+
+    /**
+     * Response body that buffers up to {@code threshold} bytes before choosing between a plain and a
+     * compressed response.
+     */
+    private final class Body extends OutputStream {
+        private byte[] held;
+        private int heldCount;
+        private OutputStream out;
+        private byte[] buffer;
+        private CRC32 crc;
+        private long uncompressedSize;
+        private boolean closed;
+
+        private Body(int threshold) {
+            this.held = threshold > 0 ? new byte[threshold] : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Response body is closed");
+            }
+            if (out == null) {
+                if (held != null && heldCount + len <= held.length) {
+                    System.arraycopy(b, off, held, heldCount, len);
+                    heldCount += len;
+                    return;
+                }
+                startCompressed();
+            }
+            deflate(b, off, len);
+        }
+
+        private void startCompressed() throws IOException {
+            Headers headers = delegate.getResponseHeaders();
+            headers.set("Content-Encoding", encoding);
+            String etag = headers.getFirst("ETag");
+            if (etag != null && etag.startsWith("\"")) {
+                headers.set("ETag", "W/" + etag);
+            }
+            delegate.sendResponseHeaders(pendingStatus, 0);
+            out = delegate.getResponseBody();
+            deflater = filter.acquire(encoding);
+            buffer = new byte[OUTPUT_BUFFER_SIZE];
+            if (GZIP.equals(encoding)) {
+                crc = new CRC32();
+                out.write(GZIP_HEADER);
+            }
+            if (heldCount > 0) {
+                deflate(held, 0, heldCount);
+            }
+            held = null;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            uncompressedSize += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain(Deflater.NO_FLUSH);
+            }
+        }
+
+        private void drain(int flushMode) throws IOException {
+            int count = deflater.deflate(buffer, 0, buffer.length, flushMode);
+            if (count > 0) {
+                out.write(buffer, 0, count);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null && !closed) {
+                drain(Deflater.SYNC_FLUSH);
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (out == null) {
+                    delegate.sendResponseHeaders(pendingStatus, heldCount > 0 ? heldCount : -1);
+                    try (OutputStream plain = delegate.getResponseBody()) {
+                        if (heldCount > 0) {
+                            plain.write(held, 0, heldCount);
+                        }
+                    }
+                    return;
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+                if (crc != null) {
+                    writeIntLE(out, (int) crc.getValue());
+                    writeIntLE(out, (int) uncompressedSize);
+                }
+                out.close();
+            } finally {
+                releaseDeflater();
+            }
+        }
+
+        private void writeIntLE(OutputStream os, int value) throws IOException {
+            os.write(value & 0xff);
+            os.write((value >>> 8) & 0xff);
+            os.write((value >>> 16) & 0xff);
+            os.write((value >>> 24) & 0xff);
+        }
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return delegate.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return delegate.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return delegate.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return delegate.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return delegate.getHttpContext();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return delegate.getRequestBody();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return delegate.getRemoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return delegate.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return delegate.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return delegate.getAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        delegate.setAttribute(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        delegate.setStreams(i, o);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return delegate.getPrincipal();
+    }
+}
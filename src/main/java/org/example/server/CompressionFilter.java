@@ -0,0 +1,125 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses responses with gzip or deflate when the client accepts it. Handlers are unaware of it: they get a
+ * wrapped exchange whose {@code sendResponseHeaders} defers the decision until the body is known to exceed
+ * {@code minBytes}, so small responses keep their plain Content-Length and large ones are deflated while they
+ * are written instead of being buffered in full.
+ * <p>
+ * Deflaters hold native memory, so they are pooled and reset between responses. A {@code ThreadLocal} would
+ * allocate one per request with the virtual-thread executor.
+ */
+public class CompressionFilter extends Filter {
+    private static final int POOL_CAPACITY = 64;
+
+    private final int minBytes;
+    private final int level;
+    private final ArrayBlockingQueue<Deflater> gzipDeflaters = new ArrayBlockingQueue<>(POOL_CAPACITY);
+    private final ArrayBlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    public CompressionFilter(int minBytes, int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9: " + level);
+        }
+        this.minBytes = Math.max(minBytes, 0);
+        this.level = level;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (encoding == null || "HEAD".equals(exchange.getRequestMethod())) {
+            chain.doFilter(exchange);
+            return;
+        }
+        CompressedExchange compressed = new CompressedExchange(exchange, this, encoding, minBytes);
+        try {
+            chain.doFilter(compressed);
+        } finally {
+            compressed.releaseDeflater();
+        }
+    }
+
+    Deflater acquire(String encoding) {
+        boolean gzip = CompressedExchange.GZIP.equals(encoding);
+        Deflater deflater = (gzip ? gzipDeflaters : zlibDeflaters).poll();
+        return deflater != null ? deflater : new Deflater(level, gzip);
+    }
+
+    void release(String encoding, Deflater deflater) {
+        deflater.reset();
+        boolean gzip = CompressedExchange.GZIP.equals(encoding);
+        if (!(gzip ? gzipDeflaters : zlibDeflaters).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Picks gzip, then deflate, from an Accept-Encoding header, honouring {@code q=0} and {@code *}.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean wildcard = false;
+        boolean gzipRefused = false;
+        boolean deflateRefused = false;
+        for (String entry : acceptEncoding.split(",")) {
+            int semicolon = entry.indexOf(';');
+            String coding = (semicolon < 0 ? entry : entry.substring(0, semicolon)).trim().toLowerCase();
+            boolean refused = semicolon >= 0 && isZeroQuality(entry.substring(semicolon + 1));
+            switch (coding) {
+                case "gzip":
+                case "x-gzip":
+                    gzip |= !refused;
+                    gzipRefused |= refused;
+                    break;
+                case "deflate":
+                    deflate |= !refused;
+                    deflateRefused |= refused;
+                    break;
+                case "*":
+                    wildcard = !refused;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (gzip || (wildcard && !gzipRefused)) {
+            return CompressedExchange.GZIP;
+        }
+        if (deflate || (wildcard && !deflateRefused)) {
+            return CompressedExchange.DEFLATE;
+        }
+        return null;
+    }
+
+    private static boolean isZeroQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String description() {
+        return "Compresses responses with gzip or deflate according to Accept-Encoding";
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class OverloadFilter extends Filter {
+    private static final byte[] RESPONSE = "Service Unavailable: server is overloaded, retry later".getBytes(StandardCharsets.UTF_8);
+
+    private final int retryAfterSeconds;
+
+    public OverloadFilter(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!RequestExecutor.isOverloaded()) {
+            chain.doFilter(exchange);
+            return;
+        }
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(503, RESPONSE.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(RESPONSE);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Rejects requests that exceeded the executor capacity with 503 Service Unavailable";
+    }
+}
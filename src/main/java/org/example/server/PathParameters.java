@@ -0,0 +1,27 @@
+package org.example.server;
+
+/**
+ * Numeric path parameters of a matched route, already validated by {@link Router}.
+ */
+public final class PathParameters {
+    private final String[] names;
+    private final long[] values;
+
+    PathParameters(String[] names, long[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    public long getLong(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        throw new IllegalArgumentException("Route has no parameter " + name);
+    }
+
+    public int getInt(String name) {
+        return Math.toIntExact(getLong(name));
+    }
+}
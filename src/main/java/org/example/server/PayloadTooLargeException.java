@@ -0,0 +1,10 @@
+package org.example.server;
+
+import java.io.IOException;
+
+public class PayloadTooLargeException extends IOException {
+
+    public PayloadTooLargeException(long limit) {
+        super("request body exceeds " + limit + " bytes");
+    }
+}
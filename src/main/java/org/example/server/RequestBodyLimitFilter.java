@@ -0,0 +1,55 @@
+package org.example.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Caps request body size. Bodies announced larger than the limit are refused with 413 before anything is read;
+ * chunked bodies are cut off by {@link BoundedInputStream}. Bulk endpoints stream their input and get a
+ * separate, larger limit.
+ */
+public class RequestBodyLimitFilter extends Filter {
+    private static final String BULK_PATH_SUFFIX = "/bulk";
+
+    private final long maxBodyBytes;
+    private final long maxBulkBodyBytes;
+
+    public RequestBodyLimitFilter(long maxBodyBytes, long maxBulkBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxBulkBodyBytes = maxBulkBodyBytes;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long limit = exchange.getRequestURI().getPath().endsWith(BULK_PATH_SUFFIX) ? maxBulkBodyBytes : maxBodyBytes;
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && parseLength(contentLength) > limit) {
+            byte[] response = ("Payload Too Large: request body exceeds " + limit + " bytes").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Connection", "close");
+            exchange.sendResponseHeaders(413, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+            return;
+        }
+        exchange.setStreams(new BoundedInputStream(exchange.getRequestBody(), limit), null);
+        chain.doFilter(exchange);
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Rejects request bodies larger than the configured limit with 413 Payload Too Large";
+    }
+}
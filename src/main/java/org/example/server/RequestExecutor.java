@@ -0,0 +1,162 @@
+package org.example.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Executor for {@code HttpServer} exchanges. Work that does not fit into the configured capacity is not
+ * dropped: it runs on a small rejection thread flagged as overloaded, so {@link OverloadFilter} can answer
+ * it with 503 instead of the connection being reset.
+ */
+public class RequestExecutor implements Executor {
+    private static final Logger LOGGER = Logger.getLogger(RequestExecutor.class.getName());
+    private static final ThreadLocal<Boolean> OVERLOADED = new ThreadLocal<>();
+    private static final int REJECTION_QUEUE_CAPACITY = 256;
+
+    public enum Mode {
+        PLATFORM, VIRTUAL;
+
+        public static Mode fromString(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown executor mode: " + value + " (expected platform or virtual)");
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final ExecutorService workers;
+    private final Semaphore inFlightLimit;
+    private final ThreadPoolExecutor rejectionExecutor;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    private RequestExecutor(Mode mode, ExecutorService workers, Semaphore inFlightLimit) {
+        this.mode = mode;
+        this.workers = workers;
+        this.inFlightLimit = inFlightLimit;
+        this.rejectionExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REJECTION_QUEUE_CAPACITY), daemonThreads("http-overload"));
+    }
+
+    public static RequestExecutor create(Mode mode, int threads, int queueCapacity) {
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtualThreads = newVirtualThreadExecutor();
+            if (virtualThreads != null) {
+                return new RequestExecutor(Mode.VIRTUAL, virtualThreads, new Semaphore(threads + queueCapacity));
+            }
+            LOGGER.warning("Virtual threads are not available on this JVM, falling back to a platform thread pool");
+        }
+        ThreadPoolExecutor platformThreads = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads("http-worker"));
+        platformThreads.allowCoreThreadTimeOut(true);
+        return new RequestExecutor(Mode.PLATFORM, platformThreads, null);
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static boolean isOverloaded() {
+        return Boolean.TRUE.equals(OVERLOADED.get());
+    }
+
+    @Override
+    public void execute(Runnable exchange) {
+        if (inFlightLimit != null && !inFlightLimit.tryAcquire()) {
+            reject(exchange);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                activeRequests.incrementAndGet();
+                try {
+                    exchange.run();
+                } finally {
+                    activeRequests.decrementAndGet();
+                    if (inFlightLimit != null) {
+                        inFlightLimit.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (inFlightLimit != null) {
+                inFlightLimit.release();
+            }
+            reject(exchange);
+        }
+    }
+
+    private void reject(Runnable exchange) {
+        rejectedRequests.increment();
+        Runnable overloaded = () -> {
+            OVERLOADED.set(Boolean.TRUE);
+            try {
+                exchange.run();
+            } finally {
+                OVERLOADED.remove();
+            }
+        };
+        try {
+            rejectionExecutor.execute(overloaded);
+        } catch (RejectedExecutionException e) {
+            overloaded.run();
+        }
+    }
+
+    public boolean shutdown(long drainTimeoutMillis) {
+        workers.shutdown();
+        rejectionExecutor.shutdown();
+        try {
+            boolean drained = workers.awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (!drained) {
+                workers.shutdownNow();
+            }
+            rejectionExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            return drained;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            return false;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+}
@@ -0,0 +1,246 @@
+package org.example.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches requests by method and path. Route templates such as {@code /flights/{flightNumber}/seats/{seatNumber:int}}
+ * are compiled once into a trie of path segments; matching walks the request path in place and parses the
+ * numeric parameters without regular expressions or splitting the path.
+ * <p>
+ * Parameters are {@code long} unless declared {@code :int}. Literal segments take precedence over parameters,
+ * so {@code /flights/bulk} and {@code /flights/{flightNumber}} can coexist. Unknown paths get 404, known paths
+ * with an unsupported method get 405 and parameters that are not numbers get 400.
+ */
+public final class Router {
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpExchange exchange, PathParameters parameters) throws IOException;
+    }
+
+    private final Node root = new Node();
+    private int maxParameters;
+
+    public Router route(String method, String template, Handler handler) {
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        List<Boolean> intTypes = new ArrayList<>();
+        for (String segment : template.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String parameter = segment.substring(1, segment.length() - 1);
+                int colon = parameter.indexOf(':');
+                String type = colon < 0 ? "long" : parameter.substring(colon + 1);
+                if (!"long".equals(type) && !"int".equals(type)) {
+                    throw new IllegalArgumentException("Unsupported parameter type in " + template + ": " + type);
+                }
+                names.add(colon < 0 ? parameter : parameter.substring(0, colon));
+                intTypes.add("int".equals(type));
+                node = node.parameterChild();
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+        if (node.routes.containsKey(method)) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + template);
+        }
+        boolean[] ints = new boolean[intTypes.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = intTypes.get(i);
+        }
+        node.routes.put(method, new Route(template, handler, names.toArray(new String[0]), ints));
+        node.allow = String.join(", ", node.routes.keySet());
+        maxParameters = Math.max(maxParameters, names.size());
+        return this;
+    }
+
+    public void dispatch(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int[] bounds = new int[maxParameters * 2];
+        Node node = match(root, path, 0, bounds, 0);
+        if (node == null) {
+            sendResponse(exchange, 404, "Not Found");
+            return;
+        }
+        Route route = node.routes.get(exchange.getRequestMethod());
+        if (route == null) {
+            exchange.getResponseHeaders().set("Allow", node.allow);
+            sendResponse(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        long[] values = new long[route.names.length];
+        for (int i = 0; i < values.length; i++) {
+            long value = parseLong(path, bounds[2 * i], bounds[2 * i + 1]);
+            if (value == Long.MIN_VALUE || (route.intTypes[i] && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE))) {
+                sendResponse(exchange, 400, "Bad Request: Invalid " + route.names[i]);
+                return;
+            }
+            values[i] = value;
+        }
+        route.handler.handle(exchange, new PathParameters(route.names, values));
+    }
+
+    String template(String method, String path) {
+        Node node = match(root, path, 0, new int[maxParameters * 2], 0);
+        Route route = node == null ? null : node.routes.get(method);
+        return route == null ? null : route.template;
+    }
+
+    private static Node match(Node node, String path, int position, int[] bounds, int depth) {
+        int start = position;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start == path.length()) {
+            return node.routes.isEmpty() ? null : node;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - start;
+        for (int i = 0; i < node.literals.length; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(start, literal, 0, length)) {
+                Node matched = match(node.literalChildren[i], path, end, bounds, depth);
+                if (matched != null) {
+                    return matched;
+                }
+            }
+        }
+        if (node.parameter != null && depth * 2 < bounds.length) {
+            bounds[depth * 2] = start;
+            bounds[depth * 2 + 1] = end;
+            return match(node.parameter, path, end, bounds, depth + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Parses a decimal number from {@code path[start, end)}, returning {@link Long#MIN_VALUE} when the segment
+     * is not a number or has more than 18 digits, which keeps the accumulation free of overflow checks.
+     */
+    private static long parseLong(String path, int start, int end) {
+        boolean negative = start < end && path.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a raw query string into URL-decoded parameters. Only the first value of a repeated parameter is kept.
+     *
+     * @throws IllegalArgumentException if a parameter contains a malformed percent escape
+     */
+    public static Map<String, String> queryParameters(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, String> parameters = new HashMap<>();
+        int start = 0;
+        while (start <= rawQuery.length()) {
+            int end = rawQuery.indexOf('&', start);
+            if (end < 0) {
+                end = rawQuery.length();
+            }
+            if (end > start) {
+                int equals = rawQuery.indexOf('=', start);
+                if (equals < 0 || equals > end) {
+                    equals = end;
+                }
+                String name = decode(rawQuery, start, equals);
+                String value = equals < end ? decode(rawQuery, equals + 1, end) : "";
+                parameters.putIfAbsent(name, value);
+            }
+            start = end + 1;
+        }
+        return parameters;
+    }
+
+    private static String decode(String query, int start, int end) {
+        String part = query.substring(start, end);
+        if (part.indexOf('%') < 0 && part.indexOf('+') < 0) {
+            return part;
+        }
+        try {
+            return URLDecoder.decode(part, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
+        byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+
+    private static final class Node {
+        private String[] literals = new String[0];
+        private Node[] literalChildren = new Node[0];
+        private Node parameter;
+        private final Map<String, Route> routes = new LinkedHashMap<>();
+        private String allow = "";
+
+        private Node literalChild(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) {
+                    return literalChildren[i];
+                }
+            }
+            Node child = new Node();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = segment;
+            literalChildren[literalChildren.length - 1] = child;
+            return child;
+        }
+
+        private Node parameterChild() {
+            if (parameter == null) {
+                parameter = new Node();
+            }
+            return parameter;
+        }
+    }
+
+    private static final class Route {
+        private final String template;
+        private final Handler handler;
+        private final String[] names;
+        private final boolean[] intTypes;
+
+        private Route(String template, Handler handler, String[] names, boolean[] intTypes) {
+            this.template = template;
+            this.handler = handler;
+            this.names = names;
+            this.intTypes = intTypes;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.service;
+
+/**
+ * Thrown when a write is refused because the data it would add to cannot be persisted fast enough. The request
+ * can be retried later.
+ */
+public class BackpressureException extends RuntimeException {
+
+    public BackpressureException(String message) {
+        super(message);
+    }
+}
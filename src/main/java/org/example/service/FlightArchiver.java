@@ -0,0 +1,94 @@
+package org.example.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically moves flights that departed more than {@code horizonDays} ago, with their seats, to the archive
+ * tables, so that {@code flights} and {@code seat_assignments} only hold recent and upcoming flights. Each run
+ * archives in transactions of {@code batchSize} flights until nothing old enough is left.
+ */
+public class FlightArchiver implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(FlightArchiver.class.getName());
+
+    private final FlightService flightService;
+    private final int horizonDays;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong archivedFlights = new AtomicLong();
+
+    public FlightArchiver(FlightService flightService, int horizonDays, int batchSize, long intervalMillis) {
+        if (horizonDays < 0 || batchSize <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Archive horizon must not be negative, batch size and interval must be positive");
+        }
+        this.flightService = flightService;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flight-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScheduled, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private FlightArchiver() {
+        this.flightService = null;
+        this.horizonDays = 0;
+        this.batchSize = 0;
+        this.scheduler = null;
+    }
+
+    public static FlightArchiver disabled() {
+        return new FlightArchiver();
+    }
+
+    public boolean isEnabled() {
+        return scheduler != null;
+    }
+
+    /** Archives everything that departed before the horizon now and returns the number of flights moved. */
+    public int archive() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int archived = flightService.archiveDepartedFlights(LocalDate.now().minusDays(horizonDays), batchSize);
+        archivedFlights.addAndGet(archived);
+        return archived;
+    }
+
+    public long getArchivedFlights() {
+        return archivedFlights.get();
+    }
+
+    private void runScheduled() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            // a failed run leaves the rest for the next one; batches already committed stay archived
+            LOGGER.log(Level.WARNING, "Archiving departed flights failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.warning("Flight archiver did not finish its run within 10 s");
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
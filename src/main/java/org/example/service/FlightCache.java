@@ -0,0 +1,211 @@
+package org.example.service;
+
+import org.example.model.Flight;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Read-through cache of flight aggregates, split into independently locked LRU segments.
+ * Entries are copied on the way in and out, so callers never share a mutable {@link Flight}.
+ * A load is stored only if its segment was not invalidated while the load ran, so invalidating one flight does
+ * not discard loads of flights in other segments.
+ */
+public class FlightCache {
+    private static final int SEGMENT_COUNT = 16;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FlightCache(int maxSize, long ttlMillis) {
+        this.enabled = maxSize > 0;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.segments = new Segment[SEGMENT_COUNT];
+        int segmentCapacity = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public static FlightCache disabled() {
+        return new FlightCache(0, 0);
+    }
+
+    public Optional<Flight> get(long flightNumber, LongFunction<Optional<Flight>> loader) {
+        if (!enabled) {
+            return loader.apply(flightNumber);
+        }
+        long now = System.nanoTime();
+        Flight cached = lookup(flightNumber, now);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        misses.increment();
+
+        long loadGeneration = segmentFor(flightNumber).generation;
+        Optional<Flight> loaded = loader.apply(flightNumber);
+        loaded.ifPresent(flight -> store(flight, now, loadGeneration));
+        return loaded;
+    }
+
+    /**
+     * Like {@link #get} for several flights: cached ones are served from memory and the others are loaded with a
+     * single call to {@code loader}. Returns the flights that exist, in the order of {@code flightNumbers}.
+     */
+    public Map<Long, Flight> getAll(List<Long> flightNumbers, Function<Collection<Long>, Map<Long, Flight>> loader) {
+        if (!enabled) {
+            return ordered(flightNumbers, loader.apply(flightNumbers));
+        }
+        long now = System.nanoTime();
+        Map<Long, Flight> found = new HashMap<>(flightNumbers.size() * 2);
+        List<Long> missing = new ArrayList<>();
+        Map<Long, Long> loadGenerations = new HashMap<>();
+        for (long flightNumber : flightNumbers) {
+            Flight cached = lookup(flightNumber, now);
+            if (cached != null) {
+                found.put(flightNumber, cached);
+            } else {
+                missing.add(flightNumber);
+                loadGenerations.put(flightNumber, segmentFor(flightNumber).generation);
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            for (Flight flight : loader.apply(missing).values()) {
+                store(flight, now, loadGenerations.get(flight.getFlightNumber()));
+                found.put(flight.getFlightNumber(), flight);
+            }
+        }
+        return ordered(flightNumbers, found);
+    }
+
+    private static Map<Long, Flight> ordered(List<Long> flightNumbers, Map<Long, Flight> flights) {
+        Map<Long, Flight> ordered = new LinkedHashMap<>(flights.size() * 2);
+        for (Long flightNumber : flightNumbers) {
+            Flight flight = flights.get(flightNumber);
+            if (flight != null) {
+                ordered.put(flightNumber, flight);
+            }
+        }
+        return ordered;
+    }
+
+    private Flight lookup(long flightNumber, long now) {
+        Segment segment = segmentFor(flightNumber);
+        synchronized (segment) {
+            CachedFlight cached = segment.get(flightNumber);
+            if (cached != null) {
+                if (now - cached.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return cached.flight.copy();
+                }
+                segment.remove(flightNumber);
+                evictions.increment();
+            }
+        }
+        return null;
+    }
+
+    private void store(Flight flight, long loadedAt, long loadGeneration) {
+        Segment segment = segmentFor(flight.getFlightNumber());
+        synchronized (segment) {
+            if (segment.generation == loadGeneration) {
+                segment.put(flight.getFlightNumber(), new CachedFlight(flight.copy(), loadedAt));
+            }
+        }
+    }
+
+    public void invalidate(long flightNumber) {
+        if (!enabled) {
+            return;
+        }
+        Segment segment = segmentFor(flightNumber);
+        synchronized (segment) {
+            segment.generation++;
+            segment.remove(flightNumber);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segmentFor(long flightNumber) {
+        int hash = Long.hashCode(flightNumber);
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class CachedFlight {
+        private final Flight flight;
+        private final long loadedAt;
+
+        private CachedFlight(Flight flight, long loadedAt) {
+            this.flight = flight;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Long, CachedFlight> {
+        private final int capacity;
+        private volatile long generation;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedFlight> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
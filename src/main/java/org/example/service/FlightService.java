@@ -1,17 +1,38 @@
 package org.example.service;
 
+import org.example.model.Booking;
+import org.example.model.EntityVersion;
 import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FlightService {
     void addFlight(Flight flight);
+    void addFlights(List<Flight> flights);
     void updateFlight(long flightNumber, Flight updatedFlight);
+    void updateFlight(long flightNumber, Flight updatedFlight, long expectedVersion);
     void deleteFlight(long flightNumber);
+    int purgeDepartedFlights(LocalDate departedBefore, int batchSize);
+    int archiveDepartedFlights(LocalDate departedBefore, int batchSize);
+    void passengerDeleted(long passengerId, List<Long> flightNumbers);
     List<Flight> searchFlights(Map<String, String> criteria);
+    List<Flight> searchFlights(FlightSearchCriteria criteria);
+    void streamFlights(FlightSearchCriteria criteria, Consumer<Flight> consumer);
     boolean assignPassengerToFlight(long flightNumber, int seatNumber, long passengerId);
+    boolean assignPassengerToFlight(long flightNumber, int seatNumber, long passengerId, long expectedVersion);
     boolean unassignPassengerFromFlight(long flightNumber, int seatNumber);
+    boolean unassignPassengerFromFlight(long flightNumber, int seatNumber, long expectedVersion);
+    Optional<Map<Integer, Long>> allocateSeats(long flightNumber, List<Long> passengerIds, boolean adjacent);
+    Optional<Map<Integer, Long>> allocateSeats(long flightNumber, List<Long> passengerIds, boolean adjacent, long expectedVersion);
     List<Flight> getAllFlights();
     Optional<Flight> getFlightByFlightNumber(long flightNumber);
+    Map<Long, Flight> getFlightsByFlightNumbers(Collection<Long> flightNumbers);
+    EntityVersion getFlightVersion(long flightNumber);
+    EntityVersion getFlightsVersion();
+    List<Booking> getItinerary(long passengerId);
 }
@@ -1,31 +1,214 @@
 package org.example.service;
 
+import org.example.model.Booking;
+import org.example.model.EntityVersion;
 import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.PageRequest;
+import org.example.model.SeatChange;
+import org.example.model.SeatOccupancy;
 import org.example.repository.FlightRepository;
+import org.example.repository.VersionConflictException;
 
-import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FlightServiceImpl implements FlightService {
+    private static final Logger LOGGER = Logger.getLogger(FlightServiceImpl.class.getName());
+    private static final int MAX_ALLOCATION_ATTEMPTS = 5;
+    private static final int TIMETABLE_FETCH_SIZE = 256;
     private final FlightRepository flightRepository;
+    private final FlightCache flightCache;
+    private final VersionTable flightVersions;
+    private final SeatInventory seatInventory;
+    private final ItineraryIndex itineraryIndex;
+    private final TimetableIndex timetableIndex;
+    private final boolean mirrored;
 
     public FlightServiceImpl(FlightRepository flightRepository) {
+        this(flightRepository, FlightCache.disabled(), VersionTable.disabled(), SeatInventory.disabled(),
+                ItineraryIndex.disabled(), TimetableIndex.disabled());
+    }
+
+    /**
+     * Collaborators that are not used are passed as their {@code disabled()} instances. An enabled
+     * {@code itineraryIndex} must also receive the changes made by {@code seatInventory}.
+     */
+    public FlightServiceImpl(FlightRepository flightRepository, FlightCache flightCache, VersionTable flightVersions,
+                             SeatInventory seatInventory, ItineraryIndex itineraryIndex, TimetableIndex timetableIndex) {
         this.flightRepository = flightRepository;
+        this.flightCache = flightCache;
+        this.flightVersions = flightVersions;
+        this.seatInventory = seatInventory;
+        this.itineraryIndex = itineraryIndex;
+        this.timetableIndex = timetableIndex;
+        this.mirrored = seatInventory.isEnabled() || itineraryIndex.isEnabled() || timetableIndex.isEnabled();
     }
 
     public void addFlight(Flight flight) {
+        validate(flight);
         flightRepository.save(flight);
+        index(flight);
+        flightCache.invalidate(flight.getFlightNumber());
+        flightVersions.created(flight.getFlightNumber());
+        LOGGER.log(Level.FINE, "Added flight {0}", flight.getFlightNumber());
+    }
+
+    public void addFlights(List<Flight> flights) {
+        flights.forEach(FlightServiceImpl::validate);
+        flightRepository.saveAll(flights);
+        for (Flight flight : flights) {
+            index(flight);
+            flightCache.invalidate(flight.getFlightNumber());
+            flightVersions.created(flight.getFlightNumber());
+        }
+        LOGGER.log(Level.FINE, "Added {0} flights", flights.size());
+    }
+
+    /**
+     * Runs a write to a flight inside {@link SeatInventory#exclusive} when the flight is mirrored in memory, so
+     * that the mirrors see the writes in the order they were committed. Otherwise nothing is locked in Java and the
+     * database alone orders concurrent writes.
+     */
+    private <T> T exclusive(long flightNumber, Supplier<T> write) {
+        return mirrored ? seatInventory.exclusive(flightNumber, write) : write.get();
+    }
+
+    private void exclusive(long flightNumber, Runnable write) {
+        exclusive(flightNumber, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    private <T> T exclusive(List<Long> flightNumbers, Supplier<T> write) {
+        return mirrored ? seatInventory.exclusive(flightNumbers, write) : write.get();
+    }
+
+    private void index(Flight flight) {
+        exclusive(flight.getFlightNumber(), () -> {
+            itineraryIndex.putFlight(flight.getFlightNumber(), flight);
+            timetableIndex.putFlight(flight);
+        });
+    }
+
+    private static void validate(Flight flight) {
+        if (flight.getRoute() == null || flight.getRoute().isEmpty()
+                || flight.getDepartureDate() == null || flight.getDepartureTime() == null) {
+            throw new IllegalArgumentException("Flight route, departure date and departure time are required.");
+        }
+        if (flight.getCapacity() <= 0) {
+            throw new IllegalArgumentException("Flight must have at least one seat.");
+        }
     }
 
     public void updateFlight(long flightNumber, Flight updatedFlight) {
-        flightRepository.update(flightNumber, updatedFlight);
+        updateFlight(flightNumber, updatedFlight, Flight.ANY_VERSION);
+    }
+
+    public void updateFlight(long flightNumber, Flight updatedFlight, long expectedVersion) {
+        try {
+            exclusive(flightNumber, () -> {
+                flightRepository.update(flightNumber, updatedFlight, expectedVersion);
+                itineraryIndex.putFlight(flightNumber, updatedFlight);
+                timetableIndex.putFlight(updatedFlight);
+                return null;
+            });
+            LOGGER.log(Level.FINE, "Updated flight {0}", flightNumber);
+        } finally {
+            flightCache.invalidate(flightNumber);
+            flightVersions.changed(flightNumber);
+        }
     }
 
     public void deleteFlight(long flightNumber) {
-        flightRepository.delete(flightNumber);
+        try {
+            exclusive(flightNumber, () -> {
+                flightRepository.delete(flightNumber);
+                itineraryIndex.removeFlight(flightNumber);
+                timetableIndex.removeFlight(flightNumber);
+                return null;
+            });
+            LOGGER.log(Level.FINE, "Deleted flight {0}", flightNumber);
+        } finally {
+            flightCache.invalidate(flightNumber);
+            flightVersions.changed(flightNumber);
+        }
+    }
+
+    /**
+     * Deletes the flights departing before {@code departedBefore} with their seats, {@code batchSize} flights per
+     * transaction, and returns how many were deleted.
+     */
+    public int purgeDepartedFlights(LocalDate departedBefore, int batchSize) {
+        int purged = removeDepartedFlights(departedBefore, batchSize, flightRepository::deleteDeparted);
+        LOGGER.log(Level.INFO, "Purged {0} flights departing before {1}", new Object[]{purged, departedBefore});
+        return purged;
+    }
+
+    /**
+     * Moves the flights departing before {@code departedBefore} and their seats to the archive tables,
+     * {@code batchSize} flights per transaction, and returns how many were moved. Archived flights are only
+     * found by searches with {@link FlightSearchCriteria#isIncludeArchived()}.
+     */
+    public int archiveDepartedFlights(LocalDate departedBefore, int batchSize) {
+        int archived = removeDepartedFlights(departedBefore, batchSize, flightRepository::archiveDeparted);
+        if (archived > 0) {
+            LOGGER.log(Level.INFO, "Archived {0} flights departing before {1}", new Object[]{archived, departedBefore});
+        }
+        return archived;
+    }
+
+    private int removeDepartedFlights(LocalDate departedBefore, int batchSize,
+                                      BiFunction<List<Long>, LocalDate, List<Long>> removeBatch) {
+        if (departedBefore == null || batchSize <= 0) {
+            throw new IllegalArgumentException("A date and a positive batch size are required.");
+        }
+        int removed = 0;
+        while (true) {
+            List<Long> batch = flightRepository.findDepartedBefore(departedBefore, batchSize);
+            // the inventory writes the batch's pending seat changes before the rows move
+            List<Long> removedFlights = exclusive(batch, () -> {
+                List<Long> flightNumbers = removeBatch.apply(batch, departedBefore);
+                for (long flightNumber : flightNumbers) {
+                    itineraryIndex.removeFlight(flightNumber);
+                    timetableIndex.removeFlight(flightNumber);
+                }
+                return flightNumbers;
+            });
+            for (long flightNumber : removedFlights) {
+                flightCache.invalidate(flightNumber);
+                flightVersions.changed(flightNumber);
+            }
+            removed += removedFlights.size();
+            if (batch.size() < batchSize) {
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Catches up with a passenger deleted together with its seats on {@code flightNumbers}. Each flight is dropped
+     * from the seat inventory, whose copy of its seats may still hold the passenger.
+     */
+    public void passengerDeleted(long passengerId, List<Long> flightNumbers) {
+        for (long flightNumber : flightNumbers) {
+            exclusive(flightNumber, () -> itineraryIndex.removePassenger(passengerId, flightNumber));
+            flightCache.invalidate(flightNumber);
+            flightVersions.changed(flightNumber);
+        }
     }
 
     public List<Flight> getAllFlights() {
@@ -33,61 +216,241 @@ public class FlightServiceImpl implements FlightService {
     }
 
     public Optional<Flight> getFlightByFlightNumber(long flightNumber) {
-        return flightRepository.findByFlightNumber(flightNumber);
+        return flightCache.get(flightNumber, flightRepository::findByFlightNumber).map(seatInventory::overlay);
+    }
+
+    public EntityVersion getFlightVersion(long flightNumber) {
+        return flightVersions.get(flightNumber);
+    }
+
+    public EntityVersion getFlightsVersion() {
+        return flightVersions.collection();
+    }
+
+    public Map<Long, Flight> getFlightsByFlightNumbers(Collection<Long> flightNumbers) {
+        return flightRepository.findByFlightNumbers(flightNumbers);
     }
 
     public List<Flight> searchFlights(Map<String, String> criteria) {
-        return getAllFlights().stream()
-                .filter(flight -> criteria.keySet().stream()
-                        .allMatch(key -> matchesCriteria(flight, key, criteria.get(key))))
-                .collect(Collectors.toList());
+        return searchFlights(FlightSearchCriteria.fromQueryParameters(criteria));
+    }
+
+    public List<Flight> searchFlights(FlightSearchCriteria criteria) {
+        if (timetableIndex.canAnswer(criteria)) {
+            List<Flight> flights = new ArrayList<>();
+            searchTimetable(criteria, flights::add);
+            return flights;
+        }
+        return flightRepository.search(criteria);
     }
 
-    private boolean matchesCriteria(Flight flight, String key, String value) {
-        switch (key) {
-            case "route":
-                return flight.getRoute().equalsIgnoreCase(value);
-            case "departureDate":
-                return flight.getDepartureDate().toString().equals(value);
-            case "departureTime":
-                return flight.getDepartureTime().toString().equals(value);
-            case "minAvailableSeats":
-                return flight.getAvailableSeats() >= Integer.parseInt(value);
-            case "maxAvailableSeats":
-                return flight.getAvailableSeats() <= Integer.parseInt(value);
-            default:
-                return true;
+    public void streamFlights(FlightSearchCriteria criteria, Consumer<Flight> consumer) {
+        if (timetableIndex.canAnswer(criteria)) {
+            searchTimetable(criteria, consumer);
+            return;
         }
+        flightRepository.streamSearch(criteria, consumer);
+    }
+
+    /**
+     * Answers a search from the timetable: the matching flight numbers come from memory and the flights themselves
+     * from the cache, with the ones not cached loaded by primary key in batches. Seat conditions and paging are
+     * applied to the loaded flights, which include seat changes the seat inventory has not written yet.
+     */
+    private void searchTimetable(FlightSearchCriteria criteria, Consumer<Flight> consumer) {
+        long[] flightNumbers = timetableIndex.find(criteria);
+        PageRequest page = criteria.getPage();
+        int limit = page.isPaged() ? page.getLimit() : Integer.MAX_VALUE;
+        int next = 0;
+        if (page.getAfter() != null) {
+            int position = Arrays.binarySearch(flightNumbers, page.getAfter());
+            next = position >= 0 ? position + 1 : -position - 1;
+        }
+        int emitted = 0;
+        while (next < flightNumbers.length && emitted < limit) {
+            int end = Math.min(flightNumbers.length, next + TIMETABLE_FETCH_SIZE);
+            List<Long> batch = new ArrayList<>(end - next);
+            for (int i = next; i < end; i++) {
+                batch.add(flightNumbers[i]);
+            }
+            next = end;
+            for (Flight flight : flightCache.getAll(batch, flightRepository::findByFlightNumbers).values()) {
+                Flight current = seatInventory.overlay(flight);
+                if (emitted < limit && matchesSeatCriteria(criteria, current)) {
+                    consumer.accept(current);
+                    emitted++;
+                }
+            }
+        }
+    }
+
+    private static boolean matchesSeatCriteria(FlightSearchCriteria criteria, Flight flight) {
+        int free = flight.getAvailableSeats();
+        return (criteria.getMinAvailableSeats() == null || free >= criteria.getMinAvailableSeats())
+                && (criteria.getMaxAvailableSeats() == null || free <= criteria.getMaxAvailableSeats());
     }
 
     public boolean assignPassengerToFlight(long flightNumber, int seatNumber, long passengerId) {
-        Optional<Flight> flightOpt = flightRepository.findByFlightNumber(flightNumber);
-        if (flightOpt.isPresent()) {
-            Flight flight = flightOpt.get();
-            if (!flight.getSeatMap().containsKey(seatNumber) && flight.getAvailableSeats() > 0) {
-                flight.getSeatMap().put(seatNumber, passengerId);
-                try {
-                    flightRepository.updateSeatAssignments(flightNumber, flight.getSeatMap());
-                    return true;
-                } catch (Exception e) {
+        return assignPassengerToFlight(flightNumber, seatNumber, passengerId, Flight.ANY_VERSION);
+    }
+
+    public boolean assignPassengerToFlight(long flightNumber, int seatNumber, long passengerId, long expectedVersion) {
+        SeatInventory.Outcome outcome = expectedVersion == Flight.ANY_VERSION
+                ? seatInventory.assign(flightNumber, seatNumber, passengerId)
+                : SeatInventory.Outcome.UNTRACKED;
+        boolean assigned;
+        if (outcome == SeatInventory.Outcome.UNTRACKED) {
+            assigned = exclusive(flightNumber, () -> {
+                boolean written = flightRepository.assignSeat(flightNumber, seatNumber, passengerId, expectedVersion);
+                if (written) {
+                    itineraryIndex.apply(SeatChange.assigned(flightNumber, seatNumber, passengerId));
                 }
+                return written;
+            });
+            if (assigned) {
+                flightCache.invalidate(flightNumber);
             }
+        } else {
+            assigned = outcome == SeatInventory.Outcome.ACCEPTED;
         }
-        return false;
+        if (assigned) {
+            flightVersions.changed(flightNumber);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Seat {0} on flight {1} for passenger {2}: {3}",
+                    new Object[]{seatNumber, flightNumber, passengerId, assigned ? "assigned" : "unavailable"});
+        }
+        return assigned;
     }
+
     public boolean unassignPassengerFromFlight(long flightNumber, int seatNumber) {
-        Optional<Flight> flight = flightRepository.findByFlightNumber(flightNumber);
-        if (flight.isPresent()) {
-            Flight currentFlight = flight.get();
-            if (currentFlight.unassignPassengerFromSeat(seatNumber)) {
-                try {
-                    flightRepository.updateSeatAssignments(flightNumber, currentFlight.getSeatMap());
-                    return true;
-                } catch (SQLException e) {
-                    System.err.println("SQL Exception during unassigning passenger: " + e.getMessage());
+        return unassignPassengerFromFlight(flightNumber, seatNumber, Flight.ANY_VERSION);
+    }
+
+    public boolean unassignPassengerFromFlight(long flightNumber, int seatNumber, long expectedVersion) {
+        SeatInventory.Outcome outcome = expectedVersion == Flight.ANY_VERSION
+                ? seatInventory.release(flightNumber, seatNumber)
+                : SeatInventory.Outcome.UNTRACKED;
+        boolean released;
+        if (outcome == SeatInventory.Outcome.UNTRACKED) {
+            released = exclusive(flightNumber, () -> {
+                boolean written = flightRepository.releaseSeat(flightNumber, seatNumber, expectedVersion);
+                if (written) {
+                    itineraryIndex.apply(SeatChange.released(flightNumber, seatNumber));
+                }
+                return written;
+            });
+            if (released) {
+                flightCache.invalidate(flightNumber);
+            }
+        } else {
+            released = outcome == SeatInventory.Outcome.ACCEPTED;
+        }
+        if (released) {
+            flightVersions.changed(flightNumber);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Seat {0} on flight {1}: {2}",
+                    new Object[]{seatNumber, flightNumber, released ? "released" : "was not assigned"});
+        }
+        return released;
+    }
+
+    public Optional<Map<Integer, Long>> allocateSeats(long flightNumber, List<Long> passengerIds, boolean adjacent) {
+        return allocateSeats(flightNumber, passengerIds, adjacent, Flight.ANY_VERSION);
+    }
+
+    /**
+     * Picks free seats for the passengers, in order, and assigns them all or none. Returns an empty optional if
+     * the flight does not exist and an empty map if it has no room for them. Without an expected version the
+     * choice is retried a few times when other writes change the flight in between.
+     */
+    public Optional<Map<Integer, Long>> allocateSeats(long flightNumber, List<Long> passengerIds, boolean adjacent,
+                                                      long expectedVersion) {
+        if (passengerIds == null || passengerIds.isEmpty() || passengerIds.contains(null)) {
+            throw new IllegalArgumentException("At least one passenger id is required.");
+        }
+        Optional<Map<Integer, Long>> allocated = exclusive(flightNumber, () -> {
+            Optional<Map<Integer, Long>> seats = allocate(flightNumber, passengerIds, adjacent, expectedVersion);
+            seats.ifPresent(assigned -> assigned.forEach((seat, passengerId) ->
+                    itineraryIndex.apply(SeatChange.assigned(flightNumber, seat, passengerId))));
+            return seats;
+        });
+        if (allocated.isPresent() && !allocated.get().isEmpty()) {
+            flightCache.invalidate(flightNumber);
+            flightVersions.changed(flightNumber);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Allocated seats on flight {0}: {1}", new Object[]{flightNumber, allocated.orElse(null)});
+        }
+        return allocated;
+    }
+
+    /**
+     * The seats the passenger holds, by departure. The itinerary index answers from memory and includes seat
+     * changes the inventory has not written yet; without it this is one query on the passenger id index of
+     * {@code seat_assignments}.
+     */
+    public List<Booking> getItinerary(long passengerId) {
+        return itineraryIndex.isEnabled()
+                ? itineraryIndex.bookings(passengerId)
+                : flightRepository.findBookingsByPassenger(passengerId);
+    }
+
+    private Optional<Map<Integer, Long>> allocate(long flightNumber, List<Long> passengerIds, boolean adjacent,
+                                                  long expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<Flight> found = flightRepository.findByFlightNumber(flightNumber);
+            if (!found.isPresent()) {
+                return Optional.empty();
+            }
+            Flight flight = found.get();
+            if (expectedVersion != Flight.ANY_VERSION && flight.getVersion() != expectedVersion) {
+                throw new VersionConflictException(flightNumber, expectedVersion);
+            }
+            Map<Integer, Long> seats = chooseSeats(flight, passengerIds, adjacent);
+            try {
+                if (!seats.isEmpty() && flightRepository.assignSeats(flightNumber, seats, flight.getVersion())) {
+                    return Optional.of(seats);
+                }
+                return Optional.of(Collections.<Integer, Long>emptyMap());
+            } catch (VersionConflictException e) {
+                if (expectedVersion != Flight.ANY_VERSION) {
+                    throw e;
+                }
+                if (attempt == MAX_ALLOCATION_ATTEMPTS) {
+                    LOGGER.log(Level.FINE, "Giving up allocating seats on flight {0} after concurrent changes", flightNumber);
+                    return Optional.of(Collections.<Integer, Long>emptyMap());
                 }
             }
         }
-        return false;
+    }
+
+    private static Map<Integer, Long> chooseSeats(Flight flight, List<Long> passengerIds, boolean adjacent) {
+        if (passengerIds.size() > flight.getAvailableSeats()) {
+            return Collections.emptyMap();
+        }
+        SeatOccupancy occupancy = flight.getSeats();
+        int lastSeat = Math.min(flight.getCapacity(), SeatOccupancy.MAX_SEAT_NUMBER);
+        Map<Integer, Long> seats = new LinkedHashMap<>();
+        if (adjacent) {
+            int start = occupancy.findFreeRun(1, lastSeat, passengerIds.size());
+            if (start < 0) {
+                return Collections.emptyMap();
+            }
+            for (int i = 0; i < passengerIds.size(); i++) {
+                seats.put(start + i, passengerIds.get(i));
+            }
+            return seats;
+        }
+        int seat = 0;
+        for (Long passengerId : passengerIds) {
+            seat = occupancy.nextFreeSeat(seat + 1, lastSeat);
+            if (seat < 0) {
+                return Collections.emptyMap();
+            }
+            seats.put(seat, passengerId);
+        }
+        return seats;
     }
 }
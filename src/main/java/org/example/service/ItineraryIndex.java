@@ -0,0 +1,163 @@
+package org.example.service;
+
+import org.example.model.Booking;
+import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.model.SeatChange;
+import org.example.repository.FlightRepository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory reverse index of seat assignments, from passenger id to the passenger's bookings in departure order,
+ * so that an itinerary is read without touching the database and in time proportional to its length. Each flight's
+ * route and departure are kept next to its seats.
+ * <p>
+ * The index has no locks of its own: changes to a flight must be made inside
+ * {@link SeatInventory#exclusive} for that flight, or come from the inventory's change listener, which are
+ * serialized per flight.
+ */
+public class ItineraryIndex {
+    private final boolean enabled;
+    private final ConcurrentHashMap<Long, IndexedFlight> flights = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, List<Booking>> bookingsByPassenger = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private ItineraryIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static ItineraryIndex load(FlightRepository flightRepository) {
+        ItineraryIndex index = new ItineraryIndex(true);
+        flightRepository.streamSearch(FlightSearchCriteria.fromQueryParameters(Collections.<String, String>emptyMap()),
+                flight -> index.putFlight(flight.getFlightNumber(), flight));
+        return index;
+    }
+
+    public static ItineraryIndex disabled() {
+        return new ItineraryIndex(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Number of indexed seat assignments. */
+    public int size() {
+        return size.get();
+    }
+
+    /** Adds a flight or replaces its details and every seat assignment, as after a full update. */
+    public void putFlight(long flightNumber, Flight flight) {
+        if (!enabled) {
+            return;
+        }
+        removeFlight(flightNumber);
+        flights.put(flightNumber, new IndexedFlight(flight.getRoute(), flight.getDepartureDate(), flight.getDepartureTime()));
+        flight.getSeatMap().forEach((seat, passengerId) -> apply(SeatChange.assigned(flightNumber, seat, passengerId)));
+    }
+
+    public void removeFlight(long flightNumber) {
+        if (!enabled) {
+            return;
+        }
+        IndexedFlight indexed = flights.remove(flightNumber);
+        if (indexed != null) {
+            indexed.seats.forEach((seat, passengerId) -> removeBooking(passengerId, flightNumber, seat));
+        }
+    }
+
+    /** Drops a deleted passenger's bookings on one flight, leaving seats that have been reassigned since alone. */
+    public void removePassenger(long passengerId, long flightNumber) {
+        if (!enabled) {
+            return;
+        }
+        IndexedFlight indexed = flights.get(flightNumber);
+        if (indexed == null) {
+            return;
+        }
+        for (Booking booking : bookings(passengerId)) {
+            if (booking.getFlightNumber() == flightNumber && indexed.seats.remove(booking.getSeatNumber(), passengerId)) {
+                removeBooking(passengerId, flightNumber, booking.getSeatNumber());
+            }
+        }
+    }
+
+    /** Applies an assignment or release; changes to flights the index does not know are ignored. */
+    public void apply(SeatChange change) {
+        if (!enabled) {
+            return;
+        }
+        long flightNumber = change.getFlightNumber();
+        IndexedFlight indexed = flights.get(flightNumber);
+        if (indexed == null) {
+            return;
+        }
+        Long previous = change.isRelease()
+                ? indexed.seats.remove(change.getSeatNumber())
+                : indexed.seats.put(change.getSeatNumber(), change.getPassengerId());
+        if (previous != null) {
+            removeBooking(previous, flightNumber, change.getSeatNumber());
+        }
+        if (!change.isRelease()) {
+            addBooking(change.getPassengerId(), new Booking(flightNumber, change.getSeatNumber(), indexed.route,
+                    indexed.departureDate, indexed.departureTime));
+        }
+    }
+
+    /** The passenger's bookings ordered by departure; the list is a snapshot and cannot be modified. */
+    public List<Booking> bookings(long passengerId) {
+        List<Booking> bookings = bookingsByPassenger.get(passengerId);
+        return bookings != null ? bookings : Collections.<Booking>emptyList();
+    }
+
+    // a passenger's list is replaced rather than changed, so readers get a consistent snapshot without locking
+
+    private void addBooking(long passengerId, Booking booking) {
+        bookingsByPassenger.compute(passengerId, (id, bookings) -> {
+            List<Booking> updated = new ArrayList<>(bookings != null ? bookings.size() + 1 : 1);
+            if (bookings != null) {
+                updated.addAll(bookings);
+            }
+            int position = Collections.binarySearch(updated, booking, Booking.BY_DEPARTURE);
+            updated.add(position < 0 ? -position - 1 : position, booking);
+            return Collections.unmodifiableList(updated);
+        });
+        size.incrementAndGet();
+    }
+
+    private void removeBooking(long passengerId, long flightNumber, int seatNumber) {
+        bookingsByPassenger.computeIfPresent(passengerId, (id, bookings) -> {
+            List<Booking> updated = new ArrayList<>(bookings.size());
+            for (Booking booking : bookings) {
+                if (booking.getFlightNumber() != flightNumber || booking.getSeatNumber() != seatNumber) {
+                    updated.add(booking);
+                }
+            }
+            return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+        });
+        size.decrementAndGet();
+    }
+
+    private static final class IndexedFlight {
+        private final String route;
+        private final LocalDate departureDate;
+        private final LocalTime departureTime;
+        /** Seat number to passenger id, only changed while the flight's changes are serialized. */
+        private final Map<Integer, Long> seats = new HashMap<>();
+
+        private IndexedFlight(String route, LocalDate departureDate, LocalTime departureTime) {
+            this.route = route;
+            this.departureDate = departureDate;
+            this.departureTime = departureTime;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.service;
+
+import org.example.repository.PassengerRepository;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Answers whether a passenger exists for every seat claim the inventory accepts. A loaded {@link PassengerIndex}
+ * answers on its own; otherwise ids that were found in the database are remembered, up to {@code maxSize} of them,
+ * so that repeated claims by the same passenger do not each cost a query. Deleted passengers must be passed to
+ * {@link #forget(long)}.
+ */
+public class KnownPassengers implements LongPredicate {
+    private final PassengerRepository passengerRepository;
+    private final PassengerIndex passengerIndex;
+    private final int maxSize;
+    private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+    public KnownPassengers(PassengerRepository passengerRepository, PassengerIndex passengerIndex, int maxSize) {
+        this.passengerRepository = passengerRepository;
+        this.passengerIndex = passengerIndex;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public boolean test(long id) {
+        if (passengerIndex.isEnabled()) {
+            return passengerIndex.contains(id);
+        }
+        if (ids.contains(id)) {
+            return true;
+        }
+        if (!passengerRepository.exists(id)) {
+            return false;
+        }
+        if (ids.size() >= maxSize) {
+            // cheaper than tracking recency on every claim; the ids still in use are found again one query each
+            ids.clear();
+        }
+        ids.add(id);
+        return true;
+    }
+
+    public void forget(long id) {
+        ids.remove(id);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.service;
+
+import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
+import org.example.repository.PassengerRepository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory copy of all passengers ordered by normalized last name, first name and id, so that name and prefix
+ * searches are a range scan of a sorted map instead of a database query. Names are compared lower-cased and
+ * without accents. {@link PassengerServiceImpl} applies every passenger write to it.
+ * <p>
+ * Searches by first name or phone number alone are not served here; they go to the database indexes.
+ */
+public class PassengerIndex {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final boolean enabled;
+    private final ConcurrentSkipListMap<NameKey, Passenger> byName = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, NameKey> keysById = new ConcurrentHashMap<>();
+
+    private PassengerIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static PassengerIndex load(PassengerRepository passengerRepository) {
+        PassengerIndex index = new PassengerIndex(true);
+        passengerRepository.streamAll(0, index::put);
+        return index;
+    }
+
+    public static PassengerIndex disabled() {
+        return new PassengerIndex(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        return keysById.size();
+    }
+
+    public boolean contains(long id) {
+        return keysById.containsKey(id);
+    }
+
+    public boolean canSearch(PassengerSearchCriteria criteria) {
+        return enabled && (criteria.getLastName() != null || criteria.getPrefix() != null);
+    }
+
+    public synchronized void put(Passenger passenger) {
+        if (!enabled) {
+            return;
+        }
+        Passenger copy = copy(passenger.getId(), passenger);
+        NameKey key = new NameKey(normalize(copy.getLastName()), normalize(copy.getFirstName()), copy.getId());
+        NameKey previous = keysById.put(copy.getId(), key);
+        if (previous != null) {
+            byName.remove(previous);
+        }
+        byName.put(key, copy);
+    }
+
+    /**
+     * Replaces a passenger that is already indexed; an update of an unknown id changed nothing in the database.
+     */
+    public synchronized void replace(long id, Passenger passenger) {
+        if (enabled && keysById.containsKey(id)) {
+            put(copy(id, passenger));
+        }
+    }
+
+    public synchronized void remove(long id) {
+        NameKey key = keysById.remove(id);
+        if (key != null) {
+            byName.remove(key);
+        }
+    }
+
+    public List<Passenger> search(PassengerSearchCriteria criteria) {
+        List<Passenger> passengers = new ArrayList<>();
+        scan(criteria, passengers::add);
+        return passengers;
+    }
+
+    /**
+     * Passes the matching passengers to {@code consumer} in name order, at most a page of them if the criteria
+     * are paged.
+     */
+    public void scan(PassengerSearchCriteria criteria, Consumer<Passenger> consumer) {
+        if (!canSearch(criteria)) {
+            throw new IllegalStateException("The passenger index cannot serve this search");
+        }
+        String lastName = criteria.getLastName() != null ? normalize(criteria.getLastName()) : null;
+        String prefix = criteria.getPrefix() != null ? normalize(criteria.getPrefix()) : null;
+        String firstName = criteria.getFirstName() != null ? normalize(criteria.getFirstName()) : null;
+        if (lastName != null && prefix != null && !lastName.startsWith(prefix)) {
+            return;
+        }
+        // the last names in range are exactly lastName, or start with prefix
+        String from = lastName != null ? lastName : prefix;
+        String to = lastName != null ? lastName + '\u0000' : successor(prefix);
+        NavigableMap<NameKey, Passenger> range = to != null
+                ? byName.subMap(new NameKey(from, "", Long.MIN_VALUE), true, new NameKey(to, "", Long.MIN_VALUE), false)
+                : byName.tailMap(new NameKey(from, "", Long.MIN_VALUE), true);
+        Long after = criteria.getPage().getAfter();
+        if (after != null) {
+            NameKey cursor = keysById.get(after);
+            if (cursor == null) {
+                throw new IllegalArgumentException("after must be the id of an existing passenger");
+            }
+            range = range.tailMap(cursor, false);
+        }
+        int limit = criteria.getPage().isPaged() ? criteria.getPage().getLimit() : Integer.MAX_VALUE;
+        int found = 0;
+        for (Map.Entry<NameKey, Passenger> entry : range.entrySet()) {
+            if (found == limit) {
+                return;
+            }
+            Passenger passenger = entry.getValue();
+            if ((firstName == null || firstName.equals(entry.getKey().firstName))
+                    && (criteria.getPhoneNumber() == null || criteria.getPhoneNumber().equals(passenger.getPhoneNumber()))) {
+                consumer.accept(copy(passenger.getId(), passenger));
+                found++;
+            }
+        }
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Smallest string greater than every string starting with {@code prefix}, or null if there is none.
+     */
+    private static String successor(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    private static Passenger copy(long id, Passenger passenger) {
+        return new Passenger(id, passenger.getFirstName(), passenger.getLastName(), passenger.getPhoneNumber());
+    }
+
+    private static final class NameKey implements Comparable<NameKey> {
+        private final String lastName;
+        private final String firstName;
+        private final long id;
+
+        private NameKey(String lastName, String firstName, long id) {
+            this.lastName = lastName;
+            this.firstName = firstName;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int result = lastName.compareTo(other.lastName);
+            if (result == 0) {
+                result = firstName.compareTo(other.firstName);
+            }
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NameKey && compareTo((NameKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package org.example.service;
 
+import org.example.model.EntityVersion;
+import org.example.model.PageRequest;
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PassengerService {
     void addPassenger(Passenger passenger);
+    void addPassengers(List<Passenger> passengers);
     void updatePassenger(long id, Passenger passenger);
     void deletePassenger(long id);
     List<Passenger> getAllPassengers();
+    List<Passenger> getPassengers(PageRequest page);
+    void streamPassengers(PageRequest page, Consumer<Passenger> consumer);
+    List<Passenger> searchPassengers(PassengerSearchCriteria criteria);
+    void streamPassengers(PassengerSearchCriteria criteria, Consumer<Passenger> consumer);
     Optional<Passenger> getPassengerById(long id);
+    EntityVersion getPassengerVersion(long id);
+    EntityVersion getPassengersVersion();
 }
@@ -1,33 +1,123 @@
 package org.example.service;
 
+import org.example.model.EntityVersion;
+import org.example.model.PageRequest;
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
 import org.example.repository.PassengerRepository;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class PassengerServiceImpl implements PassengerService {
+    private static final Logger LOGGER = Logger.getLogger(PassengerServiceImpl.class.getName());
+    private static final int LOCK_STRIPES = 64;
     private final PassengerRepository passengerRepository;
+    private final VersionTable passengerVersions;
+    private final PassengerIndex passengerIndex;
+    private final BiConsumer<Long, List<Long>> passengerDeleted;
+    private final ReentrantLock[] indexLocks;
 
     public PassengerServiceImpl(PassengerRepository passengerRepository) {
+        this(passengerRepository, VersionTable.disabled(), PassengerIndex.disabled(), (id, flightNumbers) -> { });
+    }
+
+    /**
+     * {@code passengerDeleted} is told which flights lost seats when a passenger was deleted, see
+     * {@link FlightService#passengerDeleted}.
+     */
+    public PassengerServiceImpl(PassengerRepository passengerRepository, VersionTable passengerVersions,
+                                PassengerIndex passengerIndex, BiConsumer<Long, List<Long>> passengerDeleted) {
         this.passengerRepository = passengerRepository;
+        this.passengerVersions = passengerVersions;
+        this.passengerIndex = passengerIndex;
+        this.passengerDeleted = passengerDeleted;
+        this.indexLocks = new ReentrantLock[passengerIndex.isEnabled() ? LOCK_STRIPES : 0];
+        for (int i = 0; i < indexLocks.length; i++) {
+            indexLocks[i] = new ReentrantLock();
+        }
     }
 
     @Override
     public void addPassenger(Passenger passenger) throws IllegalArgumentException {
-        if (passenger.getFirstName().isEmpty() || passenger.getLastName().isEmpty() || passenger.getPhoneNumber().isEmpty()) {
+        validate(passenger);
+        passengerRepository.save(passenger);
+        passengerIndex.put(passenger);
+        passengerVersions.created(passenger.getId());
+        LOGGER.log(Level.FINE, "Added passenger {0}", passenger.getId());
+    }
+
+    @Override
+    public void addPassengers(List<Passenger> passengers) throws IllegalArgumentException {
+        passengers.forEach(PassengerServiceImpl::validate);
+        passengerRepository.saveAll(passengers);
+        for (Passenger passenger : passengers) {
+            passengerIndex.put(passenger);
+            passengerVersions.created(passenger.getId());
+        }
+        LOGGER.log(Level.FINE, "Added {0} passengers", passengers.size());
+    }
+
+    private static void validate(Passenger passenger) {
+        if (isEmpty(passenger.getFirstName()) || isEmpty(passenger.getLastName()) || isEmpty(passenger.getPhoneNumber())) {
             throw new IllegalArgumentException("Passenger data cannot be empty.");
         }
-        passengerRepository.save(passenger);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
     }
 
     @Override
     public void updatePassenger(long id, Passenger passenger) {
-        passengerRepository.update(id, passenger);
+        try {
+            indexed(id, () -> {
+                passengerRepository.update(id, passenger);
+                passengerIndex.replace(id, passenger);
+            });
+        } finally {
+            passengerVersions.changed(id);
+        }
+        LOGGER.log(Level.FINE, "Updated passenger {0}", id);
     }
 
     @Override
     public void deletePassenger(long id) {
-        passengerRepository.delete(id);
+        try {
+            List<Long> flightNumbers = new ArrayList<>();
+            indexed(id, () -> {
+                flightNumbers.addAll(passengerRepository.delete(id));
+                passengerIndex.remove(id);
+            });
+            passengerDeleted.accept(id, flightNumbers);
+        } finally {
+            passengerVersions.changed(id);
+        }
+        LOGGER.log(Level.FINE, "Deleted passenger {0}", id);
+    }
+
+    /**
+     * Runs a write together with its index update, so that two writes to one passenger reach the index in the order
+     * they reached the database. Without an index there is nothing to keep in order and no lock is taken.
+     */
+    private void indexed(long id, Runnable write) {
+        if (indexLocks.length == 0) {
+            write.run();
+            return;
+        }
+        int hash = Long.hashCode(id);
+        ReentrantLock lock = indexLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+        lock.lock();
+        try {
+            write.run();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -35,8 +125,42 @@ public class PassengerServiceImpl implements PassengerService {
         return passengerRepository.findAll();
     }
 
+    @Override
+    public List<Passenger> getPassengers(PageRequest page) {
+        return passengerRepository.findPage(page.getAfterOrZero(), page.getLimit());
+    }
+
+    @Override
+    public void streamPassengers(PageRequest page, Consumer<Passenger> consumer) {
+        passengerRepository.streamAll(page.getAfterOrZero(), consumer);
+    }
+
+    @Override
+    public List<Passenger> searchPassengers(PassengerSearchCriteria criteria) {
+        return passengerIndex.canSearch(criteria) ? passengerIndex.search(criteria) : passengerRepository.search(criteria);
+    }
+
+    @Override
+    public void streamPassengers(PassengerSearchCriteria criteria, Consumer<Passenger> consumer) {
+        if (passengerIndex.canSearch(criteria)) {
+            passengerIndex.scan(criteria, consumer);
+        } else {
+            passengerRepository.streamSearch(criteria, consumer);
+        }
+    }
+
     @Override
     public Optional<Passenger> getPassengerById(long id) {
         return passengerRepository.findById(id);
     }
+
+    @Override
+    public EntityVersion getPassengerVersion(long id) {
+        return passengerVersions.get(id);
+    }
+
+    @Override
+    public EntityVersion getPassengersVersion() {
+        return passengerVersions.collection();
+    }
 }
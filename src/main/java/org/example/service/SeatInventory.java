@@ -0,0 +1,700 @@
+package org.example.service;
+
+import org.example.model.Flight;
+import org.example.model.SeatChange;
+import org.example.repository.FlightRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Arbitrates seat claims in memory so that a flash sale on one flight does not turn into a queue of row locks on
+ * its {@code flights} row. Each flight that receives a seat request is loaded once from the database into an
+ * array of passenger ids indexed by seat number; a claim is a compare-and-set on its slot, so exactly one of any
+ * number of concurrent claims for a seat wins. Accepted changes only mark the seat dirty, and a background
+ * writer copies the current state of dirty seats to {@code seat_assignments} in batches, which also coalesces
+ * repeated changes to one seat.
+ * <p>
+ * The in-memory state is authoritative for tracked flights, so every other write to such a flight must run
+ * through {@link #exclusive}, which flushes and drops the flight first. Flights are reloaded on their next seat
+ * request, which is also how the state is recovered after a restart.
+ * <p>
+ * Without a {@link SeatJournal}, changes accepted but not yet written when the process dies are lost. With one,
+ * a change is acknowledged only once it is in the journal, the journal is replayed into the database on startup,
+ * and a checkpoint (seal the journal, flush, delete the sealed segments) bounds how much of it there is to replay.
+ * Journal records of one seat are appended under a per-seat lock in the order the changes were made. When more
+ * than {@code maxPendingWrites} seats wait to be written, new requests wait for the writer to catch up and fail
+ * with {@link BackpressureException} if it does not.
+ * <p>
+ * Every change made in memory, including the undoing of one, is also passed to a listener under the same
+ * per-seat lock and under a per-flight lock that {@link #exclusive} holds while its write runs, also when the
+ * inventory is disabled. Code that mirrors a flight in memory updates the mirror inside {@link #exclusive}, and
+ * so sees the flight's changes in the order the database does without locks of its own.
+ */
+public class SeatInventory implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SeatInventory.class.getName());
+    private static final int LOCK_STRIPES = 64;
+    private static final int BATCH_SIZE = 500;
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long BACKPRESSURE_WAIT_MILLIS = 1000;
+    private static final int DEFAULT_MAX_PENDING_WRITES = 10_000;
+    private static final int SEAT_LOCK_STRIPES = 16;
+
+    public enum Outcome {
+        ACCEPTED,
+        REJECTED,
+        /** The flight is not held in memory; the caller writes through to the database instead. */
+        UNTRACKED
+    }
+
+    private final boolean enabled;
+    private final FlightRepository flightRepository;
+    private final FlightCache flightCache;
+    private final LongPredicate passengerExists;
+    private final SeatJournal journal;
+    private final Consumer<SeatChange> changeListener;
+    private final LongConsumer flightChanged;
+    private final int maxFlights;
+    private final int maxPendingWrites;
+    private final long flushIntervalMillis;
+    private final ConcurrentHashMap<Long, FlightSeats> flights = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final ReentrantLock[] changeLocks = new ReentrantLock[LOCK_STRIPES];
+    private final ConcurrentLinkedQueue<DirtySeat> dirtySeats = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final LongAdder writtenChanges = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final Object flushLock = new Object();
+    private final Object checkpointLock = new Object();
+    private final Object capacityLock = new Object();
+    private final Thread writer;
+    private long lastCheckpointNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    public SeatInventory(FlightRepository flightRepository, FlightCache flightCache, LongPredicate passengerExists,
+                         int maxFlights, long flushIntervalMillis) {
+        this(flightRepository, flightCache, passengerExists, SeatJournal.disabled(), maxFlights,
+                DEFAULT_MAX_PENDING_WRITES, flushIntervalMillis);
+    }
+
+    public SeatInventory(FlightRepository flightRepository, FlightCache flightCache, LongPredicate passengerExists,
+                         SeatJournal journal, int maxFlights, int maxPendingWrites, long flushIntervalMillis) {
+        this(flightRepository, flightCache, passengerExists, journal, change -> { }, flightNumber -> { }, maxFlights,
+                maxPendingWrites, flushIntervalMillis);
+    }
+
+    /**
+     * Replays whatever the journal holds from a previous run into the database before returning; the replayed
+     * changes that the database accepts are passed to {@code changeListener} as well. {@code flightChanged} is
+     * called when a change that was already acknowledged is undone because the database rejected it, so that the
+     * flight's version moves for clients that saw the change.
+     */
+    public SeatInventory(FlightRepository flightRepository, FlightCache flightCache, LongPredicate passengerExists,
+                         SeatJournal journal, Consumer<SeatChange> changeListener, LongConsumer flightChanged,
+                         int maxFlights, int maxPendingWrites, long flushIntervalMillis) {
+        this(true, flightRepository, flightCache, passengerExists, journal, changeListener, flightChanged, maxFlights,
+                maxPendingWrites, flushIntervalMillis);
+        replayJournal();
+        writer.start();
+    }
+
+    private SeatInventory(boolean enabled, FlightRepository flightRepository, FlightCache flightCache,
+                          LongPredicate passengerExists, SeatJournal journal, Consumer<SeatChange> changeListener,
+                          LongConsumer flightChanged, int maxFlights, int maxPendingWrites, long flushIntervalMillis) {
+        if (enabled && (maxFlights <= 0 || maxPendingWrites <= 0 || flushIntervalMillis <= 0)) {
+            throw new IllegalArgumentException("maxFlights, maxPendingWrites and flushIntervalMillis must be positive");
+        }
+        this.enabled = enabled;
+        this.flightRepository = flightRepository;
+        this.flightCache = flightCache;
+        this.passengerExists = passengerExists;
+        this.journal = journal;
+        this.changeListener = changeListener;
+        this.flightChanged = flightChanged;
+        this.maxFlights = maxFlights;
+        this.maxPendingWrites = maxPendingWrites;
+        this.flushIntervalMillis = flushIntervalMillis;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+            changeLocks[i] = new ReentrantLock();
+        }
+        this.writer = new Thread(this::runWriter, "seat-write-behind");
+        writer.setDaemon(true);
+    }
+
+    public static SeatInventory disabled() {
+        return new SeatInventory(false, null, null, null, SeatJournal.disabled(), null, null, 0, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Outcome assign(long flightNumber, int seatNumber, long passengerId) {
+        if (!enabled) {
+            return Outcome.UNTRACKED;
+        }
+        awaitCapacity();
+        FlightSeats seats;
+        long ticket;
+        Lock lock = lockFor(flightNumber).readLock();
+        lock.lock();
+        try {
+            seats = seatsFor(flightNumber);
+            if (seats == null) {
+                return Outcome.UNTRACKED;
+            }
+            if (seatNumber <= 0 || seatNumber > seats.capacity || passengerId <= 0
+                    || seats.passengerIds.get(seatNumber) != SeatChange.RELEASED) {
+                return Outcome.REJECTED;
+            }
+            // checked before claiming so that a bad id never holds a seat, even briefly
+            if (!passengerExists.test(passengerId)) {
+                return Outcome.REJECTED;
+            }
+            synchronized (seats.lockFor(seatNumber)) {
+                if (!seats.passengerIds.compareAndSet(seatNumber, SeatChange.RELEASED, passengerId)) {
+                    return Outcome.REJECTED;
+                }
+                SeatChange change = SeatChange.assigned(flightNumber, seatNumber, passengerId);
+                changed(seats, change);
+                ticket = journal.append(change);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitJournal(ticket, seats, seatNumber, passengerId, SeatChange.RELEASED);
+        return Outcome.ACCEPTED;
+    }
+
+    public Outcome release(long flightNumber, int seatNumber) {
+        if (!enabled) {
+            return Outcome.UNTRACKED;
+        }
+        awaitCapacity();
+        FlightSeats seats;
+        long passengerId;
+        long ticket;
+        Lock lock = lockFor(flightNumber).readLock();
+        lock.lock();
+        try {
+            seats = seatsFor(flightNumber);
+            if (seats == null) {
+                return Outcome.UNTRACKED;
+            }
+            if (seatNumber <= 0 || seatNumber >= seats.passengerIds.length()) {
+                return Outcome.REJECTED;
+            }
+            synchronized (seats.lockFor(seatNumber)) {
+                passengerId = seats.passengerIds.get(seatNumber);
+                if (passengerId == SeatChange.RELEASED
+                        || !seats.passengerIds.compareAndSet(seatNumber, passengerId, SeatChange.RELEASED)) {
+                    return Outcome.REJECTED;
+                }
+                SeatChange change = SeatChange.released(flightNumber, seatNumber);
+                changed(seats, change);
+                ticket = journal.append(change);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitJournal(ticket, seats, seatNumber, SeatChange.RELEASED, passengerId);
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Waits until the change is durable in the journal. If the journal failed, the change is undone in memory
+     * (the database is corrected by the next flush) and the request fails.
+     */
+    private void awaitJournal(long ticket, FlightSeats seats, int seatNumber, long newPassengerId, long previousPassengerId) {
+        try {
+            journal.awaitDurable(ticket);
+        } catch (RuntimeException e) {
+            synchronized (seats.lockFor(seatNumber)) {
+                if (seats.passengerIds.compareAndSet(seatNumber, newPassengerId, previousPassengerId)) {
+                    changed(seats, new SeatChange(seats.flightNumber, seatNumber, previousPassengerId));
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void awaitCapacity() {
+        if (pendingWrites.get() < maxPendingWrites) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BACKPRESSURE_WAIT_MILLIS);
+        synchronized (capacityLock) {
+            long remaining;
+            while (pendingWrites.get() >= maxPendingWrites && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(capacityLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (pendingWrites.get() >= maxPendingWrites) {
+            rejectedRequests.increment();
+            throw new BackpressureException(pendingWrites.get() + " seat changes are waiting to be written");
+        }
+    }
+
+    /**
+     * Runs a write that bypasses the inventory. Pending changes are written and the flight is dropped from
+     * memory first, and no seat request for it is arbitrated in memory until the write has finished. The write
+     * runs under the flight's change lock, see the class comment.
+     */
+    public <T> T exclusive(long flightNumber, Supplier<T> write) {
+        if (!enabled) {
+            return withChangeLock(flightNumber, write);
+        }
+        Lock lock = lockFor(flightNumber).writeLock();
+        lock.lock();
+        try {
+            if (flights.containsKey(flightNumber)) {
+                checkpoint();
+                flights.remove(flightNumber);
+            }
+            // taken after the checkpoint: the writer thread needs this lock to undo a rejected change
+            return withChangeLock(flightNumber, write);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void exclusive(long flightNumber, Runnable write) {
+        exclusive(flightNumber, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #exclusive(long, Supplier)} for several flights at once, with a single flush. The locks are
+     * taken in stripe order, so concurrent callers cannot deadlock.
+     */
+    public <T> T exclusive(Collection<Long> flightNumbers, Supplier<T> write) {
+        boolean[] striped = new boolean[LOCK_STRIPES];
+        for (long flightNumber : flightNumbers) {
+            striped[stripe(flightNumber)] = true;
+        }
+        if (!enabled) {
+            return withChangeLocks(striped, 0, write);
+        }
+        List<Lock> taken = new ArrayList<>();
+        try {
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                if (striped[i]) {
+                    Lock lock = locks[i].writeLock();
+                    lock.lock();
+                    taken.add(lock);
+                }
+            }
+            boolean tracked = false;
+            for (long flightNumber : flightNumbers) {
+                tracked |= flights.containsKey(flightNumber);
+            }
+            if (tracked) {
+                checkpoint();
+                flightNumbers.forEach(flights::remove);
+            }
+            return withChangeLocks(striped, 0, write);
+        } finally {
+            for (Lock lock : taken) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private <T> T withChangeLocks(boolean[] striped, int from, Supplier<T> write) {
+        for (int i = from; i < LOCK_STRIPES; i++) {
+            if (striped[i]) {
+                changeLocks[i].lock();
+                try {
+                    return withChangeLocks(striped, i + 1, write);
+                } finally {
+                    changeLocks[i].unlock();
+                }
+            }
+        }
+        return write.get();
+    }
+
+    // a ReentrantLock rather than a monitor, so that a virtual thread blocked in JDBC under it does not pin its carrier
+    private <T> T withChangeLock(long flightNumber, Supplier<T> write) {
+        Lock lock = changeLockFor(flightNumber);
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the seats and version of a flight read from the database or the cache with the in-memory ones,
+     * which may include changes that have not been written yet.
+     */
+    public Flight overlay(Flight flight) {
+        if (!enabled) {
+            return flight;
+        }
+        FlightSeats seats = flights.get(flight.getFlightNumber());
+        if (seats == null) {
+            return flight;
+        }
+        flight.setVersion(seats.version.get());
+        flight.getSeats().clear();
+        for (int seat = 1; seat < seats.passengerIds.length(); seat++) {
+            long passengerId = seats.passengerIds.get(seat);
+            if (passengerId != SeatChange.RELEASED) {
+                flight.getSeats().put(seat, passengerId);
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * Writes every dirty seat. Throws if the database rejects the batch; the seats stay dirty and are retried.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            while (!dirtySeats.isEmpty()) {
+                writeBatch();
+            }
+        }
+    }
+
+    /**
+     * Flushes and then drops the journal records that the flush made redundant. Without a journal this is just
+     * a flush.
+     */
+    private void checkpoint() {
+        if (!journal.isEnabled()) {
+            flush();
+            return;
+        }
+        synchronized (checkpointLock) {
+            long sealed = journal.seal();
+            flush();
+            journal.deleteThrough(sealed);
+            lastCheckpointNanos = System.nanoTime();
+        }
+    }
+
+    private void replayJournal() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        List<SeatChange> records = new ArrayList<>();
+        long lastSegment;
+        try {
+            lastSegment = journal.recover(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the seat journal", e);
+        }
+        if (records.isEmpty()) {
+            journal.deleteThrough(lastSegment);
+            return;
+        }
+        // only the last change of each seat matters; the writes below replace the seat whatever it holds
+        Map<String, SeatChange> latest = new LinkedHashMap<>();
+        for (SeatChange record : records) {
+            latest.put(record.getFlightNumber() + ":" + record.getSeatNumber(), record);
+        }
+        List<SeatChange> changes = new ArrayList<>(latest.values());
+        int rejected = 0;
+        for (int from = 0; from < changes.size(); from += BATCH_SIZE) {
+            List<SeatChange> batch = changes.subList(from, Math.min(changes.size(), from + BATCH_SIZE));
+            Set<SeatChange> rejectedChanges = new HashSet<>(flightRepository.applySeatChanges(batch));
+            for (SeatChange change : rejectedChanges) {
+                LOGGER.severe("Journaled seat change rejected by the database: " + change);
+                rejected++;
+            }
+            for (SeatChange change : batch) {
+                flightCache.invalidate(change.getFlightNumber());
+                if (!rejectedChanges.contains(change)) {
+                    notifyChange(change);
+                }
+            }
+        }
+        journal.deleteThrough(lastSegment);
+        LOGGER.info("Replayed " + records.size() + " journaled seat changes (" + changes.size() + " seats, "
+                + rejected + " rejected)");
+    }
+
+    private void writeBatch() {
+        List<DirtySeat> batch = new ArrayList<>();
+        List<SeatChange> changes = new ArrayList<>();
+        Map<Long, Long> versions = new HashMap<>();
+        DirtySeat dirty;
+        while (batch.size() < BATCH_SIZE && (dirty = dirtySeats.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            // cleared before the state is read, so a change racing with this write marks the seat again
+            dirty.seats.dirty.set(dirty.seatNumber, 0);
+            batch.add(dirty);
+            changes.add(new SeatChange(dirty.seats.flightNumber, dirty.seatNumber,
+                    dirty.seats.passengerIds.get(dirty.seatNumber)));
+            versions.put(dirty.seats.flightNumber, dirty.seats.version.get());
+        }
+        List<SeatChange> rejected;
+        try {
+            rejected = flightRepository.applySeatChanges(changes, versions);
+        } catch (RuntimeException e) {
+            for (DirtySeat seat : batch) {
+                markDirty(seat.seats, seat.seatNumber);
+            }
+            throw e;
+        }
+        writtenChanges.add(changes.size() - rejected.size());
+        for (SeatChange change : rejected) {
+            FlightSeats seats = flights.get(change.getFlightNumber());
+            if (seats != null) {
+                synchronized (seats.lockFor(change.getSeatNumber())) {
+                    if (seats.passengerIds.compareAndSet(change.getSeatNumber(), change.getPassengerId(), SeatChange.RELEASED)) {
+                        changed(seats, SeatChange.released(change.getFlightNumber(), change.getSeatNumber()));
+                    }
+                }
+            }
+            flightChanged.accept(change.getFlightNumber());
+            LOGGER.severe("Seat change rejected by the database, seat released: " + change);
+        }
+        Set<Long> flightNumbers = new LinkedHashSet<>();
+        for (SeatChange change : changes) {
+            flightNumbers.add(change.getFlightNumber());
+        }
+        for (long flightNumber : flightNumbers) {
+            flightCache.invalidate(flightNumber);
+        }
+        synchronized (capacityLock) {
+            capacityLock.notifyAll();
+        }
+    }
+
+    /**
+     * Records a change just made to a seat in memory. The flight's version moves here, once per change, and the
+     * writer stores it as it is instead of bumping it again.
+     */
+    private void changed(FlightSeats seats, SeatChange change) {
+        seats.version.incrementAndGet();
+        markDirty(seats, change.getSeatNumber());
+        notifyChange(change);
+    }
+
+    private void notifyChange(SeatChange change) {
+        withChangeLock(change.getFlightNumber(), () -> {
+            changeListener.accept(change);
+            return null;
+        });
+    }
+
+    private void markDirty(FlightSeats seats, int seatNumber) {
+        if (seats.dirty.compareAndSet(seatNumber, 0, 1)) {
+            pendingWrites.incrementAndGet();
+            dirtySeats.add(new DirtySeat(seats, seatNumber));
+        }
+    }
+
+    private FlightSeats seatsFor(long flightNumber) {
+        FlightSeats seats = flights.get(flightNumber);
+        if (seats == null) {
+            if (flights.size() >= maxFlights) {
+                return null;
+            }
+            seats = flights.computeIfAbsent(flightNumber, this::load);
+            if (seats == null) {
+                return null;
+            }
+        }
+        seats.lastUsedNanos = System.nanoTime();
+        return seats;
+    }
+
+    private FlightSeats load(long flightNumber) {
+        Optional<Flight> flight = flightRepository.findByFlightNumber(flightNumber);
+        if (!flight.isPresent()) {
+            return null;
+        }
+        int capacity = flight.get().getCapacity();
+        Map<Integer, Long> seatMap = flight.get().getSeatMap();
+        int highestSeat = capacity;
+        for (int seat : seatMap.keySet()) {
+            highestSeat = Math.max(highestSeat, seat);
+        }
+        FlightSeats seats = new FlightSeats(flightNumber, capacity, highestSeat + 1, flight.get().getVersion());
+        seatMap.forEach((seat, passengerId) -> seats.passengerIds.set(seat, passengerId));
+        LOGGER.log(Level.FINE, "Seat inventory loaded flight {0}", flightNumber);
+        return seats;
+    }
+
+    private ReentrantReadWriteLock lockFor(long flightNumber) {
+        return locks[stripe(flightNumber)];
+    }
+
+    private ReentrantLock changeLockFor(long flightNumber) {
+        return changeLocks[stripe(flightNumber)];
+    }
+
+    private static int stripe(long flightNumber) {
+        int hash = Long.hashCode(flightNumber);
+        hash ^= (hash >>> 16);
+        return hash & (LOCK_STRIPES - 1);
+    }
+
+    private void runWriter() {
+        boolean failing = false;
+        while (!closed) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                if (journal.hasAppendsSinceSeal() && System.nanoTime() - lastCheckpointNanos >= CHECKPOINT_INTERVAL_NANOS) {
+                    checkpoint();
+                } else {
+                    flush();
+                }
+                evictIdleFlights();
+                if (failing) {
+                    LOGGER.info("Seat changes are being written again");
+                    failing = false;
+                }
+            } catch (RuntimeException e) {
+                if (!failing) {
+                    LOGGER.log(Level.WARNING, "Writing seat changes failed, " + pendingWrites.get() + " pending; retrying", e);
+                    failing = true;
+                }
+            }
+        }
+    }
+
+    private void evictIdleFlights() {
+        long now = System.nanoTime();
+        for (FlightSeats seats : flights.values()) {
+            if (now - seats.lastUsedNanos < IDLE_NANOS) {
+                continue;
+            }
+            Lock lock = lockFor(seats.flightNumber).writeLock();
+            if (lock.tryLock()) {
+                try {
+                    // a checkpoint, so that no journal record of the flight outlives its place in memory
+                    checkpoint();
+                    flights.remove(seats.flightNumber, seats);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    public int getTrackedFlights() {
+        return flights.size();
+    }
+
+    public int getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    public long getWrittenChanges() {
+        return writtenChanges.sum();
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * Stops the background writer, writes what is still pending and closes the journal. If the writes fail the
+     * journal keeps the changes for the next start.
+     */
+    @Override
+    public void close() {
+        if (!enabled || closed) {
+            return;
+        }
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, pendingWrites.get() + " seat changes could not be written on shutdown"
+                    + (journal.isEnabled() ? ", they stay in the journal" : ""), e);
+        }
+        journal.close();
+    }
+
+    private static final class FlightSeats {
+        private final long flightNumber;
+        private final int capacity;
+        private final AtomicLongArray passengerIds;
+        private final AtomicIntegerArray dirty;
+        private final AtomicLong version;
+        private final Object[] seatLocks = new Object[SEAT_LOCK_STRIPES];
+        private volatile long lastUsedNanos;
+
+        private FlightSeats(long flightNumber, int capacity, int length, long version) {
+            this.flightNumber = flightNumber;
+            this.capacity = capacity;
+            this.passengerIds = new AtomicLongArray(length);
+            this.dirty = new AtomicIntegerArray(length);
+            this.version = new AtomicLong(version);
+            this.lastUsedNanos = System.nanoTime();
+            for (int i = 0; i < SEAT_LOCK_STRIPES; i++) {
+                seatLocks[i] = new Object();
+            }
+        }
+
+        private Object lockFor(int seatNumber) {
+            return seatLocks[seatNumber & (SEAT_LOCK_STRIPES - 1)];
+        }
+    }
+
+    private static final class DirtySeat {
+        private final FlightSeats seats;
+        private final int seatNumber;
+
+        private DirtySeat(FlightSeats seats, int seatNumber) {
+            this.seats = seats;
+            this.seatNumber = seatNumber;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package org.example.service;
+
+import org.example.model.SeatChange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of accepted seat changes, so that {@link SeatInventory} can acknowledge a change before it is
+ * written to the database without losing it in a crash. Appends are made durable by a single sync thread that
+ * writes whatever has accumulated since its last fsync in one go, so concurrent claims share one fsync (group
+ * commit) instead of paying one each.
+ * <p>
+ * The log is split into segments. {@link #seal()} starts a new segment; once everything in the sealed ones has
+ * been written to the database they are deleted with {@link #deleteThrough}. Segments left behind by a crash are
+ * read back by {@link #recover} on startup. Each record carries a CRC, so a record torn by the crash ends the
+ * replay of its segment; it was never acknowledged.
+ */
+public class SeatJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SeatJournal.class.getName());
+    private static final int RECORD_BYTES = 24;
+    private static final int PAYLOAD_BYTES = 20;
+    private static final int INITIAL_BUFFER_RECORDS = 1024;
+    private static final String SEGMENT_PREFIX = "seats-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final List<Long> recoverableSegments;
+    private final Object lock = new Object();
+    private final Thread syncer;
+    private ByteBuffer pending;
+    private ByteBuffer syncing;
+    private long appended;
+    private long durable;
+    private long currentSegment;
+    private FileChannel channel;
+    private boolean sealRequested;
+    private long seals;
+    private boolean appendedSinceSeal;
+    private IOException failure;
+    private boolean closed;
+
+    private SeatJournal(Path directory, List<Long> recoverableSegments, long currentSegment) throws IOException {
+        this.enabled = directory != null;
+        this.directory = directory;
+        this.recoverableSegments = recoverableSegments;
+        this.currentSegment = currentSegment;
+        this.pending = ByteBuffer.allocate(enabled ? INITIAL_BUFFER_RECORDS * RECORD_BYTES : 0);
+        this.syncing = ByteBuffer.allocate(enabled ? INITIAL_BUFFER_RECORDS * RECORD_BYTES : 0);
+        this.channel = enabled ? openSegment(currentSegment) : null;
+        this.syncer = new Thread(this::runSyncer, "seat-journal-sync");
+        syncer.setDaemon(true);
+    }
+
+    public static SeatJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.warning("Ignoring unexpected file in the seat journal directory: " + file);
+                }
+            }
+        }
+        Collections.sort(segments);
+        long next = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        SeatJournal journal = new SeatJournal(directory, segments, next);
+        journal.syncer.start();
+        return journal;
+    }
+
+    public static SeatJournal disabled() {
+        try {
+            return new SeatJournal(null, Collections.<Long>emptyList(), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the segments found when the journal was opened, oldest first. They stay on disk until
+     * {@link #deleteThrough} is called with the returned segment id, which is {@code 0} when there was nothing.
+     */
+    public long recover(List<SeatChange> changes) throws IOException {
+        long last = 0;
+        for (long segment : recoverableSegments) {
+            readSegment(segment, changes);
+            last = segment;
+        }
+        return last;
+    }
+
+    private void readSegment(long segment, List<SeatChange> changes) throws IOException {
+        // segments only hold the changes of one checkpoint interval, so they are small enough to read at once
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+        CRC32 crc = new CRC32();
+        while (records.remaining() >= RECORD_BYTES) {
+            int start = records.position();
+            crc.reset();
+            crc.update(records.array(), start, PAYLOAD_BYTES);
+            if (records.getInt(start + PAYLOAD_BYTES) != (int) crc.getValue()) {
+                break;
+            }
+            changes.add(new SeatChange(records.getLong(), records.getInt(), records.getLong()));
+            records.position(start + RECORD_BYTES);
+        }
+        if (records.hasRemaining()) {
+            LOGGER.warning("Seat journal segment " + segment + " ends with an incomplete record, ignoring it");
+        }
+    }
+
+    /**
+     * Queues a change and returns the ticket to pass to {@link #awaitDurable}. Callers that need changes to one
+     * seat replayed in order must append them in that order.
+     */
+    public long append(SeatChange change) {
+        if (!enabled) {
+            return 0;
+        }
+        synchronized (lock) {
+            if (failure != null || closed) {
+                throw new UncheckedIOException(new IOException("Seat journal is not accepting changes", failure));
+            }
+            if (pending.remaining() < RECORD_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            int start = pending.position();
+            pending.putLong(change.getFlightNumber());
+            pending.putInt(change.getSeatNumber());
+            pending.putLong(change.getPassengerId());
+            CRC32 crc = new CRC32();
+            crc.update(pending.array(), start, PAYLOAD_BYTES);
+            pending.putInt((int) crc.getValue());
+            appendedSinceSeal = true;
+            if (start == 0) {
+                // the syncer only waits while nothing is pending
+                lock.notifyAll();
+            }
+            return ++appended;
+        }
+    }
+
+    public void awaitDurable(long ticket) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (durable < ticket && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durable < ticket) {
+                throw new UncheckedIOException(new IOException("Seat journal write failed", failure));
+            }
+        }
+    }
+
+    public boolean hasAppendsSinceSeal() {
+        synchronized (lock) {
+            return appendedSinceSeal;
+        }
+    }
+
+    /**
+     * Makes everything appended so far durable in the current segment and starts a new one. Returns the id of
+     * the segment that was sealed.
+     */
+    public long seal() {
+        if (!enabled) {
+            return 0;
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Seat journal is closed");
+            }
+            long requested = seals;
+            sealRequested = true;
+            appendedSinceSeal = false;
+            lock.notifyAll();
+            boolean interrupted = false;
+            while (seals == requested && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (seals == requested) {
+                throw new UncheckedIOException(new IOException("Seat journal could not be sealed", failure));
+            }
+            return currentSegment - 1;
+        }
+    }
+
+    /**
+     * Deletes sealed segments up to and including {@code segment}, once their changes are in the database.
+     */
+    public void deleteThrough(long segment) {
+        if (!enabled) {
+            return;
+        }
+        long current;
+        synchronized (lock) {
+            current = currentSegment;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long id;
+                try {
+                    id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (id <= segment && id < current) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete seat journal segments up to " + segment, e);
+        }
+    }
+
+    private void runSyncer() {
+        while (true) {
+            long target;
+            boolean sealing;
+            FileChannel out;
+            synchronized (lock) {
+                while (pending.position() == 0 && !sealRequested && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // only close() stops the syncer, after everything pending is synced
+                    }
+                }
+                if (closed && pending.position() == 0 && !sealRequested) {
+                    return;
+                }
+                ByteBuffer full = pending;
+                pending = syncing;
+                syncing = full;
+                target = appended;
+                sealing = sealRequested;
+                out = channel;
+            }
+            try {
+                syncing.flip();
+                if (syncing.hasRemaining()) {
+                    while (syncing.hasRemaining()) {
+                        out.write(syncing);
+                    }
+                    out.force(false);
+                }
+                syncing.clear();
+                FileChannel next = null;
+                if (sealing) {
+                    next = openSegment(currentSegmentAfterSeal());
+                    out.close();
+                }
+                synchronized (lock) {
+                    durable = target;
+                    if (sealing) {
+                        channel = next;
+                        currentSegment++;
+                        sealRequested = false;
+                        seals++;
+                    }
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Seat journal write failed, seat changes can no longer be accepted", e);
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private long currentSegmentAfterSeal() {
+        synchronized (lock) {
+            return currentSegment + 1;
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        FileChannel segmentChannel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // the new file's directory entry must survive a crash too, or its records would be unreachable
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not every platform can open or sync a directory; the segment itself is still synced
+        }
+        return segmentChannel;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Syncs what has been appended and closes the current segment, deleting it if it is empty. Later appends
+     * fail.
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            try {
+                if (channel != null) {
+                    boolean empty = failure == null && channel.size() == 0;
+                    channel.close();
+                    if (empty) {
+                        Files.deleteIfExists(segmentPath(currentSegment));
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close the seat journal", e);
+            }
+        }
+    }
+}
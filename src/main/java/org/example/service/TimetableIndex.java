@@ -0,0 +1,194 @@
+package org.example.service;
+
+import org.example.model.Flight;
+import org.example.model.FlightSearchCriteria;
+import org.example.repository.FlightRepository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.LongStream;
+
+/**
+ * In-memory timetable of every flight's route and departure: departure date, then route, then departures sorted by
+ * time. Searches that narrow down the route, date or time are answered from it as a list of flight numbers without
+ * scanning {@code flights}, including date and time ranges. Seats are not kept here; {@link FlightServiceImpl}
+ * resolves the flight numbers through the {@link FlightCache}.
+ * <p>
+ * Routes are compared case-insensitively, as the database does. A flight is changed inside
+ * {@link SeatInventory#exclusive} for that flight, which orders its changes; the maps shared by several flights are
+ * changed under one lock, and searches do not lock.
+ */
+public class TimetableIndex {
+    private final boolean enabled;
+    private final ConcurrentSkipListMap<LocalDate, Map<String, NavigableSet<Departure>>> days = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Departure> departures = new ConcurrentHashMap<>();
+    private final Object structureLock = new Object();
+
+    private TimetableIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static TimetableIndex load(FlightRepository flightRepository) {
+        TimetableIndex index = new TimetableIndex(true);
+        flightRepository.streamSearch(FlightSearchCriteria.fromQueryParameters(Collections.<String, String>emptyMap()),
+                index::putFlight);
+        return index;
+    }
+
+    public static TimetableIndex disabled() {
+        return new TimetableIndex(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Number of flights in the timetable. */
+    public int size() {
+        return departures.size();
+    }
+
+    /** Whether {@link #find} can answer the search; archived flights are not in the timetable. */
+    public boolean canAnswer(FlightSearchCriteria criteria) {
+        return enabled && !criteria.isIncludeArchived() && criteria.hasScheduleConditions();
+    }
+
+    /** Adds a flight or moves it to its current route and departure. */
+    public void putFlight(Flight flight) {
+        if (!enabled) {
+            return;
+        }
+        Departure departure = new Departure(flight.getFlightNumber(), routeKey(flight.getRoute()),
+                flight.getDepartureDate(), flight.getDepartureTime());
+        synchronized (structureLock) {
+            Departure previous = departures.put(departure.flightNumber, departure);
+            if (previous != null) {
+                unlink(previous);
+            }
+            days.computeIfAbsent(departure.date, date -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(departure.route, route -> new ConcurrentSkipListSet<>())
+                    .add(departure);
+        }
+    }
+
+    public void removeFlight(long flightNumber) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (structureLock) {
+            Departure previous = departures.remove(flightNumber);
+            if (previous != null) {
+                unlink(previous);
+            }
+        }
+    }
+
+    private void unlink(Departure departure) {
+        Map<String, NavigableSet<Departure>> routes = days.get(departure.date);
+        NavigableSet<Departure> times = routes.get(departure.route);
+        times.remove(departure);
+        if (times.isEmpty()) {
+            routes.remove(departure.route);
+            if (routes.isEmpty()) {
+                days.remove(departure.date);
+            }
+        }
+    }
+
+    /**
+     * Numbers of the flights matching the route, date and time conditions of {@code criteria}, in ascending order.
+     * Seat conditions and paging are left to the caller.
+     */
+    public long[] find(FlightSearchCriteria criteria) {
+        LocalDate from = latest(criteria.getFromDate(), criteria.getDepartureDate());
+        LocalDate to = earliest(criteria.getToDate(), criteria.getDepartureDate());
+        if (from != null && to != null && from.isAfter(to)) {
+            return new long[0];
+        }
+        NavigableMap<LocalDate, Map<String, NavigableSet<Departure>>> range = days;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, true);
+        }
+        String route = criteria.getRoute() != null ? routeKey(criteria.getRoute()) : null;
+        LongStream.Builder matches = LongStream.builder();
+        for (Map<String, NavigableSet<Departure>> routes : range.values()) {
+            if (route == null) {
+                for (NavigableSet<Departure> times : routes.values()) {
+                    collect(times, criteria, matches);
+                }
+            } else {
+                NavigableSet<Departure> times = routes.get(route);
+                if (times != null) {
+                    collect(times, criteria, matches);
+                }
+            }
+        }
+        long[] flightNumbers = matches.build().toArray();
+        Arrays.sort(flightNumbers);
+        return flightNumbers;
+    }
+
+    private static void collect(NavigableSet<Departure> times, FlightSearchCriteria criteria, LongStream.Builder matches) {
+        if (criteria.getAfterTime() != null) {
+            times = times.tailSet(Departure.first(criteria.getAfterTime()), true);
+        }
+        if (criteria.getBeforeTime() != null) {
+            times = times.headSet(Departure.first(criteria.getBeforeTime()), false);
+        }
+        for (Departure departure : times) {
+            if (criteria.getDepartureTime() == null || criteria.getDepartureTime().equals(departure.time)) {
+                matches.add(departure.flightNumber);
+            }
+        }
+    }
+
+    private static LocalDate latest(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate earliest(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+
+    private static String routeKey(String route) {
+        return route.toLowerCase(Locale.ROOT);
+    }
+
+    /** A flight's place in the timetable, ordered by departure time and then flight number. */
+    private static final class Departure implements Comparable<Departure> {
+        private final long flightNumber;
+        private final String route;
+        private final LocalDate date;
+        private final LocalTime time;
+
+        private Departure(long flightNumber, String route, LocalDate date, LocalTime time) {
+            this.flightNumber = flightNumber;
+            this.route = route;
+            this.date = date;
+            this.time = time;
+        }
+
+        /** Sorts before every departure at {@code time}, for range bounds. */
+        private static Departure first(LocalTime time) {
+            return new Departure(Long.MIN_VALUE, null, null, time);
+        }
+
+        @Override
+        public int compareTo(Departure other) {
+            int byTime = time.compareTo(other.time);
+            return byTime != 0 ? byTime : Long.compare(flightNumber, other.flightNumber);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.service;
+
+import org.example.model.EntityVersion;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory version stamps for one entity type, bumped by the service on every write so that conditional GETs
+ * can be answered without reading the database.
+ * <p>
+ * Entities that have not changed since startup share the initial version, which carries no modification time;
+ * only changed ids get an entry. Versions are drawn from one sequence, so the collection version is simply the
+ * latest one handed out. The epoch in the ETag changes on every restart.
+ */
+public class VersionTable {
+    private final boolean enabled;
+    private final String epoch;
+    private final EntityVersion initialVersion;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<Long, EntityVersion> versions = new ConcurrentHashMap<>();
+    private final AtomicReference<EntityVersion> collectionVersion;
+
+    public VersionTable() {
+        this(true);
+    }
+
+    private VersionTable(boolean enabled) {
+        this.enabled = enabled;
+        this.epoch = Long.toString(System.currentTimeMillis(), 36);
+        this.initialVersion = new EntityVersion(epoch, 0, -1);
+        this.collectionVersion = new AtomicReference<>(initialVersion);
+    }
+
+    public static VersionTable disabled() {
+        return new VersionTable(false);
+    }
+
+    /**
+     * Returns the current version of the entity, or {@code null} when the table is disabled.
+     */
+    public EntityVersion get(long id) {
+        return enabled ? versions.getOrDefault(id, initialVersion) : null;
+    }
+
+    /**
+     * Returns the version of the whole collection, or {@code null} when the table is disabled.
+     */
+    public EntityVersion collection() {
+        return enabled ? collectionVersion.get() : null;
+    }
+
+    public void changed(long id) {
+        if (!enabled) {
+            return;
+        }
+        EntityVersion version = next();
+        versions.merge(id, version, VersionTable::latest);
+        collectionVersion.accumulateAndGet(version, VersionTable::latest);
+    }
+
+    /**
+     * Records the creation of an entity. A new id keeps the initial version and costs no entry unless it was
+     * changed or deleted earlier.
+     */
+    public void created(long id) {
+        if (!enabled) {
+            return;
+        }
+        EntityVersion version = next();
+        versions.computeIfPresent(id, (key, current) -> latest(current, version));
+        collectionVersion.accumulateAndGet(version, VersionTable::latest);
+    }
+
+    private EntityVersion next() {
+        return new EntityVersion(epoch, sequence.incrementAndGet(), System.currentTimeMillis());
+    }
+
+    private static EntityVersion latest(EntityVersion a, EntityVersion b) {
+        return a.getSequence() >= b.getSequence() ? a : b;
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
+class ConnectionPoolTests {
+
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    void setUp() {
+        connectionPool = new ConnectionPool("jdbc:h2:mem:pooldb;DB_CLOSE_DELAY=-1", "sa", "", 2, 200, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    void testConnectionIsReusedAfterClose() throws SQLException {
+        try (Connection connection = connectionPool.getConnection()) {
+            Assertions.assertEquals(1, connectionPool.getActiveConnections());
+        }
+        Assertions.assertEquals(0, connectionPool.getActiveConnections());
+        Assertions.assertEquals(1, connectionPool.getIdleConnections());
+
+        try (Connection connection = connectionPool.getConnection()) {
+            Assertions.assertEquals(1, connectionPool.getTotalConnections(), "Idle connection should be reused");
+        }
+    }
+
+    @Test
+    void testBorrowTimesOutWhenPoolExhausted() throws SQLException {
+        try (Connection first = connectionPool.getConnection();
+             Connection second = connectionPool.getConnection()) {
+            Assertions.assertThrows(SQLTransientConnectionException.class, () -> connectionPool.getConnection());
+        }
+        Assertions.assertEquals(1, connectionPool.getTimeoutCount());
+    }
+
+    @Test
+    void testReturnedConnectionRollsBackOpenTransaction() throws SQLException {
+        Connection connection = connectionPool.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        Assertions.assertTrue(connection.isClosed());
+        Assertions.assertThrows(SQLException.class, connection::createStatement);
+        try (Connection reused = connectionPool.getConnection()) {
+            Assertions.assertTrue(reused.getAutoCommit(), "Pool should restore auto-commit on return");
+        }
+    }
+
+    @Test
+    void testConnectionFailureFromStatementDiscardsConnection() throws SQLException {
+        try (Connection connection = connectionPool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS IF NOT EXISTS FAIL_LINK FOR \"" + LinkFailure.class.getName() + ".failLink\"");
+            Assertions.assertSame(connection, stmt.getConnection());
+            Assertions.assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT FAIL_LINK()"));
+        }
+        Assertions.assertEquals(0, connectionPool.getTotalConnections(), "A connection that failed mid-query is discarded");
+        Assertions.assertEquals(0, connectionPool.getIdleConnections());
+    }
+
+    @Test
+    void testSchemaMigrationUpgradesTheOriginalSchemaOnce() throws SQLException {
+        try (Connection connection = connectionPool.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE flights (flightNumber BIGINT AUTO_INCREMENT PRIMARY KEY, route VARCHAR(255), "
+                    + "departureDate DATE, departureTime TIME, availableSeats INT)");
+            stmt.execute("CREATE TABLE passengers (id BIGINT AUTO_INCREMENT PRIMARY KEY, firstName VARCHAR(255), "
+                    + "lastName VARCHAR(255), phoneNumber VARCHAR(20))");
+            stmt.execute("CREATE TABLE seat_assignments (flightNumber BIGINT, seatNumber INT, passengerId BIGINT, "
+                    + "PRIMARY KEY (flightNumber, seatNumber), "
+                    + "FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber), "
+                    + "FOREIGN KEY (passengerId) REFERENCES passengers(id))");
+            stmt.execute("INSERT INTO flights (route, departureDate, departureTime, availableSeats) "
+                    + "VALUES ('Kielce-Warszawa', '2024-04-22', '15:30:00', 180)");
+            stmt.execute("INSERT INTO passengers (firstName, lastName, phoneNumber) VALUES ('Jan', 'Kowalski', '111222333')");
+            stmt.execute("INSERT INTO seat_assignments VALUES (1, 5, 1)");
+            try {
+                SchemaMigration.migrate(connection);
+                SchemaMigration.migrate(connection);
+                try (ResultSet rs = stmt.executeQuery("SELECT occupiedSeats, freeSeats, version FROM flights")) {
+                    Assertions.assertTrue(rs.next());
+                    Assertions.assertEquals(1, rs.getInt(1), "Existing seats are counted");
+                    Assertions.assertEquals(179, rs.getInt(2));
+                    Assertions.assertEquals(0, rs.getLong(3));
+                }
+                Assertions.assertThrows(SQLException.class, () -> stmt.execute(
+                        "INSERT INTO passengers (firstName, lastName, phoneNumber) VALUES ('Anna', 'Nowak', '111222333')"));
+                stmt.execute("INSERT INTO flights_archive (flightNumber, route, departureDate, departureTime, availableSeats) "
+                        + "VALUES (1, 'Kielce-Warszawa', '2024-04-22', '15:30:00', 180)");
+                stmt.execute("INSERT INTO seat_assignments_archive VALUES (1, 5, 1)");
+            } finally {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+
+    public static final class LinkFailure {
+        public static int failLink() throws SQLException {
+            throw new SQLException("Communications link failure", "08S01");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+class LoggingTests {
+
+    @Test
+    void testAsyncHandlerWritesJsonWithRequestId() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogHandler handler = new AsyncLogHandler(out, 16);
+        LogRecord record = new LogRecord(Level.FINE, "Seat {0} on flight {1}: \"assigned\"");
+        record.setLoggerName("org.example.Test");
+        record.setParameters(new Object[]{7, 12345L});
+        CorrelationId.set("req-1");
+        try {
+            handler.publish(record);
+        } finally {
+            CorrelationId.clear();
+        }
+        handler.close();
+
+        String line = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(line.endsWith("}\n"), line);
+        Assertions.assertTrue(line.contains("\"level\":\"DEBUG\""), line);
+        Assertions.assertTrue(line.contains("\"requestId\":\"req-1\""), line);
+        Assertions.assertTrue(line.contains("\"msg\":\"Seat 7 on flight 12345: \\\"assigned\\\"\""), line);
+    }
+
+    @Test
+    void testRateLimiterSuppressesBursts() {
+        LogRateLimiter limiter = new LogRateLimiter(3);
+        int granted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.tryAcquire()) {
+                granted++;
+            }
+        }
+        Assertions.assertTrue(granted >= 3 && granted < 10, "Burst should be cut off after the per-second limit");
+        Assertions.assertEquals(10 - granted, limiter.drainSuppressed());
+        Assertions.assertEquals(0, limiter.drainSuppressed());
+    }
+
+    @Test
+    void testCorrelationIdFromHeader() {
+        Assertions.assertEquals("abc-123", CorrelationId.fromHeader("abc-123"));
+        Assertions.assertEquals(16, CorrelationId.fromHeader(null).length());
+        Assertions.assertNotEquals("bad id\n", CorrelationId.fromHeader("bad id\n"));
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+class MetricsTests {
+
+    @Test
+    void testHistogramQuantilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(500.0, histogram.quantileNanos(0.5) / 1000.0, 500 * 0.04);
+        Assertions.assertEquals(990.0, histogram.quantileNanos(0.99) / 1000.0, 990 * 0.04);
+        Assertions.assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.quantileNanos(1.0));
+    }
+
+    @Test
+    void testRegistryWritesPrometheusText() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("http_requests_total", "Requests", "route", "/flights/{id}", "status", "200").add(3);
+        registry.histogram("http_request_duration_seconds", "Latency", "route", "/flights").record(2_000_000);
+        registry.gauge("db_pool_connections", "Connections", () -> 4, "state", "idle");
+
+        StringWriter writer = new StringWriter();
+        registry.writeTo(writer);
+        String text = writer.toString();
+        Assertions.assertTrue(text.contains("# TYPE http_requests_total counter\n"));
+        Assertions.assertTrue(text.contains("http_requests_total{route=\"/flights/{id}\",status=\"200\"} 3\n"));
+        Assertions.assertTrue(text.contains("http_request_duration_seconds_count{route=\"/flights\"} 1\n"));
+        Assertions.assertTrue(text.contains("http_request_duration_seconds{route=\"/flights\",quantile=\"0.99\"} 0.002"));
+        Assertions.assertTrue(text.contains("db_pool_connections{state=\"idle\"} 4\n"));
+    }
+
+    @Test
+    void testRouteNormalizationCollapsesIds() {
+        Assertions.assertEquals("/flights/{id}/seats/{id}", MetricsFilter.normalize("/flights/12/seats/3"));
+        Assertions.assertEquals("/passengers", MetricsFilter.normalize("/passengers/"));
+        Assertions.assertEquals("/", MetricsFilter.normalize("/"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+class FlightTests {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @Test
+    void testSeatMapJsonIsWireCompatible() throws Exception {
+        Map<Integer, Long> seatMap = new HashMap<>();
+        seatMap.put(3, 30L);
+        seatMap.put(1, 10L);
+        seatMap.put(130, 42L);
+        Flight flight = new Flight(7L, "Warszawa-Kielce", LocalDate.of(2024, 4, 23), LocalTime.of(12, 0), 200, seatMap);
+
+        String json = objectMapper.writeValueAsString(flight);
+        Assertions.assertTrue(json.contains("\"seatMap\":{\"1\":10,\"3\":30,\"130\":42}"), json);
+        Assertions.assertTrue(json.contains("\"availableSeats\":197"), json);
+
+        Flight parsed = objectMapper.readValue("{\"flightNumber\":7,\"route\":\"Warszawa-Kielce\",\"departureDate\":\"2024-04-23\","
+                + "\"departureTime\":\"12:00\",\"availableSeats\":200,\"seatMap\":{\"1\":10,\"3\":30,\"130\":42}}", Flight.class);
+        Assertions.assertEquals(flight.getSeatMap(), parsed.getSeatMap());
+        Assertions.assertEquals(197, parsed.getAvailableSeats());
+    }
+
+    @Test
+    void testAssignAndUnassignSeats() {
+        Flight flight = new Flight(1L, "Route", LocalDate.now(), LocalTime.now(), 2, null);
+
+        Assertions.assertTrue(flight.assignPassengerToSeat(2, 5L));
+        Assertions.assertFalse(flight.assignPassengerToSeat(2, 6L), "Occupied seat cannot be assigned again");
+        Assertions.assertFalse(flight.assignPassengerToSeat(3, 6L), "Seat outside capacity cannot be assigned");
+        Assertions.assertEquals(1, flight.getAvailableSeats());
+        Assertions.assertEquals(Long.valueOf(5L), flight.getSeatMap().get(2));
+
+        Assertions.assertTrue(flight.unassignPassengerFromSeat(2));
+        Assertions.assertFalse(flight.unassignPassengerFromSeat(2));
+        Assertions.assertTrue(flight.getSeatMap().isEmpty());
+    }
+
+    @Test
+    void testSeatOccupancyGrowsAndIterates() {
+        SeatOccupancy occupancy = new SeatOccupancy(4);
+        occupancy.put(2_000, 9L);
+        occupancy.put(64, 8L);
+        occupancy.put(63, 7L);
+
+        Assertions.assertEquals(3, occupancy.size());
+        Assertions.assertEquals(63, occupancy.nextOccupiedSeat(0));
+        Assertions.assertEquals(64, occupancy.nextOccupiedSeat(64));
+        Assertions.assertEquals(2_000, occupancy.nextOccupiedSeat(65));
+        Assertions.assertEquals(-1, occupancy.nextOccupiedSeat(2_001));
+
+        SeatOccupancy copy = new SeatOccupancy(occupancy);
+        occupancy.release(64);
+        Assertions.assertTrue(copy.isOccupied(64), "Copies must not share state");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> occupancy.put(SeatOccupancy.MAX_SEAT_NUMBER + 1, 1L));
+    }
+
+    @Test
+    void testSeatOccupancyFindsFreeSeatsAndRuns() {
+        SeatOccupancy occupancy = new SeatOccupancy(200);
+        for (int seat = 1; seat <= 130; seat++) {
+            if (seat != 70) {
+                occupancy.put(seat, seat);
+            }
+        }
+        occupancy.put(134, 1L);
+
+        Assertions.assertEquals(70, occupancy.nextFreeSeat(1, 200));
+        Assertions.assertEquals(131, occupancy.nextFreeSeat(71, 200), "Full words are skipped");
+        Assertions.assertEquals(-1, occupancy.nextFreeSeat(71, 130));
+        Assertions.assertEquals(70, occupancy.findFreeRun(1, 200, 1));
+        Assertions.assertEquals(131, occupancy.findFreeRun(1, 200, 3));
+        Assertions.assertEquals(135, occupancy.findFreeRun(1, 200, 4), "The gap before seat 134 is too short");
+        Assertions.assertEquals(-1, occupancy.findFreeRun(1, 140, 7));
+        Assertions.assertEquals(1, new SeatOccupancy(0).findFreeRun(1, 5_000, 5_000), "Seats beyond the bitset are free");
+    }
+
+    @Test
+    void testSeatChangesAreComparedByValue() {
+        Assertions.assertEquals(SeatChange.assigned(7L, 3, 42L), new SeatChange(7L, 3, 42L));
+        Assertions.assertEquals(SeatChange.released(7L, 3).hashCode(), new SeatChange(7L, 3, SeatChange.RELEASED).hashCode());
+        Assertions.assertNotEquals(SeatChange.assigned(7L, 3, 42L), SeatChange.released(7L, 3));
+    }
+}
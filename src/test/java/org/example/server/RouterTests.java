@@ -0,0 +1,40 @@
+package org.example.server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class RouterTests {
+
+    private static final Router.Handler NO_OP = (exchange, parameters) -> { };
+
+    @Test
+    void testLiteralSegmentsTakePrecedenceOverParameters() {
+        Router router = new Router()
+                .route("GET", "/flights", NO_OP)
+                .route("POST", "/flights/bulk", NO_OP)
+                .route("GET", "/flights/{flightNumber}", NO_OP)
+                .route("PUT", "/flights/{flightNumber}/seats/{seatNumber:int}", NO_OP);
+
+        Assertions.assertEquals("/flights", router.template("GET", "/flights/"));
+        Assertions.assertEquals("/flights/bulk", router.template("POST", "/flights/bulk"));
+        Assertions.assertEquals("/flights/{flightNumber}", router.template("GET", "/flights/42"));
+        Assertions.assertEquals("/flights/{flightNumber}/seats/{seatNumber:int}", router.template("PUT", "/flights/42/seats/7"));
+        Assertions.assertNull(router.template("GET", "/flights/bulk"), "GET is not routed for the literal segment");
+        Assertions.assertNull(router.template("GET", "/flights/42/seats"));
+        Assertions.assertNull(router.template("GET", "/passengers"));
+    }
+
+    @Test
+    void testQueryParametersAreUrlDecoded() {
+        Map<String, String> parameters = Router.queryParameters("route=Warszawa%20-%20Krak%C3%B3w&limit=10&after&route=ignored&a+b=c+d");
+
+        Assertions.assertEquals("Warszawa - Kraków", parameters.get("route"));
+        Assertions.assertEquals("10", parameters.get("limit"));
+        Assertions.assertEquals("", parameters.get("after"));
+        Assertions.assertEquals("c d", parameters.get("a b"));
+        Assertions.assertTrue(Router.queryParameters(null).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Router.queryParameters("route=%G1"));
+    }
+}
@@ -1,33 +1,56 @@
 package org.example.service;
 
+import org.example.database.ConnectionPool;
+import org.example.model.Booking;
+import org.example.model.EntityVersion;
 import org.example.model.Flight;
+import org.example.model.PageRequest;
 import org.example.model.Passenger;
+import org.example.model.PassengerSearchCriteria;
 import org.example.repository.FlightRepositoryImpl;
 import org.example.repository.PassengerRepositoryImpl;
+import org.example.repository.DuplicatePhoneNumberException;
+import org.example.repository.VersionConflictException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 class ServiceTests {
 
+    private ConnectionPool connectionPool;
     private Connection connection;
     private FlightServiceImpl flightService;
     private PassengerServiceImpl passengerService;
 
     @BeforeEach
     void setUp() throws SQLException {
-        connection = DriverManager.getConnection("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1", "sa", "");
-        flightService = new FlightServiceImpl(new FlightRepositoryImpl(connection));
-        passengerService = new PassengerServiceImpl(new PassengerRepositoryImpl(connection));
+        connectionPool = new ConnectionPool("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1", "sa", "", 4, 5_000, 0);
+        connection = connectionPool.getConnection();
+        flightService = new FlightServiceImpl(new FlightRepositoryImpl(connectionPool));
+        passengerService = new PassengerServiceImpl(new PassengerRepositoryImpl(connectionPool));
         createTables();
     }
     void createTables() throws SQLException {
@@ -35,27 +58,51 @@ class ServiceTests {
             stmt.execute(
                     "CREATE TABLE IF NOT EXISTS flights (" +
                             "flightNumber BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                            "route VARCHAR(255), " +
+                            "route VARCHAR_IGNORECASE(255), " +
                             "departureDate DATE, " +
                             "departureTime TIME, " +
-                            "availableSeats INT)"
+                            "availableSeats INT, " +
+                            "occupiedSeats INT DEFAULT 0 NOT NULL, " +
+                            "version BIGINT DEFAULT 0 NOT NULL, " +
+                            "freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats))"
             );
             stmt.execute(
                     "CREATE TABLE IF NOT EXISTS passengers (" +
                             "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                            "firstName VARCHAR(255), " +
-                            "lastName VARCHAR(255), " +
-                            "phoneNumber VARCHAR(20))"
+                            "firstName VARCHAR_IGNORECASE(255), " +
+                            "lastName VARCHAR_IGNORECASE(255), " +
+                            "phoneNumber VARCHAR(20) UNIQUE)"
             );
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_passengers_name ON passengers (lastName, firstName)");
             stmt.execute(
                     "CREATE TABLE IF NOT EXISTS seat_assignments (" +
                             "flightNumber BIGINT, " +
                             "seatNumber INT, " +
                             "passengerId BIGINT, " +
                             "PRIMARY KEY (flightNumber, seatNumber), " +
-                            "FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber), " +
+                            "FOREIGN KEY (flightNumber) REFERENCES flights(flightNumber) ON DELETE CASCADE, " +
                             "FOREIGN KEY (passengerId) REFERENCES passengers(id))"
             );
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_seat_assignments_passenger ON seat_assignments (passengerId)");
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS flights_archive (" +
+                            "flightNumber BIGINT PRIMARY KEY, " +
+                            "route VARCHAR_IGNORECASE(255), " +
+                            "departureDate DATE, " +
+                            "departureTime TIME, " +
+                            "availableSeats INT, " +
+                            "occupiedSeats INT DEFAULT 0 NOT NULL, " +
+                            "version BIGINT DEFAULT 0 NOT NULL, " +
+                            "freeSeats INT GENERATED ALWAYS AS (availableSeats - occupiedSeats))"
+            );
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS seat_assignments_archive (" +
+                            "flightNumber BIGINT, " +
+                            "seatNumber INT, " +
+                            "passengerId BIGINT, " +
+                            "PRIMARY KEY (flightNumber, seatNumber), " +
+                            "FOREIGN KEY (flightNumber) REFERENCES flights_archive(flightNumber) ON DELETE CASCADE)"
+            );
         }
     }
 
@@ -65,6 +112,7 @@ class ServiceTests {
             stmt.execute("DROP ALL OBJECTS");
         }
         connection.close();
+        connectionPool.close();
     }
 
     @Test
@@ -115,6 +163,13 @@ class ServiceTests {
         Flight updatedFlight = flightService.getFlightByFlightNumber(flight.getFlightNumber()).orElse(null);
         Assertions.assertEquals("Updated Route", updatedFlight.getRoute(), "Flight route should be updated.");
         System.out.println("Updated Flight: " + updatedFlight);
+
+        long missing = flight.getFlightNumber() + 1000;
+        flight.setFlightNumber(missing);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> flightService.updateFlight(missing, flight));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> flightService.updateFlight(missing, flight, 0),
+                "A missing flight is not a stale version");
+        Assertions.assertFalse(flightService.getFlightByFlightNumber(missing).isPresent());
     }
 
     @Test
@@ -150,6 +205,761 @@ class ServiceTests {
         Assertions.assertFalse(result, "Should not unassign a non-existent passenger.");
     }
 
+    @Test
+    void testAssignTakenSeatAndRelease() throws SQLException {
+        Flight flight = new Flight(null, "Route E", LocalDate.now(), LocalTime.now(), 3, null);
+        flightService.addFlight(flight);
+        Passenger first = new Passenger(null, "First", "Passenger", "100200300");
+        Passenger second = new Passenger(null, "Second", "Passenger", "400500600");
+        passengerService.addPassenger(first);
+        passengerService.addPassenger(second);
+
+        Assertions.assertTrue(flightService.assignPassengerToFlight(flight.getFlightNumber(), 2, first.getId()));
+        Assertions.assertFalse(flightService.assignPassengerToFlight(flight.getFlightNumber(), 2, second.getId()),
+                "An already assigned seat should be rejected");
+        Assertions.assertFalse(flightService.assignPassengerToFlight(flight.getFlightNumber(), 3, 999_999L),
+                "An unknown passenger should be rejected");
+        Assertions.assertFalse(flightService.assignPassengerToFlight(flight.getFlightNumber(), 4, second.getId()),
+                "A seat outside the aircraft should be rejected");
+
+        Assertions.assertTrue(flightService.unassignPassengerFromFlight(flight.getFlightNumber(), 2));
+        Assertions.assertTrue(flightService.assignPassengerToFlight(flight.getFlightNumber(), 2, second.getId()));
+
+        Flight updatedFlight = flightService.getFlightByFlightNumber(flight.getFlightNumber()).orElse(null);
+        Assertions.assertNotNull(updatedFlight);
+        Assertions.assertEquals(second.getId(), updatedFlight.getSeatMap().get(2));
+        Assertions.assertEquals(2, updatedFlight.getAvailableSeats());
+    }
+
+    @Test
+    void testConcurrentAssignmentOfSameSeat() throws Exception {
+        Flight flight = new Flight(null, "Route F", LocalDate.now(), LocalTime.now(), 10, null);
+        flightService.addFlight(flight);
+        List<Long> passengerIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Passenger passenger = new Passenger(null, "Passenger", "No" + i, "70000000" + i);
+            passengerService.addPassenger(passenger);
+            passengerIds.add(passenger.getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(passengerIds.size());
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (long passengerId : passengerIds) {
+                results.add(executor.submit(() -> flightService.assignPassengerToFlight(flight.getFlightNumber(), 7, passengerId)));
+            }
+            int successes = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    successes++;
+                }
+            }
+            Assertions.assertEquals(1, successes, "Exactly one passenger should get the seat");
+        } finally {
+            executor.shutdownNow();
+        }
+        Flight updatedFlight = flightService.getFlightByFlightNumber(flight.getFlightNumber()).orElse(null);
+        Assertions.assertNotNull(updatedFlight);
+        Assertions.assertEquals(9, updatedFlight.getAvailableSeats());
+    }
+
+    @Test
+    void testFlightCacheIsInvalidatedOnSeatChanges() throws SQLException {
+        FlightCache flightCache = new FlightCache(100, 60_000);
+        FlightServiceImpl cachedFlightService = new FlightServiceImpl(new FlightRepositoryImpl(connectionPool), flightCache,
+                VersionTable.disabled(), SeatInventory.disabled(), ItineraryIndex.disabled(), TimetableIndex.disabled());
+        Flight flight = new Flight(null, "Route G", LocalDate.now(), LocalTime.now(), 5, null);
+        cachedFlightService.addFlight(flight);
+        Passenger passenger = new Passenger(null, "Cache", "Passenger", "900800700");
+        passengerService.addPassenger(passenger);
+
+        cachedFlightService.getFlightByFlightNumber(flight.getFlightNumber());
+        cachedFlightService.getFlightByFlightNumber(flight.getFlightNumber()).get().getSeatMap().put(1, passenger.getId());
+        Assertions.assertEquals(1, flightCache.getHits());
+        Assertions.assertEquals(5, cachedFlightService.getFlightByFlightNumber(flight.getFlightNumber()).get().getAvailableSeats(),
+                "Mutating a returned flight must not change the cached copy");
+
+        cachedFlightService.assignPassengerToFlight(flight.getFlightNumber(), 1, passenger.getId());
+        Flight afterAssignment = cachedFlightService.getFlightByFlightNumber(flight.getFlightNumber()).get();
+        Assertions.assertEquals(passenger.getId(), afterAssignment.getSeatMap().get(1), "Seat change should invalidate the cached flight");
+        Assertions.assertEquals(2, flightCache.getMisses());
+    }
+
+    @Test
+    void testFlightCacheKeepsLoadsRacingInvalidationsOfOtherFlights() {
+        FlightCache flightCache = new FlightCache(100, 60_000);
+        Flight flight = new Flight(1L, "Route H", LocalDate.now(), LocalTime.now(), 5, null);
+        flightCache.get(1, flightNumber -> {
+            flightCache.invalidate(2);
+            return Optional.of(flight);
+        });
+        flightCache.get(1, flightNumber -> Optional.empty());
+        Assertions.assertEquals(1, flightCache.getHits(), "Invalidating another flight must not discard the load");
+
+        flightCache.invalidate(1);
+        flightCache.get(1, flightNumber -> {
+            flightCache.invalidate(1);
+            return Optional.of(flight);
+        });
+        Assertions.assertEquals(0, flightCache.size(), "A load racing an invalidation of the same flight is not stored");
+
+        FlightCache expiring = new FlightCache(100, 0);
+        expiring.get(1, flightNumber -> Optional.of(flight));
+        expiring.get(1, flightNumber -> Optional.of(flight));
+        Assertions.assertEquals(1, expiring.getEvictions(), "Expired entries count as evictions");
+    }
+
+    @Test
+    void testFlightVersionChangesOnWrites() throws SQLException {
+        FlightServiceImpl versionedFlightService = new FlightServiceImpl(new FlightRepositoryImpl(connectionPool),
+                FlightCache.disabled(), new VersionTable(), SeatInventory.disabled(), ItineraryIndex.disabled(),
+                TimetableIndex.disabled());
+        Flight flight = new Flight(null, "Route V", LocalDate.now(), LocalTime.now(), 5, null);
+        versionedFlightService.addFlight(flight);
+        Passenger passenger = new Passenger(null, "Version", "Passenger", "900800701");
+        passengerService.addPassenger(passenger);
+
+        EntityVersion created = versionedFlightService.getFlightVersion(flight.getFlightNumber());
+        EntityVersion collection = versionedFlightService.getFlightsVersion();
+        Assertions.assertEquals(created.getEtag(), versionedFlightService.getFlightVersion(flight.getFlightNumber()).getEtag());
+
+        Assertions.assertFalse(versionedFlightService.unassignPassengerFromFlight(flight.getFlightNumber(), 1));
+        Assertions.assertEquals(created.getEtag(), versionedFlightService.getFlightVersion(flight.getFlightNumber()).getEtag(),
+                "A write that changed nothing keeps the version");
+
+        versionedFlightService.assignPassengerToFlight(flight.getFlightNumber(), 1, passenger.getId());
+        EntityVersion assigned = versionedFlightService.getFlightVersion(flight.getFlightNumber());
+        Assertions.assertNotEquals(created.getEtag(), assigned.getEtag());
+        Assertions.assertNotNull(assigned.getLastModified());
+        Assertions.assertNotEquals(collection.getEtag(), versionedFlightService.getFlightsVersion().getEtag());
+        Assertions.assertNull(flightService.getFlightVersion(flight.getFlightNumber()), "Versioning is off by default");
+    }
+
+    @Test
+    void testSeatInventoryArbitratesInMemoryAndWritesBehind() throws Exception {
+        Flight flight = new Flight(null, "Route S", LocalDate.now(), LocalTime.now(), 10, null);
+        flightService.addFlight(flight);
+        long flightNumber = flight.getFlightNumber();
+        List<Long> passengerIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Passenger passenger = new Passenger(null, "Inventory", "No" + i, "71000000" + i);
+            passengerService.addPassenger(passenger);
+            passengerIds.add(passenger.getId());
+        }
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+        SeatInventory inventory = new SeatInventory(flightRepository, FlightCache.disabled(),
+                id -> passengerService.getPassengerById(id).isPresent(), 10, 60_000);
+        FlightServiceImpl inventoryService = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                VersionTable.disabled(), inventory, ItineraryIndex.disabled(), TimetableIndex.disabled());
+
+        ExecutorService executor = Executors.newFixedThreadPool(passengerIds.size());
+        List<Long> winners = new ArrayList<>();
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (long passengerId : passengerIds) {
+                results.add(executor.submit(() -> inventoryService.assignPassengerToFlight(flightNumber, 7, passengerId)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).get()) {
+                    winners.add(passengerIds.get(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, winners.size(), "Exactly one passenger should get the seat");
+        Assertions.assertFalse(inventoryService.assignPassengerToFlight(flightNumber, 8, 999_999L), "Unknown passenger");
+        Assertions.assertFalse(inventoryService.assignPassengerToFlight(flightNumber, 11, winners.get(0)), "Seat beyond capacity");
+        Assertions.assertEquals(winners.get(0), inventoryService.getFlightByFlightNumber(flightNumber).get().getSeatMap().get(7));
+        Assertions.assertTrue(flightService.getFlightByFlightNumber(flightNumber).get().getSeatMap().isEmpty(),
+                "Nothing is written before the flush");
+
+        Assertions.assertTrue(inventoryService.unassignPassengerFromFlight(flightNumber, 7));
+        Assertions.assertTrue(inventoryService.assignPassengerToFlight(flightNumber, 3, winners.get(0)));
+        Assertions.assertEquals(3, inventoryService.getFlightByFlightNumber(flightNumber).get().getVersion(),
+                "Each accepted change moves the version once");
+        inventory.flush();
+        Assertions.assertEquals(0, inventory.getPendingWrites());
+        Flight written = flightService.getFlightByFlightNumber(flightNumber).get();
+        Assertions.assertEquals(3, written.getVersion(), "The flush stores the version the changes were given");
+        Assertions.assertEquals(1, written.getSeatMap().size());
+        Assertions.assertEquals(winners.get(0), written.getSeatMap().get(3));
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT occupiedSeats FROM flights WHERE flightNumber = " + flightNumber)) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(1, rs.getInt(1), "The occupied count is recomputed by the flush");
+        }
+        inventory.close();
+
+        VersionTable versions = new VersionTable();
+        SeatInventory restarted = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true,
+                SeatJournal.disabled(), change -> { }, versions::changed, 10, 100, 60_000);
+        FlightServiceImpl restartedService = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                versions, restarted, ItineraryIndex.disabled(), TimetableIndex.disabled());
+        Assertions.assertFalse(restartedService.assignPassengerToFlight(flightNumber, 3, passengerIds.get(0)),
+                "Seats written before the restart are reloaded");
+        Assertions.assertTrue(restartedService.assignPassengerToFlight(flightNumber, 5, 999_999L));
+        String acknowledged = restartedService.getFlightVersion(flightNumber).getEtag();
+        restarted.flush();
+        Assertions.assertNotEquals(acknowledged, restartedService.getFlightVersion(flightNumber).getEtag(),
+                "Undoing an acknowledged change moves the ETag");
+        Flight current = restartedService.getFlightByFlightNumber(flightNumber).get();
+        Assertions.assertNull(current.getSeatMap().get(5), "A change the database rejects is undone");
+        Assertions.assertEquals(winners.get(0), current.getSeatMap().get(3));
+        current.setRoute("Route S2");
+        restartedService.updateFlight(flightNumber, current, current.getVersion());
+        Assertions.assertEquals(0, restarted.getTrackedFlights(), "Other writes drop the flight from memory");
+        restarted.close();
+    }
+
+    @Test
+    void testSeatJournalReplaysAcknowledgedChanges(@TempDir Path journalDir, @TempDir Path crashedDir) throws Exception {
+        Flight flight = new Flight(null, "Route J", LocalDate.now(), LocalTime.now(), 10, null);
+        flightService.addFlight(flight);
+        long flightNumber = flight.getFlightNumber();
+        Passenger first = new Passenger(null, "Journal", "First", "720000001");
+        Passenger second = new Passenger(null, "Journal", "Second", "720000002");
+        passengerService.addPassenger(first);
+        passengerService.addPassenger(second);
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+
+        SeatInventory inventory = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true,
+                SeatJournal.open(journalDir), 10, 3, 60_000);
+        FlightServiceImpl inventoryService = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                VersionTable.disabled(), inventory, ItineraryIndex.disabled(), TimetableIndex.disabled());
+        Assertions.assertTrue(inventoryService.assignPassengerToFlight(flightNumber, 1, first.getId()));
+        Assertions.assertTrue(inventoryService.assignPassengerToFlight(flightNumber, 2, second.getId()));
+        Assertions.assertTrue(inventoryService.unassignPassengerFromFlight(flightNumber, 1));
+        Assertions.assertTrue(inventoryService.assignPassengerToFlight(flightNumber, 4, first.getId()));
+        Assertions.assertThrows(BackpressureException.class,
+                () -> inventoryService.assignPassengerToFlight(flightNumber, 5, first.getId()),
+                "Three seats are already waiting to be written");
+        Assertions.assertEquals(1, inventory.getRejectedRequests());
+
+        // what a crash would leave behind: acknowledged changes in the journal, none in the database
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(journalDir)) {
+            for (Path segment : segments) {
+                Files.copy(segment, crashedDir.resolve(segment.getFileName()));
+            }
+        }
+        inventory.close();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(journalDir)) {
+            Assertions.assertFalse(segments.iterator().hasNext(), "A clean shutdown leaves nothing to replay");
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM seat_assignments WHERE flightNumber = " + flightNumber);
+        }
+        Assertions.assertTrue(flightService.getFlightByFlightNumber(flightNumber).get().getSeatMap().isEmpty());
+
+        SeatInventory recovered = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true,
+                SeatJournal.open(crashedDir), 10, 3, 60_000);
+        Map<Integer, Long> seatMap = flightService.getFlightByFlightNumber(flightNumber).get().getSeatMap();
+        Assertions.assertEquals(2, seatMap.size(), "The release of seat 1 is replayed too");
+        Assertions.assertEquals(second.getId(), seatMap.get(2));
+        Assertions.assertEquals(first.getId(), seatMap.get(4));
+        recovered.close();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(crashedDir)) {
+            Assertions.assertFalse(segments.iterator().hasNext(), "Replayed segments are deleted");
+        }
+    }
+
+    @Test
+    void testAllocateSeatsAssignsAllOrNothing() throws SQLException {
+        Flight flight = new Flight(null, "Route A", LocalDate.now(), LocalTime.now(), 6, null);
+        flightService.addFlight(flight);
+        long flightNumber = flight.getFlightNumber();
+        List<Long> group = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Passenger passenger = new Passenger(null, "Group", "No" + i, "73000000" + i);
+            passengerService.addPassenger(passenger);
+            group.add(passenger.getId());
+        }
+        Assertions.assertTrue(flightService.assignPassengerToFlight(flightNumber, 2, group.get(0)));
+
+        Map<Integer, Long> together = flightService.allocateSeats(flightNumber, group, true).get();
+        Assertions.assertEquals(Arrays.asList(3, 4, 5), new ArrayList<>(together.keySet()), "Seat 1 is not part of a run of 3");
+        Assertions.assertEquals(group, new ArrayList<>(together.values()));
+        Assertions.assertTrue(flightService.allocateSeats(flightNumber, group.subList(0, 2), true).get().isEmpty(),
+                "Seats 1 and 6 are free but not adjacent");
+        Assertions.assertTrue(flightService.allocateSeats(flightNumber, Arrays.asList(group.get(0), 999_999L), false).get().isEmpty(),
+                "An unknown passenger fails the whole allocation");
+        Assertions.assertEquals(4, flightService.getFlightByFlightNumber(flightNumber).get().getSeatMap().size());
+
+        Flight current = flightService.getFlightByFlightNumber(flightNumber).get();
+        Assertions.assertThrows(VersionConflictException.class,
+                () -> flightService.allocateSeats(flightNumber, group.subList(0, 2), false, current.getVersion() - 1));
+        Map<Integer, Long> scattered = flightService.allocateSeats(flightNumber, group.subList(0, 2), false, current.getVersion()).get();
+        Assertions.assertEquals(Arrays.asList(1, 6), new ArrayList<>(scattered.keySet()));
+        Assertions.assertTrue(flightService.allocateSeats(flightNumber, group.subList(0, 1), false).get().isEmpty(), "The flight is full");
+        Assertions.assertFalse(flightService.allocateSeats(999_999L, group, false).isPresent());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> flightService.allocateSeats(flightNumber, new ArrayList<Long>(), false));
+    }
+
+    @Test
+    void testItineraryWithAndWithoutIndex() throws SQLException {
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+        Flight later = new Flight(null, "Route L", LocalDate.now().plusDays(2), LocalTime.of(9, 0), 4, null);
+        Flight earlier = new Flight(null, "Route E", LocalDate.now().plusDays(1), LocalTime.of(18, 30), 4, null);
+        flightService.addFlight(later);
+        flightService.addFlight(earlier);
+        Passenger traveller = new Passenger(null, "Frequent", "Flyer", "640500100");
+        Passenger companion = new Passenger(null, "Travel", "Companion", "640500101");
+        passengerService.addPassenger(traveller);
+        passengerService.addPassenger(companion);
+        Assertions.assertTrue(flightService.assignPassengerToFlight(later.getFlightNumber(), 2, traveller.getId()));
+        flightService.allocateSeats(earlier.getFlightNumber(), Arrays.asList(companion.getId(), traveller.getId()), true);
+
+        List<String> expected = Arrays.asList(earlier.getFlightNumber() + ":2", later.getFlightNumber() + ":2");
+        Assertions.assertEquals(expected, bookings(flightService.getItinerary(traveller.getId())), "Ordered by departure");
+        Assertions.assertEquals("Route E", flightService.getItinerary(traveller.getId()).get(0).getRoute());
+        Assertions.assertTrue(flightService.getItinerary(999_999L).isEmpty());
+
+        ItineraryIndex index = ItineraryIndex.load(flightRepository);
+        SeatInventory inventory = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true,
+                SeatJournal.disabled(), index::apply, flightNumber -> { }, 10, 100, 60_000);
+        try {
+            FlightServiceImpl indexed = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                    VersionTable.disabled(), inventory, index, TimetableIndex.disabled());
+            Assertions.assertEquals(expected, bookings(indexed.getItinerary(traveller.getId())));
+
+            Assertions.assertTrue(indexed.unassignPassengerFromFlight(later.getFlightNumber(), 2));
+            Assertions.assertTrue(indexed.assignPassengerToFlight(later.getFlightNumber(), 4, traveller.getId()));
+            List<String> moved = Arrays.asList(earlier.getFlightNumber() + ":2", later.getFlightNumber() + ":4");
+            Assertions.assertEquals(moved, bookings(indexed.getItinerary(traveller.getId())),
+                    "Seat changes held in memory are seen before they are written");
+            inventory.flush();
+            Assertions.assertEquals(moved, bookings(flightService.getItinerary(traveller.getId())));
+
+            Flight update = indexed.getFlightByFlightNumber(earlier.getFlightNumber()).get();
+            update.unassignPassengerFromSeat(2);
+            indexed.updateFlight(earlier.getFlightNumber(), update);
+            Assertions.assertEquals(Arrays.asList(later.getFlightNumber() + ":4"), bookings(indexed.getItinerary(traveller.getId())));
+            Assertions.assertEquals(Arrays.asList(earlier.getFlightNumber() + ":1"), bookings(indexed.getItinerary(companion.getId())));
+            Assertions.assertEquals(bookings(flightService.getItinerary(traveller.getId())),
+                    bookings(indexed.getItinerary(traveller.getId())));
+        } finally {
+            inventory.close();
+        }
+    }
+
+    @Test
+    void testDeletesRemoveSeatAssignmentsFirst() throws SQLException {
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+        Flight departed = new Flight(null, "Route D", LocalDate.now().minusDays(3), LocalTime.of(7, 0), 4, null);
+        Flight departedToo = new Flight(null, "Route D", LocalDate.now().minusDays(1), LocalTime.of(7, 0), 4, null);
+        Flight upcoming = new Flight(null, "Route U", LocalDate.now().plusDays(1), LocalTime.of(7, 0), 4, null);
+        flightService.addFlights(Arrays.asList(departed, departedToo, upcoming));
+        Passenger leaving = new Passenger(null, "Leaving", "Passenger", "640500200");
+        Passenger staying = new Passenger(null, "Staying", "Passenger", "640500201");
+        passengerService.addPassenger(leaving);
+        passengerService.addPassenger(staying);
+        Assertions.assertTrue(flightService.assignPassengerToFlight(departed.getFlightNumber(), 1, leaving.getId()));
+        Assertions.assertTrue(flightService.assignPassengerToFlight(departedToo.getFlightNumber(), 1, staying.getId()));
+
+        ItineraryIndex index = ItineraryIndex.load(flightRepository);
+        SeatInventory inventory = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true,
+                SeatJournal.disabled(), index::apply, flightNumber -> { }, 10, 100, 60_000);
+        try {
+            FlightServiceImpl flights = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                    VersionTable.disabled(), inventory, index, TimetableIndex.disabled());
+            PassengerServiceImpl passengers = new PassengerServiceImpl(new PassengerRepositoryImpl(connectionPool),
+                    VersionTable.disabled(), PassengerIndex.disabled(), flights::passengerDeleted);
+            Assertions.assertTrue(flights.assignPassengerToFlight(upcoming.getFlightNumber(), 2, leaving.getId()));
+            Assertions.assertTrue(flights.assignPassengerToFlight(upcoming.getFlightNumber(), 3, staying.getId()));
+            Assertions.assertEquals(2, flights.getFlightByFlightNumber(upcoming.getFlightNumber()).get().getSeatMap().size(),
+                    "Read through the seat inventory before the passenger is deleted");
+            inventory.flush();
+
+            passengers.deletePassenger(leaving.getId());
+            Flight afterDelete = flights.getFlightByFlightNumber(upcoming.getFlightNumber()).get();
+            Assertions.assertEquals(Collections.singletonMap(3, staying.getId()), afterDelete.getSeatMap());
+            Assertions.assertEquals(3, afterDelete.getAvailableSeats());
+            Assertions.assertEquals(1, occupiedSeats(upcoming.getFlightNumber()));
+            Assertions.assertEquals(0, occupiedSeats(departed.getFlightNumber()));
+            Assertions.assertTrue(flights.getItinerary(leaving.getId()).isEmpty());
+
+            flights.deleteFlight(upcoming.getFlightNumber());
+            Assertions.assertFalse(flights.getFlightByFlightNumber(upcoming.getFlightNumber()).isPresent());
+            Assertions.assertEquals(1, flights.getItinerary(staying.getId()).size(), "Only the deleted flight's seat is gone");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> flights.deleteFlight(upcoming.getFlightNumber()));
+
+            Flight later = new Flight(null, "Route U", LocalDate.now().plusDays(2), LocalTime.of(7, 0), 4, null);
+            flights.addFlight(later);
+            Assertions.assertEquals(2, flights.purgeDepartedFlights(LocalDate.now(), 1), "Purged one flight per batch");
+            Assertions.assertEquals(Collections.singletonList(later.getFlightNumber()),
+                    flights.getAllFlights().stream().map(Flight::getFlightNumber).collect(Collectors.toList()));
+            Assertions.assertTrue(flights.getItinerary(staying.getId()).isEmpty());
+            Assertions.assertEquals(0, flights.purgeDepartedFlights(LocalDate.now(), 1));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> flights.purgeDepartedFlights(LocalDate.now(), 0));
+        } finally {
+            inventory.close();
+        }
+    }
+
+    @Test
+    void testArchiverMovesDepartedFlightsOutOfTheDefaultSearch() throws SQLException {
+        Flight departed = new Flight(null, "Route A", LocalDate.now().minusDays(5), LocalTime.of(6, 0), 4, null);
+        Flight departedToo = new Flight(null, "Route A", LocalDate.now().minusDays(4), LocalTime.of(6, 0), 4, null);
+        Flight upcoming = new Flight(null, "Route A", LocalDate.now().plusDays(5), LocalTime.of(6, 0), 4, null);
+        flightService.addFlights(Arrays.asList(departed, departedToo, upcoming));
+        Passenger passenger = new Passenger(null, "Archived", "Traveller", "640500300");
+        passengerService.addPassenger(passenger);
+        Assertions.assertTrue(flightService.assignPassengerToFlight(departed.getFlightNumber(), 2, passenger.getId()));
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+        SeatInventory inventory = new SeatInventory(flightRepository, FlightCache.disabled(), id -> true, 10, 60_000);
+        FlightServiceImpl inventoryService = new FlightServiceImpl(flightRepository, FlightCache.disabled(),
+                VersionTable.disabled(), inventory, ItineraryIndex.disabled(), TimetableIndex.disabled());
+        Assertions.assertTrue(inventoryService.assignPassengerToFlight(departedToo.getFlightNumber(), 1, passenger.getId()));
+
+        FlightArchiver archiver = new FlightArchiver(inventoryService, 1, 1, 3_600_000);
+        try {
+            Assertions.assertEquals(2, archiver.archive());
+            Assertions.assertEquals(0, archiver.archive(), "Nothing left to archive");
+            Assertions.assertEquals(2, archiver.getArchivedFlights());
+        } finally {
+            archiver.close();
+            inventory.close();
+        }
+
+        Map<String, String> search = new HashMap<>();
+        search.put("route", "Route A");
+        Assertions.assertEquals(Collections.singletonList(upcoming.getFlightNumber()),
+                flightService.searchFlights(search).stream().map(Flight::getFlightNumber).collect(Collectors.toList()));
+        Assertions.assertFalse(flightService.getFlightByFlightNumber(departed.getFlightNumber()).isPresent());
+
+        search.put("includeArchived", "true");
+        List<Flight> all = flightService.searchFlights(search);
+        Assertions.assertEquals(Arrays.asList(departed.getFlightNumber(), departedToo.getFlightNumber(), upcoming.getFlightNumber()),
+                all.stream().map(Flight::getFlightNumber).collect(Collectors.toList()));
+        Assertions.assertEquals(Collections.singletonMap(2, passenger.getId()), all.get(0).getSeatMap(), "Seats are archived with the flight");
+        Assertions.assertEquals(Collections.singletonMap(1, passenger.getId()), all.get(1).getSeatMap(),
+                "Seat changes not yet written by the inventory are archived too");
+        search.put("limit", "1");
+        search.put("after", String.valueOf(departed.getFlightNumber()));
+        Assertions.assertEquals(departedToo.getFlightNumber(), flightService.searchFlights(search).get(0).getFlightNumber());
+        search.put("includeArchived", "yes");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> flightService.searchFlights(search));
+
+        passengerService.deletePassenger(passenger.getId());
+        Assertions.assertFalse(passengerService.getPassengerById(passenger.getId()).isPresent(),
+                "Archived seats do not keep the passenger");
+    }
+
+    @Test
+    void testTimetableRangeSearchesMatchTheDatabase() throws SQLException {
+        LocalDate day = LocalDate.now().plusDays(10);
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            flights.add(new Flight(null, i % 2 == 0 ? "Route T" : "Route X", day.plusDays(i % 4),
+                    LocalTime.of(10 + i % 6, 0), 3, null));
+        }
+        flightService.addFlights(flights);
+        Passenger passenger = new Passenger(null, "Timetable", "Passenger", "640500400");
+        passengerService.addPassenger(passenger);
+        Assertions.assertTrue(flightService.assignPassengerToFlight(flights.get(0).getFlightNumber(), 1, passenger.getId()));
+
+        FlightRepositoryImpl flightRepository = new FlightRepositoryImpl(connectionPool);
+        FlightServiceImpl indexed = new FlightServiceImpl(flightRepository, new FlightCache(100, 60_000),
+                VersionTable.disabled(), SeatInventory.disabled(), ItineraryIndex.disabled(), TimetableIndex.load(flightRepository));
+        List<Map<String, String>> searches = Arrays.asList(
+                parameters("route", "route t", "fromDate", day.toString(), "toDate", day.plusDays(2).toString(), "afterTime", "14:00"),
+                parameters("fromDate", day.plusDays(1).toString(), "beforeTime", "12:00"),
+                parameters("departureDate", day.plusDays(2).toString(), "departureTime", "12:00"),
+                parameters("route", "Route X", "toDate", day.plusDays(1).toString(), "maxAvailableSeats", "3"),
+                parameters("route", "Route T", "minAvailableSeats", "3", "limit", "2", "after", String.valueOf(flights.get(0).getFlightNumber())),
+                parameters("fromDate", day.plusDays(3).toString(), "toDate", day.toString()));
+        for (Map<String, String> search : searches) {
+            Assertions.assertEquals(flightNumbers(flightService.searchFlights(search)), flightNumbers(indexed.searchFlights(search)),
+                    search.toString());
+        }
+        Assertions.assertEquals(Arrays.asList(flights.get(2).getFlightNumber(), flights.get(4).getFlightNumber()),
+                flightNumbers(indexed.searchFlights(searches.get(4))), "Full flights are skipped before the page is cut");
+
+        Flight moved = flights.get(1);
+        moved.setDepartureTime(LocalTime.of(20, 0));
+        indexed.updateFlight(moved.getFlightNumber(), moved);
+        indexed.deleteFlight(flights.get(3).getFlightNumber());
+        Flight added = new Flight(null, "Route X", day, LocalTime.of(21, 0), 3, null);
+        indexed.addFlight(added);
+        Map<String, String> evening = parameters("route", "Route X", "afterTime", "19:00");
+        Assertions.assertEquals(Arrays.asList(moved.getFlightNumber(), added.getFlightNumber()),
+                flightNumbers(indexed.searchFlights(evening)));
+        Assertions.assertEquals(flightNumbers(flightService.searchFlights(evening)), flightNumbers(indexed.searchFlights(evening)));
+        Assertions.assertTrue(indexed.searchFlights(parameters("route", "Route X", "departureDate", day.plusDays(3).toString(),
+                "departureTime", "13:00")).isEmpty(), "The deleted flight is gone from the timetable");
+    }
+
+    private static Map<String, String> parameters(String... keysAndValues) {
+        Map<String, String> parameters = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            parameters.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return parameters;
+    }
+
+    private static List<Long> flightNumbers(List<Flight> flights) {
+        return flights.stream().map(Flight::getFlightNumber).collect(Collectors.toList());
+    }
+
+    private int occupiedSeats(long flightNumber) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT occupiedSeats FROM flights WHERE flightNumber = " + flightNumber)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Test
+    void testConditionalWritesRejectStaleVersions() throws SQLException {
+        Flight flight = new Flight(null, "Route O", LocalDate.now(), LocalTime.now(), 3, null);
+        flightService.addFlight(flight);
+        Passenger passenger = new Passenger(null, "Optimistic", "Passenger", "900800702");
+        passengerService.addPassenger(passenger);
+        long flightNumber = flight.getFlightNumber();
+        Flight read = flightService.getFlightByFlightNumber(flightNumber).orElseThrow(AssertionError::new);
+        Assertions.assertEquals(0, read.getVersion());
+
+        Assertions.assertTrue(flightService.assignPassengerToFlight(flightNumber, 1, passenger.getId(), 0));
+        Assertions.assertThrows(VersionConflictException.class,
+                () -> flightService.assignPassengerToFlight(flightNumber, 2, passenger.getId(), 0),
+                "The first seat change moved the flight to version 1");
+        Assertions.assertFalse(flightService.assignPassengerToFlight(flightNumber, 1, passenger.getId(), 1),
+                "A taken seat at the current version is a seat conflict, not a stale version");
+
+        read.setRoute("Lost update");
+        Assertions.assertThrows(VersionConflictException.class, () -> flightService.updateFlight(flightNumber, read, 0));
+        Flight current = flightService.getFlightByFlightNumber(flightNumber).orElseThrow(AssertionError::new);
+        Assertions.assertEquals("Route O", current.getRoute());
+        Assertions.assertEquals(1, current.getVersion());
+        Assertions.assertEquals(passenger.getId(), current.getSeatMap().get(1), "The stale update kept the booking");
+
+        current.setRoute("Route P");
+        flightService.updateFlight(flightNumber, current, 1);
+        Assertions.assertThrows(VersionConflictException.class, () -> flightService.unassignPassengerFromFlight(flightNumber, 1, 1));
+        Assertions.assertTrue(flightService.unassignPassengerFromFlight(flightNumber, 1, 2));
+        Assertions.assertEquals(3, flightService.getFlightByFlightNumber(flightNumber).get().getVersion());
+    }
+
+    @Test
+    void testSearchFlights() throws SQLException {
+        LocalDate departureDate = LocalDate.of(2024, 5, 1);
+        Flight matching = new Flight(null, "Gdansk-Krakow", departureDate, LocalTime.of(9, 30), 2, null);
+        flightService.addFlight(matching);
+        flightService.addFlight(new Flight(null, "Gdansk-Krakow", departureDate.plusDays(1), LocalTime.of(9, 30), 2, null));
+        flightService.addFlight(new Flight(null, "Krakow-Gdansk", departureDate, LocalTime.of(9, 30), 2, null));
+
+        Passenger passenger = new Passenger(null, "Anna", "Nowak", "555666777");
+        passengerService.addPassenger(passenger);
+        flightService.assignPassengerToFlight(matching.getFlightNumber(), 1, passenger.getId());
+
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("route", "gdansk-krakow");
+        criteria.put("departureDate", "2024-05-01");
+        criteria.put("departureTime", "09:30");
+        criteria.put("maxAvailableSeats", "1");
+        List<Flight> flights = flightService.searchFlights(criteria);
+
+        Assertions.assertEquals(1, flights.size(), "Only one flight should match all criteria");
+        Assertions.assertEquals(matching.getFlightNumber(), flights.get(0).getFlightNumber());
+        Assertions.assertEquals(1, flights.get(0).getAvailableSeats());
+
+        criteria.put("minAvailableSeats", "2");
+        Assertions.assertTrue(flightService.searchFlights(criteria).isEmpty(), "Seat filters should use the occupied seat count");
+    }
+
+    @Test
+    void testSearchFlightsWithInvalidCriteria() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("departureDate", "tomorrow");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> flightService.searchFlights(criteria));
+    }
+
+    @Test
+    void testPaginateFlightsAndPassengers() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            flightService.addFlight(new Flight(null, "Page Route", LocalDate.now(), LocalTime.of(10, i), 5, null));
+            passengerService.addPassenger(new Passenger(null, "Page", "Passenger" + i, "80000000" + i));
+        }
+
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("limit", "2");
+        List<Flight> firstPage = flightService.searchFlights(criteria);
+        criteria.put("after", String.valueOf(firstPage.get(1).getFlightNumber()));
+        List<Flight> secondPage = flightService.searchFlights(criteria);
+        Assertions.assertEquals(2, firstPage.size());
+        Assertions.assertEquals(2, secondPage.size());
+        Assertions.assertTrue(secondPage.get(0).getFlightNumber() > firstPage.get(1).getFlightNumber(),
+                "Second page should start after the cursor");
+
+        List<Passenger> streamed = new ArrayList<>();
+        passengerService.streamPassengers(PageRequest.unpaged(), streamed::add);
+        List<Passenger> page = passengerService.getPassengers(new PageRequest(streamed.get(2).getId(), 10));
+        Assertions.assertEquals(5, streamed.size());
+        Assertions.assertEquals(2, page.size(), "Only passengers after the cursor should be returned");
+    }
+
+    @Test
+    void testGetFlightsByFlightNumbers() throws SQLException {
+        Passenger passenger = new Passenger(null, "Batch", "Passenger", "700000001");
+        passengerService.addPassenger(passenger);
+        List<Long> flightNumbers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Flight flight = new Flight(null, "Batch Route", LocalDate.now(), LocalTime.of(12, i), 5, null);
+            flightService.addFlight(flight);
+            flightService.assignPassengerToFlight(flight.getFlightNumber(), i + 1, passenger.getId());
+            flightNumbers.add(flight.getFlightNumber());
+        }
+        flightNumbers.add(flightNumbers.get(0));
+        flightNumbers.add(-1L);
+
+        Map<Long, Flight> flights = flightService.getFlightsByFlightNumbers(flightNumbers);
+        Assertions.assertEquals(3, flights.size(), "Duplicates and unknown flight numbers should be skipped");
+        Flight last = flights.get(flightNumbers.get(2));
+        Assertions.assertEquals(passenger.getId(), last.getSeatMap().get(3));
+        Assertions.assertEquals(1, last.getSeatMap().size());
+        Assertions.assertEquals(last.getSeatMap(), flightService.getFlightByFlightNumber(last.getFlightNumber()).get().getSeatMap());
+    }
+
+    @Test
+    void testAddFlightsAndPassengersInBatch() throws SQLException {
+        List<Passenger> passengers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            passengers.add(new Passenger(null, "Bulk", "Passenger" + i, "60000000" + i));
+        }
+        passengerService.addPassengers(passengers);
+        Assertions.assertTrue(passengers.get(2).getId() > passengers.get(0).getId(), "Generated ids should be set");
+
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Flight flight = new Flight(null, "Bulk Route", LocalDate.now(), LocalTime.of(6, i), 5, null);
+            flight.getSeats().put(1, passengers.get(i).getId());
+            flights.add(flight);
+        }
+        flightService.addFlights(flights);
+        Flight stored = flightService.getFlightByFlightNumber(flights.get(1).getFlightNumber()).get();
+        Assertions.assertEquals(passengers.get(1).getId(), stored.getSeatMap().get(1));
+        Assertions.assertEquals(4, stored.getAvailableSeats());
+
+        List<Passenger> invalidBatch = new ArrayList<>();
+        invalidBatch.add(new Passenger(null, "Valid", "Passenger", "600000009"));
+        invalidBatch.add(new Passenger(null, "", "Passenger", "600000010"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> passengerService.addPassengers(invalidBatch));
+        Assertions.assertEquals(3, passengerService.getAllPassengers().size(), "An invalid batch should not be written");
+    }
+
+    @Test
+    void testSearchPassengersByNameWithAndWithoutIndex() throws SQLException {
+        passengerService.addPassenger(new Passenger(null, "Jan", "Kowalski", "740000001"));
+        passengerService.addPassenger(new Passenger(null, "Anna", "Kowalska", "740000002"));
+        passengerService.addPassenger(new Passenger(null, "Adam", "Kowalski", "740000003"));
+        passengerService.addPassenger(new Passenger(null, "Jan", "Nowak", "740000004"));
+        Passenger moving = new Passenger(null, "Ewa", "Kowal", "740000005");
+        passengerService.addPassenger(moving);
+        Assertions.assertThrows(DuplicatePhoneNumberException.class,
+                () -> passengerService.addPassenger(new Passenger(null, "Other", "Person", "740000001")));
+
+        PassengerRepositoryImpl passengerRepository = new PassengerRepositoryImpl(connectionPool);
+        PassengerServiceImpl indexedService = new PassengerServiceImpl(passengerRepository, VersionTable.disabled(),
+                PassengerIndex.load(passengerRepository), (id, flightNumbers) -> { });
+        for (PassengerServiceImpl service : Arrays.asList(passengerService, indexedService)) {
+            Assertions.assertEquals(Arrays.asList("Kowal Ewa", "Kowalska Anna", "Kowalski Adam", "Kowalski Jan"),
+                    names(service.searchPassengers(criteria("prefix", "kowal"))));
+            Assertions.assertEquals(Arrays.asList("Kowalski Adam", "Kowalski Jan"),
+                    names(service.searchPassengers(criteria("lastName", "KOWALSKI"))));
+            Assertions.assertEquals(Arrays.asList("Kowalski Jan"),
+                    names(service.searchPassengers(criteria("lastName", "Kowalski", "firstName", "jan"))));
+
+            List<Passenger> firstPage = service.searchPassengers(criteria("prefix", "Kow", "limit", "2"));
+            Assertions.assertEquals(Arrays.asList("Kowal Ewa", "Kowalska Anna"), names(firstPage));
+            String cursor = String.valueOf(firstPage.get(1).getId());
+            Assertions.assertEquals(Arrays.asList("Kowalski Adam", "Kowalski Jan"),
+                    names(service.searchPassengers(criteria("prefix", "Kow", "limit", "2", "after", cursor))));
+        }
+        Assertions.assertEquals(Arrays.asList("Nowak Jan"), names(passengerService.searchPassengers(criteria("phone", "740000004"))));
+        Assertions.assertEquals(Arrays.asList("Kowalski Jan", "Nowak Jan"), names(passengerService.searchPassengers(criteria("firstName", "Jan"))));
+
+        indexedService.updatePassenger(moving.getId(), new Passenger(null, "Ewa", "Zielinska", "740000005"));
+        Assertions.assertEquals(Arrays.asList("Zielinska Ewa"), names(indexedService.searchPassengers(criteria("prefix", "ziel"))));
+        Assertions.assertEquals(3, indexedService.searchPassengers(criteria("prefix", "kowal")).size(), "The old name is gone");
+        indexedService.deletePassenger(moving.getId());
+        Assertions.assertTrue(indexedService.searchPassengers(criteria("prefix", "ziel")).isEmpty());
+    }
+
+    @Test
+    void testConcurrentUpdatesReachTheIndexInDatabaseOrder() throws Exception {
+        Passenger passenger = new Passenger(null, "Jan", "Kowalski", "740000001");
+        passengerService.addPassenger(passenger);
+        PassengerRepositoryImpl passengerRepository = new PassengerRepositoryImpl(connectionPool);
+        PassengerServiceImpl indexedService = new PassengerServiceImpl(passengerRepository, VersionTable.disabled(),
+                PassengerIndex.load(passengerRepository), (id, flightNumbers) -> { });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String lastName = "Name" + i;
+                results.add(executor.submit(() -> indexedService.updatePassenger(passenger.getId(),
+                        new Passenger(null, "Jan", lastName, "740000001"))));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        String stored = passengerRepository.findById(passenger.getId()).get().getLastName();
+        Assertions.assertEquals(Arrays.asList(stored + " Jan"),
+                names(indexedService.searchPassengers(criteria("prefix", "name"))));
+    }
+
+    @Test
+    void testKnownPassengersAnswerFromTheIndexOrTheDatabase() throws SQLException {
+        Passenger first = new Passenger(null, "Jan", "Kowalski", "740000001");
+        Passenger second = new Passenger(null, "Anna", "Nowak", "740000002");
+        passengerService.addPassenger(first);
+        passengerService.addPassenger(second);
+
+        PassengerRepositoryImpl passengerRepository = new PassengerRepositoryImpl(connectionPool);
+        KnownPassengers known = new KnownPassengers(passengerRepository, PassengerIndex.disabled(), 1);
+        Assertions.assertTrue(known.test(first.getId()));
+        Assertions.assertTrue(known.test(second.getId()));
+        Assertions.assertEquals(1, known.size(), "Filling up forgets the remembered ids");
+        Assertions.assertFalse(known.test(999_999L));
+        passengerService.deletePassenger(second.getId());
+        known.forget(second.getId());
+        Assertions.assertFalse(known.test(second.getId()));
+
+        PassengerIndex index = PassengerIndex.load(passengerRepository);
+        KnownPassengers indexed = new KnownPassengers(passengerRepository, index, 1);
+        Assertions.assertTrue(indexed.test(first.getId()));
+        Assertions.assertFalse(indexed.test(second.getId()));
+        Assertions.assertEquals(0, indexed.size(), "The index answers on its own");
+    }
+
+    private static PassengerSearchCriteria criteria(String... parameters) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            values.put(parameters[i], parameters[i + 1]);
+        }
+        return PassengerSearchCriteria.fromQueryParameters(values);
+    }
+
+    private static List<String> bookings(List<Booking> itinerary) {
+        List<String> bookings = new ArrayList<>();
+        for (Booking booking : itinerary) {
+            bookings.add(booking.getFlightNumber() + ":" + booking.getSeatNumber());
+        }
+        return bookings;
+    }
+
+    private static List<String> names(List<Passenger> passengers) {
+        List<String> names = new ArrayList<>();
+        for (Passenger passenger : passengers) {
+            names.add(passenger.getLastName() + " " + passenger.getFirstName());
+        }
+        return names;
+    }
+
     @Test
     void testAddPassengerWithInvalidData() throws SQLException {
         Passenger passenger = new Passenger(null, "", "", "");